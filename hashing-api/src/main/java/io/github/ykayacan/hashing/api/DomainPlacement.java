@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks replicas spread across failure domains from candidates offered in preference order, for
+ * {@link NodeRouter} implementations.
+ *
+ * <p>Candidates in a zone not picked yet are taken right away. Other candidates are deferred and
+ * used, once every candidate was offered, to fill the remaining replicas: first those on a rack not
+ * picked yet, then any. Every tier keeps the preference order, so a router walks its candidates
+ * once and can stop as soon as {@link #offer(Node)} returns true. Given the {@link NodeTable} of
+ * the candidates, that is also once distinct zones, then distinct racks, ran out and enough
+ * deferred candidates are there to fill the replicas, so fewer zones than replicas do not make a
+ * router offer every candidate.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class DomainPlacement<N extends Node<?>> {
+
+  private static final int SMALL_COUNT = 8;
+
+  private final int count;
+  private final int zoneCount;
+  private final int rackCount;
+  private final List<N> picked;
+  /** Deferred candidates on a rack not taken before them. */
+  private final List<N> onNewRacks = new ArrayList<>();
+
+  private final List<N> deferred = new ArrayList<>();
+  private final Set<String> nodeIds = new HashSet<>();
+  private final Set<String> zones = new HashSet<>();
+  private final Set<FailureDomain> racks = new HashSet<>();
+
+  private DomainPlacement(int count, int zoneCount, int rackCount) {
+    this.count = count;
+    this.zoneCount = zoneCount;
+    this.rackCount = rackCount;
+    // no more replicas than zones are picked, whatever count the caller asks for
+    this.picked = new ArrayList<>(Math.min(count, Math.min(zoneCount, SMALL_COUNT)));
+  }
+
+  /**
+   * Create domain placement.
+   *
+   * @param <N> the type parameter
+   * @param count the number of replicas
+   * @return the domain placement
+   */
+  public static <N extends Node<?>> DomainPlacement<N> create(int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal replica count: " + count);
+    }
+    return new DomainPlacement<>(count, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Create domain placement for candidates from the given table, stopping once its zones and
+   * racks ran out.
+   *
+   * @param <N> the type parameter
+   * @param count the number of replicas
+   * @param table the table of the candidates
+   * @return the domain placement
+   */
+  public static <N extends Node<?>> DomainPlacement<N> create(int count, NodeTable<?> table) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal replica count: " + count);
+    }
+    return new DomainPlacement<>(count, table.getZoneCount(), table.getRackCount());
+  }
+
+  /**
+   * Offers the next candidate in preference order. Candidates already offered are ignored.
+   *
+   * @param node the node
+   * @return true once more candidates cannot change the replicas
+   */
+  public boolean offer(N node) {
+    if (isDone()) {
+      return true;
+    }
+    if (!nodeIds.add(node.getNodeId())) {
+      return false;
+    }
+
+    FailureDomain domain = node.getFailureDomain();
+    if (zones.add(domain.getZone())) {
+      racks.add(domain);
+      picked.add(node);
+    } else {
+      // a rack is in one zone, so no later pick takes the rack of a deferred candidate
+      if (racks.add(domain)) {
+        onNewRacks.add(node);
+      } else {
+        deferred.add(node);
+      }
+    }
+    return isDone();
+  }
+
+  /**
+   * Checks if more candidates cannot change the replicas: enough replicas in distinct zones are
+   * picked, or zones ran out and enough candidates on distinct racks, or of any rack once racks
+   * ran out, are deferred.
+   *
+   * @return the boolean
+   */
+  public boolean isDone() {
+    if (picked.size() >= count) {
+      return true;
+    }
+    if (zones.size() < zoneCount) {
+      return false;
+    }
+    if (picked.size() + onNewRacks.size() >= count) {
+      return true;
+    }
+    return racks.size() >= rackCount
+        && picked.size() + onNewRacks.size() + deferred.size() >= count;
+  }
+
+  /**
+   * Returns the replicas, filling the ones missing after distinct zones ran out with deferred
+   * candidates. Fewer replicas are returned if fewer candidates were offered.
+   *
+   * @return the replicas
+   */
+  public List<N> getReplicas() {
+    List<N> replicas =
+        new ArrayList<>(Math.min(count, picked.size() + onNewRacks.size() + deferred.size()));
+    replicas.addAll(picked);
+    fill(replicas, onNewRacks);
+    fill(replicas, deferred);
+    return replicas;
+  }
+
+  private void fill(List<N> replicas, List<N> candidates) {
+    for (N node : candidates) {
+      if (replicas.size() >= count) {
+        break;
+      }
+      replicas.add(node);
+    }
+  }
+}
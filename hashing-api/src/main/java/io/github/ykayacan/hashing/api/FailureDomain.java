@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.Objects;
+
+/** The failure domain of a node: the zone it runs in and the rack within that zone. */
+public final class FailureDomain {
+
+  /** The domain of nodes without failure domain metadata. */
+  public static final FailureDomain UNKNOWN = new FailureDomain("", "");
+
+  private final String zone;
+  private final String rack;
+
+  private FailureDomain(String zone, String rack) {
+    this.zone = zone;
+    this.rack = rack;
+  }
+
+  /**
+   * Create failure domain.
+   *
+   * @param zone the zone
+   * @param rack the rack within the zone
+   * @return the failure domain
+   */
+  public static FailureDomain of(String zone, String rack) {
+    Objects.requireNonNull(zone);
+    Objects.requireNonNull(rack);
+    return new FailureDomain(zone, rack);
+  }
+
+  /**
+   * Gets zone.
+   *
+   * @return the zone
+   */
+  public String getZone() {
+    return zone;
+  }
+
+  /**
+   * Gets rack.
+   *
+   * @return the rack
+   */
+  public String getRack() {
+    return rack;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FailureDomain)) {
+      return false;
+    }
+    FailureDomain that = (FailureDomain) o;
+    return zone.equals(that.zone) && rack.equals(that.rack);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(zone, rack);
+  }
+
+  @Override
+  public String toString() {
+    return "FailureDomain{" + "zone='" + zone + '\'' + ", rack='" + rack + '\'' + '}';
+  }
+}
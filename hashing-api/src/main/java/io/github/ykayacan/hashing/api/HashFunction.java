@@ -27,4 +27,16 @@ public interface HashFunction {
    * @return the long The hashed long value
    */
   long hash(String key);
+
+  /**
+   * Hash long key to long value. Defaults to hashing {@link Long#toString(long)}, so a long key
+   * hashes like its decimal String form; implementations may hash the value directly to avoid the
+   * conversion.
+   *
+   * @param key the key
+   * @return the long The hashed long value
+   */
+  default long hash(long key) {
+    return hash(Long.toString(key));
+  }
 }
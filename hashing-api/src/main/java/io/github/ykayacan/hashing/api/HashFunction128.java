@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+/**
+ * A {@link HashFunction} producing 128-bit hashes, such as Murmur3 x64 128. {@link #hash(String)}
+ * returns the high 64 bits and {@link #hashLow(String)} the low 64 bits of the same hash.
+ */
+public interface HashFunction128 extends HashFunction {
+
+  /**
+   * Hash String key to the high 64 bits of its 128-bit hash.
+   *
+   * @param key the key
+   * @return the long The high 64 bits
+   */
+  @Override
+  long hash(String key);
+
+  /**
+   * Hash String key to the low 64 bits of its 128-bit hash.
+   *
+   * @param key the key
+   * @return the long The low 64 bits
+   */
+  long hashLow(String key);
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.Objects;
+import java.util.Optional;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A range of hashes, from {@code start} exclusive to {@code end} inclusive, that moved from one
+ * node to another. Hashes are ordered as signed longs and a range wraps around when {@code start}
+ * is not lower than {@code end}; {@code start == end} covers the whole hash space.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class HashRange<N extends Node<?>> {
+
+  private final long start;
+  private final long end;
+  @Nullable private final N previousOwner;
+  @Nullable private final N newOwner;
+
+  private HashRange(long start, long end, @Nullable N previousOwner, @Nullable N newOwner) {
+    this.start = start;
+    this.end = end;
+    this.previousOwner = previousOwner;
+    this.newOwner = newOwner;
+  }
+
+  /**
+   * Create hash range.
+   *
+   * @param <N> the type parameter
+   * @param start the start, exclusive
+   * @param end the end, inclusive
+   * @param previousOwner the previous owner, null if the router was empty
+   * @param newOwner the new owner, null if the router is now empty
+   * @return the hash range
+   */
+  public static <N extends Node<?>> HashRange<N> of(
+      long start, long end, @Nullable N previousOwner, @Nullable N newOwner) {
+    return new HashRange<>(start, end, previousOwner, newOwner);
+  }
+
+  /**
+   * Gets start, exclusive.
+   *
+   * @return the start
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * Gets end, inclusive.
+   *
+   * @return the end
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * Gets previous owner.
+   *
+   * @return the previous owner
+   */
+  public Optional<N> getPreviousOwner() {
+    return Optional.ofNullable(previousOwner);
+  }
+
+  /**
+   * Gets new owner.
+   *
+   * @return the new owner
+   */
+  public Optional<N> getNewOwner() {
+    return Optional.ofNullable(newOwner);
+  }
+
+  /**
+   * Checks if the range contains the hash.
+   *
+   * @param hash the hash
+   * @return the boolean
+   */
+  public boolean contains(long hash) {
+    if (start < end) {
+      return hash > start && hash <= end;
+    }
+    return hash > start || hash <= end;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof HashRange)) {
+      return false;
+    }
+    HashRange<?> that = (HashRange<?>) o;
+    return start == that.start
+        && end == that.end
+        && Objects.equals(previousOwner, that.previousOwner)
+        && Objects.equals(newOwner, that.newOwner);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(start, end, previousOwner, newOwner);
+  }
+
+  @Override
+  public String toString() {
+    return "HashRange{"
+        + "start="
+        + start
+        + ", end="
+        + end
+        + ", previousOwner="
+        + previousOwner
+        + ", newOwner="
+        + newOwner
+        + '}';
+  }
+}
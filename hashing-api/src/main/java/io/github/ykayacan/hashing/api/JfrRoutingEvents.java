@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.EventType;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** Emits {@link RoutingEvents} as JFR events. Only loaded if the runtime has {@code jdk.jfr}. */
+final class JfrRoutingEvents implements RoutingEvents.Sink {
+
+  private final EventType lookupType = EventType.getEventType(LookupEvent.class);
+  private final EventType topologyChangeType = EventType.getEventType(TopologyChangeEvent.class);
+  private final int lookupSampleRate = RoutingEvents.lookupSampleRate();
+
+  @Override
+  public boolean isLookupSampled() {
+    return lookupType.isEnabled()
+        && ThreadLocalRandom.current().nextInt(lookupSampleRate) == 0;
+  }
+
+  @Override
+  public void lookup(Object router, long keyHash, @Nullable Node<?> node) {
+    LookupEvent event = new LookupEvent();
+    if (event.shouldCommit()) {
+      event.router = nameOf(router);
+      event.keyHash = keyHash;
+      event.nodeId = node == null ? null : node.getNodeId();
+      event.sampleRate = lookupSampleRate;
+      event.commit();
+    }
+  }
+
+  @Override
+  public boolean isTopologyChangeEnabled() {
+    return topologyChangeType.isEnabled();
+  }
+
+  @Override
+  public void topologyChange(
+      Object router, String change, int nodeCount, long tokenCount, long durationNanos) {
+    TopologyChangeEvent event = new TopologyChangeEvent();
+    if (event.shouldCommit()) {
+      event.router = nameOf(router);
+      event.change = change;
+      event.nodeCount = nodeCount;
+      event.tokenCount = tokenCount;
+      event.rebuildDuration = durationNanos;
+      event.commit();
+    }
+  }
+
+  private static String nameOf(Object router) {
+    return router.getClass().getSimpleName()
+        + '@'
+        + Integer.toHexString(System.identityHashCode(router));
+  }
+}
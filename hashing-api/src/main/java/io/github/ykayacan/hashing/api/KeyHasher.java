@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+/**
+ * Hashes typed keys to 64-bit values, so they can be routed with {@link
+ * NodeRouter#getNode(Object, KeyHasher)} without being converted to Strings.
+ *
+ * @param <K> the key type
+ */
+@FunctionalInterface
+public interface KeyHasher<K> {
+
+  /**
+   * Hash key to long value.
+   *
+   * @param key the key
+   * @return the long The hashed long value
+   */
+  long hash(K key);
+}
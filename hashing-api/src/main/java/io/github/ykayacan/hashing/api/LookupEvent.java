@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A sampled lookup, see {@link RoutingEvents}. */
+@Name("io.github.ykayacan.hashing.Lookup")
+@Label("Routing Lookup")
+@Category({"Hashing", "Routing"})
+@Description("A sampled key lookup and the node it was routed to")
+@Enabled(false)
+@StackTrace(false)
+final class LookupEvent extends Event {
+
+  @Label("Router")
+  String router;
+
+  @Label("Key Hash")
+  long keyHash;
+
+  @Label("Node Id")
+  String nodeId;
+
+  @Label("Sample Rate")
+  @Description("One in this many lookups is recorded")
+  int sampleRate;
+}
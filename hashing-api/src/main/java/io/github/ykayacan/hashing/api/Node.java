@@ -17,9 +17,15 @@
 package io.github.ykayacan.hashing.api;
 
 import java.util.Optional;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-/** The interface Node. */
-public interface Node {
+/**
+ * The interface Node. Nodes are identified by their node id: implementations base {@code equals}
+ * and {@code hashCode} on it alone, never on the payload.
+ *
+ * @param <D> the type of the payload
+ */
+public interface Node<D> {
 
   /**
    * Gets node id.
@@ -28,10 +34,31 @@ public interface Node {
    */
   String getNodeId();
 
+  /**
+   * Gets the payload, such as a connection pool, without allocating.
+   *
+   * @return the data, or {@code null} if the node has none
+   */
+  @Nullable
+  D data();
+
   /**
    * Gets data.
    *
    * @return the data
+   * @deprecated use {@link #data()}, which neither allocates nor needs a cast
+   */
+  @Deprecated
+  default Optional<Object> getData() {
+    return Optional.ofNullable(data());
+  }
+
+  /**
+   * Gets the failure domain, {@link FailureDomain#UNKNOWN} by default.
+   *
+   * @return the failure domain
    */
-  Optional<Object> getData();
+  default FailureDomain getFailureDomain() {
+    return FailureDomain.UNKNOWN;
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free down flags of nodes, held in a bitset indexed by node ordinal.
+ *
+ * <p>A node is marked down for a time window and comes back up by itself when the window ends.
+ * {@link #hasDown()} is a single volatile read, so routers can skip health checks entirely while
+ * every node is up; {@link #isDown(int)} only reads the clock for nodes whose flag is set.
+ */
+public final class NodeHealth {
+
+  private static final int ADDRESS_BITS_PER_WORD = 6;
+
+  private final AtomicInteger downCount = new AtomicInteger();
+
+  /** Replaced under {@code this} when growing. */
+  private volatile State state = new State(1);
+
+  private NodeHealth() {}
+
+  /**
+   * Create node health.
+   *
+   * @return the node health
+   */
+  public static NodeHealth create() {
+    return new NodeHealth();
+  }
+
+  /**
+   * Checks if any node may be down.
+   *
+   * @return the boolean
+   */
+  public boolean hasDown() {
+    return downCount.get() != 0;
+  }
+
+  /**
+   * Checks if a node is down.
+   *
+   * @param ordinal the node ordinal
+   * @return the boolean
+   */
+  public boolean isDown(int ordinal) {
+    if (ordinal < 0) {
+      return false;
+    }
+
+    State current = state;
+    int word = ordinal >>> ADDRESS_BITS_PER_WORD;
+    if (word >= current.words.length() || (current.words.get(word) & (1L << ordinal)) == 0) {
+      return false;
+    }
+    if (System.nanoTime() - current.downUntil.get(ordinal) < 0) {
+      return true;
+    }
+    expire(ordinal);
+    return false;
+  }
+
+  /**
+   * Marks a node down for a time window.
+   *
+   * @param ordinal the node ordinal
+   * @param duration the duration
+   * @param unit the unit
+   */
+  public synchronized void markDown(int ordinal, long duration, TimeUnit unit) {
+    if (ordinal < 0) {
+      throw new IllegalArgumentException("Illegal ordinal: " + ordinal);
+    }
+
+    State current = ensureCapacity(ordinal);
+    current.downUntil.set(ordinal, System.nanoTime() + unit.toNanos(duration));
+
+    int word = ordinal >>> ADDRESS_BITS_PER_WORD;
+    long bits = current.words.get(word);
+    if ((bits & (1L << ordinal)) == 0) {
+      current.words.set(word, bits | (1L << ordinal));
+      downCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Marks a node up.
+   *
+   * @param ordinal the node ordinal
+   */
+  public synchronized void markUp(int ordinal) {
+    State current = state;
+    int word = ordinal >>> ADDRESS_BITS_PER_WORD;
+    if (ordinal < 0 || word >= current.words.length()) {
+      return;
+    }
+
+    long bits = current.words.get(word);
+    if ((bits & (1L << ordinal)) != 0) {
+      current.words.set(word, bits & ~(1L << ordinal));
+      downCount.decrementAndGet();
+    }
+  }
+
+  private synchronized void expire(int ordinal) {
+    State current = state;
+    if (System.nanoTime() - current.downUntil.get(ordinal) >= 0) {
+      markUp(ordinal);
+    }
+  }
+
+  private State ensureCapacity(int ordinal) {
+    State current = state;
+    int words = (ordinal >>> ADDRESS_BITS_PER_WORD) + 1;
+    if (words <= current.words.length()) {
+      return current;
+    }
+
+    State grown = new State(Math.max(words, current.words.length() * 2));
+    for (int i = 0; i < current.words.length(); i++) {
+      grown.words.set(i, current.words.get(i));
+    }
+    for (int i = 0; i < current.downUntil.length(); i++) {
+      grown.downUntil.set(i, current.downUntil.get(i));
+    }
+    state = grown;
+    return grown;
+  }
+
+  private static final class State {
+    private final AtomicLongArray words;
+    private final AtomicLongArray downUntil;
+
+    private State(int words) {
+      this.words = new AtomicLongArray(words);
+      this.downUntil = new AtomicLongArray(words << ADDRESS_BITS_PER_WORD);
+    }
+  }
+}
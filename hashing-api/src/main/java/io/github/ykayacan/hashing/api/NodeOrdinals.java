@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns stable, dense int ordinals to node ids for {@link NodeRouter} implementations, so
+ * per-node state can be kept in arrays. An ordinal is kept until its node is released and is then
+ * reused by the next assigned node.
+ */
+public final class NodeOrdinals {
+
+  private final ConcurrentMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+  /** Guarded by {@code this}. */
+  private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+  /** Guarded by {@code this}. */
+  private int nextOrdinal;
+
+  private NodeOrdinals() {}
+
+  /**
+   * Create node ordinals.
+   *
+   * @return the node ordinals
+   */
+  public static NodeOrdinals create() {
+    return new NodeOrdinals();
+  }
+
+  /**
+   * Returns the ordinal of a node id, assigning one if needed.
+   *
+   * @param nodeId the node id
+   * @return the ordinal
+   */
+  public synchronized int assign(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    Integer ordinal = ordinals.get(nodeId);
+    if (ordinal == null) {
+      Integer free = freeOrdinals.poll();
+      ordinal = free != null ? free : nextOrdinal++;
+      ordinals.put(nodeId, ordinal);
+    }
+    return ordinal;
+  }
+
+  /**
+   * Releases the ordinal of a node id.
+   *
+   * @param nodeId the node id
+   * @return the released ordinal or -1 if the node id had none
+   */
+  public synchronized int release(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    Integer ordinal = ordinals.remove(nodeId);
+    if (ordinal == null) {
+      return -1;
+    }
+    freeOrdinals.push(ordinal);
+    return ordinal;
+  }
+
+  /**
+   * Returns the ordinal of a node id, without locking.
+   *
+   * @param nodeId the node id
+   * @return the ordinal or -1 if the node id has none
+   */
+  public int ordinalOf(String nodeId) {
+    Integer ordinal = ordinals.get(nodeId);
+    return ordinal == null ? -1 : ordinal;
+  }
+}
@@ -16,14 +16,16 @@
 
 package io.github.ykayacan.hashing.api;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The base interface for {@link NodeRouter}
  *
  * @param <N> the {@link Node} parameter
  */
-public interface NodeRouter<N extends Node> {
+public interface NodeRouter<N extends Node<?>> {
 
   /**
    * Returns node for given nodeId.
@@ -35,6 +37,178 @@ public interface NodeRouter<N extends Node> {
   Optional<N> getNode(String nodeId);
 
   /**
+   * Returns node for given long key. Defaults to routing {@link Long#toString(long)}; routers
+   * which hash keys themselves route {@link HashFunction#hash(long)} without the conversion, by
+   * {@link #getNodeByHash(long)}. A router combining keys with node ids, such as rendezvous
+   * hashing, may then route a long key to another node than its decimal String form.
+   *
+   * @param key Any long value
+   * @return Node assigned to the key given as an argument
+   */
+  default Optional<N> getNode(long key) {
+    return getNode(Long.toString(key));
+  }
+
+  /**
+   * Returns node for given typed key, routing the hash the key hasher computes.
+   *
+   * @param <K> the key type
+   * @param key Any key
+   * @param keyHasher the key hasher
+   * @return Node assigned to the key given as an argument
+   * @throws NullPointerException if key or keyHasher value is null
+   * @throws UnsupportedOperationException if the router does not support routing by hash
+   */
+  default <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  /**
+   * Returns node for given precomputed key hash. For a hash computed with the router's own {@link
+   * HashFunction} this is the node {@link #getNode(String)} returns for the key, unless the
+   * algorithm combines keys with node ids before hashing.
+   *
+   * @param hash the key hash
+   * @return Node assigned to the hash given as an argument
+   * @throws UnsupportedOperationException if the router does not support routing by hash
+   */
+  default Optional<N> getNodeByHash(long hash) {
+    throw new UnsupportedOperationException("Routing by hash is not supported");
+  }
+
+  /**
+   * Returns the ordinal of the node {@link #getNode(String)} returns for given key, without
+   * allocating. The node is found in {@link #getNodeTable()}.
+   *
+   * @param key Any string value
+   * @return the ordinal, or -1 if there is no node or it was removed concurrently
+   * @throws NullPointerException if key value is null
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int route(String key) {
+    throw new UnsupportedOperationException("Ordinal routing is not supported");
+  }
+
+  /**
+   * Returns the ordinal of the node for given long key, see {@link #route(String)}.
+   *
+   * @param key the key
+   * @return the ordinal, or -1 if there is no node
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int route(long key) {
+    return route(Long.toString(key));
+  }
+
+  /**
+   * Returns the ordinal of the node for given key hashed by {@code keyHasher}, see {@link
+   * #routeByHash(long)}.
+   *
+   * @param <K> the key type
+   * @param key the key
+   * @param keyHasher the key hasher
+   * @return the ordinal, or -1 if there is no node
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default <K> int route(K key, KeyHasher<? super K> keyHasher) {
+    return routeByHash(keyHasher.hash(key));
+  }
+
+  /**
+   * Returns the ordinal of the node {@link #getNodeByHash(long)} returns for given hash.
+   *
+   * @param hash the key hash
+   * @return the ordinal, or -1 if there is no node
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int routeByHash(long hash) {
+    throw new UnsupportedOperationException("Ordinal routing is not supported");
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of distinct healthy nodes for given key in the order
+   * the algorithm prefers them, the first being the one {@link #route(String)} returns: the
+   * successors on a ring, the next ranked nodes with rendezvous hashing.
+   *
+   * @param key the key
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled, fewer than {@code ordinals.length} if there are fewer
+   *     healthy nodes
+   * @throws NullPointerException if key or ordinals value is null
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int routeCandidates(String key, int[] ordinals) {
+    throw new UnsupportedOperationException("Ordinal routing is not supported");
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of distinct healthy nodes for given long key, see
+   * {@link #routeCandidates(String, int[])}.
+   *
+   * @param key the key
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int routeCandidates(long key, int[] ordinals) {
+    return routeCandidates(Long.toString(key), ordinals);
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of distinct healthy nodes for given hash, the first
+   * being the one {@link #routeByHash(long)} returns, see {@link #routeCandidates(String, int[])}.
+   *
+   * @param hash the key hash
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default int routeCandidatesByHash(long hash, int[] ordinals) {
+    throw new UnsupportedOperationException("Ordinal routing is not supported");
+  }
+
+  /**
+   * Returns the current ordinal to node table. The router publishes a new table on every topology
+   * change; a table can be kept and reused until then.
+   *
+   * @return the node table
+   * @throws UnsupportedOperationException if the router does not support ordinal routing
+   */
+  default NodeTable<N> getNodeTable() {
+    throw new UnsupportedOperationException("Ordinal routing is not supported");
+  }
+
+  /**
+   * Returns distinct nodes for given key, in the order the algorithm prefers them.
+   *
+   * @param key Any string value
+   * @param count the number of nodes
+   * @return at most {@code count} nodes, the first being the one {@link #getNode(String)} returns
+   * @throws NullPointerException if key value is null
+   * @throws UnsupportedOperationException if the router does not support multiple nodes per key
+   */
+  default List<N> getNodes(String key, int count) {
+    throw new UnsupportedOperationException("Multiple nodes per key are not supported");
+  }
+
+  /**
+   * Returns replicas for given key spread across failure domains: nodes in distinct zones first,
+   * then nodes on distinct racks, then any node, each in the order the algorithm prefers them.
+   *
+   * @param key Any string value
+   * @param count the number of replicas
+   * @return at most {@code count} nodes
+   * @throws NullPointerException if key value is null
+   * @throws UnsupportedOperationException if the router does not support multiple nodes per key
+   * @see Node#getFailureDomain()
+   */
+  default List<N> getNodesAcrossDomains(String key, int count) {
+    throw new UnsupportedOperationException("Multiple nodes per key are not supported");
+  }
+
+  /**
+   * Adds a node. A node with the id of a node already in the router replaces it.
+   *
    * @param node node to be added
    * @throws NullPointerException if {@code nodeId} is null
    */
@@ -63,4 +237,51 @@ public interface NodeRouter<N extends Node> {
   default void removeNodes(Iterable<String> nodeIds) {
     nodeIds.forEach(this::removeNode);
   }
+
+  /**
+   * Registers a listener called after each committed add or remove.
+   *
+   * @param listener the listener
+   * @throws NullPointerException if {@code listener} is null
+   * @throws UnsupportedOperationException if the router does not publish topology changes
+   */
+  default void addTopologyListener(TopologyListener<N> listener) {
+    throw new UnsupportedOperationException("Topology listeners are not supported");
+  }
+
+  /**
+   * Unregisters a listener.
+   *
+   * @param listener the listener
+   * @throws NullPointerException if {@code listener} is null
+   * @throws UnsupportedOperationException if the router does not publish topology changes
+   */
+  default void removeTopologyListener(TopologyListener<N> listener) {
+    throw new UnsupportedOperationException("Topology listeners are not supported");
+  }
+
+  /**
+   * Ejects a node for a time window without changing the topology. Lookups skip the node and fall
+   * through to the next node the algorithm would pick. Unknown node ids are ignored.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   * @throws NullPointerException if {@code nodeId} is null
+   * @throws UnsupportedOperationException if the router does not support ejection
+   */
+  default void markDown(String nodeId, long duration, TimeUnit unit) {
+    throw new UnsupportedOperationException("Node ejection is not supported");
+  }
+
+  /**
+   * Brings an ejected node back before its window ends.
+   *
+   * @param nodeId the node id
+   * @throws NullPointerException if {@code nodeId} is null
+   * @throws UnsupportedOperationException if the router does not support ejection
+   */
+  default void markUp(String nodeId) {
+    throw new UnsupportedOperationException("Node ejection is not supported");
+  }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable ordinal to node table published by a {@link NodeRouter} on every topology change,
+ * see {@link NodeRouter#route(String)}. Per-node state can be kept in arrays of {@link #size()}
+ * entries indexed by the ordinals the router returns.
+ *
+ * <p>Ordinals are dense and stable while their node stays in the router. The ordinal of a removed
+ * node is reused by the next added node, so state indexed by ordinal should be reset when a
+ * {@link TopologyListener} reports the change.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class NodeTable<N extends Node<?>> {
+
+  private static final NodeTable<?> EMPTY = new NodeTable<>(new Node<?>[0]);
+
+  private final @Nullable Node<?>[] nodes;
+  private final int nodeCount;
+  private final int zoneCount;
+  private final int rackCount;
+
+  private NodeTable(@Nullable Node<?>[] nodes) {
+    this.nodes = nodes;
+    int count = 0;
+    Set<String> zones = new HashSet<>();
+    Set<FailureDomain> racks = new HashSet<>();
+    for (Node<?> node : nodes) {
+      if (node != null) {
+        count++;
+        zones.add(node.getFailureDomain().getZone());
+        racks.add(node.getFailureDomain());
+      }
+    }
+    this.nodeCount = count;
+    this.zoneCount = zones.size();
+    this.rackCount = racks.size();
+  }
+
+  /**
+   * Returns the empty table.
+   *
+   * @param <N> the type parameter
+   * @return the node table
+   */
+  @SuppressWarnings("unchecked")
+  public static <N extends Node<?>> NodeTable<N> empty() {
+    return (NodeTable<N>) EMPTY;
+  }
+
+  /**
+   * Create node table, placing every node at its ordinal. Nodes without an ordinal are skipped.
+   *
+   * @param <N> the type parameter
+   * @param nodes the nodes
+   * @param ordinals the ordinals of the nodes
+   * @return the node table
+   */
+  public static <N extends Node<?>> NodeTable<N> of(Iterable<N> nodes, NodeOrdinals ordinals) {
+    Objects.requireNonNull(nodes);
+    Objects.requireNonNull(ordinals);
+
+    int size = 0;
+    for (N node : nodes) {
+      size = Math.max(size, ordinals.ordinalOf(node.getNodeId()) + 1);
+    }
+    if (size == 0) {
+      return empty();
+    }
+
+    Node<?>[] table = new Node<?>[size];
+    for (N node : nodes) {
+      int ordinal = ordinals.ordinalOf(node.getNodeId());
+      if (ordinal >= 0) {
+        table[ordinal] = node;
+      }
+    }
+    return new NodeTable<>(table);
+  }
+
+  /**
+   * Returns the number of slots, one more than the highest ordinal in use.
+   *
+   * @return the size
+   */
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * Returns the number of nodes, the slots not free.
+   *
+   * @return the node count
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the number of distinct zones of the nodes.
+   *
+   * @return the zone count
+   */
+  public int getZoneCount() {
+    return zoneCount;
+  }
+
+  /**
+   * Returns the number of distinct racks of the nodes, racks being told apart by zone and name.
+   *
+   * @return the rack count
+   */
+  public int getRackCount() {
+    return rackCount;
+  }
+
+  /**
+   * Returns the node at an ordinal.
+   *
+   * @param ordinal the ordinal
+   * @return the node, or null if the ordinal is free or out of range
+   */
+  @SuppressWarnings("unchecked")
+  public @Nullable N get(int ordinal) {
+    return ordinal >= 0 && ordinal < nodes.length ? (N) nodes[ordinal] : null;
+  }
+
+  /**
+   * Returns the nodes in ordinal order.
+   *
+   * @return the nodes
+   */
+  @SuppressWarnings("unchecked")
+  public List<N> getNodes() {
+    List<N> list = new ArrayList<>(nodes.length);
+    for (Node<?> node : nodes) {
+      if (node != null) {
+        list.add((N) node);
+      }
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  @Override
+  public String toString() {
+    return "NodeTable{" + "nodes=" + Arrays.toString(nodes) + '}';
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.api;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Java Flight Recorder events of {@link NodeRouter} implementations, so routing shows up in
+ * recordings next to the latency it causes.
+ *
+ * <ul>
+ *   <li>{@code io.github.ykayacan.hashing.Lookup}: a sampled lookup with its key hash and node.
+ *       Disabled by default; one in {@value #DEFAULT_LOOKUP_SAMPLE_RATE} lookups is recorded
+ *       once enabled, or one in the value of the {@value #LOOKUP_SAMPLE_RATE_PROPERTY} system
+ *       property.
+ *   <li>{@code io.github.ykayacan.hashing.TopologyChange}: a committed topology change with the
+ *       number of nodes and tokens it touched and the time it took. Changes are {@code ADDED},
+ *       {@code REMOVED}, {@code ACTIVATED} for a stage of staged activation and {@code WEIGHTS}
+ *       for a step of weight ramps.
+ * </ul>
+ *
+ * <p>Events are enabled in recording settings like any JFR event. While they are disabled, or on
+ * runtimes without {@code jdk.jfr}, emitting them costs a field read.
+ */
+public final class RoutingEvents {
+
+  /** The system property setting the lookup sample rate. */
+  public static final String LOOKUP_SAMPLE_RATE_PROPERTY =
+      "io.github.ykayacan.hashing.lookupSampleRate";
+
+  /** The default lookup sample rate. */
+  public static final int DEFAULT_LOOKUP_SAMPLE_RATE = 1024;
+
+  private static final Sink NOOP =
+      new Sink() {
+        @Override
+        public boolean isLookupSampled() {
+          return false;
+        }
+
+        @Override
+        public void lookup(Object router, long keyHash, @Nullable Node<?> node) {}
+
+        @Override
+        public boolean isTopologyChangeEnabled() {
+          return false;
+        }
+
+        @Override
+        public void topologyChange(
+            Object router, String change, int nodeCount, long tokenCount, long durationNanos) {}
+      };
+
+  private static final Sink SINK = createSink();
+
+  private RoutingEvents() {}
+
+  /** Loads the JFR sink by name, so runtimes without {@code jdk.jfr} never link it. */
+  private static Sink createSink() {
+    try {
+      return (Sink)
+          Class.forName(RoutingEvents.class.getPackage().getName() + ".JfrRoutingEvents")
+              .getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return NOOP;
+    }
+  }
+
+  static int lookupSampleRate() {
+    int sampleRate = Integer.getInteger(LOOKUP_SAMPLE_RATE_PROPERTY, DEFAULT_LOOKUP_SAMPLE_RATE);
+    return sampleRate > 0 ? sampleRate : DEFAULT_LOOKUP_SAMPLE_RATE;
+  }
+
+  /**
+   * Checks if the current lookup is sampled, cheap enough to call on every lookup.
+   *
+   * @return {@code true} if the lookup should be passed to {@link #lookup(Object, long, Node)}
+   */
+  public static boolean isLookupSampled() {
+    return SINK.isLookupSampled();
+  }
+
+  /**
+   * Records a sampled lookup.
+   *
+   * @param router the router
+   * @param keyHash the key hash
+   * @param node the chosen node or {@code null} if there is none
+   */
+  public static void lookup(Object router, long keyHash, @Nullable Node<?> node) {
+    SINK.lookup(router, keyHash, node);
+  }
+
+  /**
+   * Checks if topology changes are recorded, before timing a change.
+   *
+   * @return the boolean
+   */
+  public static boolean isTopologyChangeEnabled() {
+    return SINK.isTopologyChangeEnabled();
+  }
+
+  /**
+   * Records a topology change.
+   *
+   * @param router the router
+   * @param change the change, such as {@code ADDED} or {@code REMOVED}
+   * @param nodeCount the number of nodes touched
+   * @param tokenCount the number of tokens touched, or of nodes for routers without tokens
+   * @param durationNanos the time taken to apply the change and publish the new topology
+   */
+  public static void topologyChange(
+      Object router, String change, int nodeCount, long tokenCount, long durationNanos) {
+    SINK.topologyChange(router, change, nodeCount, tokenCount, durationNanos);
+  }
+
+  /** Receives the events, {@link JfrRoutingEvents} if the runtime has JFR. */
+  interface Sink {
+
+    boolean isLookupSampled();
+
+    void lookup(Object router, long keyHash, @Nullable Node<?> node);
+
+    boolean isTopologyChangeEnabled();
+
+    void topologyChange(
+        Object router, String change, int nodeCount, long tokenCount, long durationNanos);
+  }
+}
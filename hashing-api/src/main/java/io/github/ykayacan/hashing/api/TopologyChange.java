@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A committed topology change of a {@link NodeRouter}.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class TopologyChange<N extends Node<?>> {
+
+  private final Type type;
+  private final List<N> nodes;
+  private final List<HashRange<N>> ranges;
+
+  private TopologyChange(Type type, List<N> nodes, List<HashRange<N>> ranges) {
+    this.type = type;
+    this.nodes = nodes;
+    this.ranges = ranges;
+  }
+
+  /**
+   * Create topology change.
+   *
+   * @param <N> the type parameter
+   * @param type the type
+   * @param nodes the added or removed nodes
+   * @param ranges the hash ranges that changed owner
+   * @return the topology change
+   */
+  public static <N extends Node<?>> TopologyChange<N> of(
+      Type type, List<N> nodes, List<HashRange<N>> ranges) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(nodes);
+    Objects.requireNonNull(ranges);
+    return new TopologyChange<>(
+        type, Collections.unmodifiableList(nodes), Collections.unmodifiableList(ranges));
+  }
+
+  /**
+   * Gets type.
+   *
+   * @return the type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Gets the added or removed nodes.
+   *
+   * @return the nodes
+   */
+  public List<N> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Gets the hash ranges that changed owner. Routers that do not partition the hash space, such as
+   * rendezvous routers, report no ranges; every key of a removed node, or any key that now scores
+   * highest on an added node, moved.
+   *
+   * @return the ranges
+   */
+  public List<HashRange<N>> getRanges() {
+    return ranges;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TopologyChange)) {
+      return false;
+    }
+    TopologyChange<?> that = (TopologyChange<?>) o;
+    return type == that.type && nodes.equals(that.nodes) && ranges.equals(that.ranges);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, nodes, ranges);
+  }
+
+  @Override
+  public String toString() {
+    return "TopologyChange{" + "type=" + type + ", nodes=" + nodes + ", ranges=" + ranges + '}';
+  }
+
+  /** The type of change. */
+  public enum Type {
+    ADDED,
+    REMOVED
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A committed topology change, see {@link RoutingEvents}. */
+@Name("io.github.ykayacan.hashing.TopologyChange")
+@Label("Topology Change")
+@Category({"Hashing", "Routing"})
+@Description("Nodes added to or removed from a router, or a step of their activation")
+@StackTrace(false)
+final class TopologyChangeEvent extends Event {
+
+  @Label("Router")
+  String router;
+
+  @Label("Change")
+  String change;
+
+  @Label("Nodes")
+  int nodeCount;
+
+  @Label("Tokens")
+  @Description("Tokens added or removed, or nodes for routers without tokens")
+  long tokenCount;
+
+  @Label("Rebuild Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long rebuildDuration;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+/**
+ * Listener notified after each committed topology change of a {@link NodeRouter}.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+@FunctionalInterface
+public interface TopologyListener<N extends Node<?>> {
+
+  /**
+   * Called after nodes were added to or removed from a router. Changes of a router are delivered
+   * one at a time, in the order they were committed.
+   *
+   * @param change the change
+   */
+  void onTopologyChange(TopologyChange<N> change);
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.api;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registry of {@link TopologyListener}s for {@link NodeRouter} implementations.
+ *
+ * <p>Changes are queued and delivered on the given executor, so a slow listener never blocks the
+ * mutation path or lookups. Only one delivery runs at a time, so listeners see changes in commit
+ * order even on a multi-threaded executor.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class TopologyListeners<N extends Node<?>> {
+
+  private final List<TopologyListener<N>> listeners = new CopyOnWriteArrayList<>();
+  private final Queue<TopologyChange<N>> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private final Executor executor;
+
+  private TopologyListeners(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Create topology listeners.
+   *
+   * @param <N> the type parameter
+   * @param executor the executor listeners are called on
+   * @return the topology listeners
+   */
+  public static <N extends Node<?>> TopologyListeners<N> create(Executor executor) {
+    Objects.requireNonNull(executor);
+    return new TopologyListeners<>(executor);
+  }
+
+  /**
+   * Adds a listener.
+   *
+   * @param listener the listener
+   */
+  public void add(TopologyListener<N> listener) {
+    listeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @param listener the listener
+   */
+  public void remove(TopologyListener<N> listener) {
+    listeners.remove(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Checks if no listener is registered, so routers can skip computing changes.
+   *
+   * @return the boolean
+   */
+  public boolean isEmpty() {
+    return listeners.isEmpty();
+  }
+
+  /**
+   * Queues a change for delivery to all listeners.
+   *
+   * @param change the change
+   */
+  public void fire(TopologyChange<N> change) {
+    Objects.requireNonNull(change);
+
+    pending.add(change);
+    scheduleDrain();
+  }
+
+  private void scheduleDrain() {
+    if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      TopologyChange<N> change;
+      while ((change = pending.poll()) != null) {
+        for (TopologyListener<N> listener : listeners) {
+          notify(listener, change);
+        }
+      }
+    } finally {
+      draining.set(false);
+      scheduleDrain();
+    }
+  }
+
+  private void notify(TopologyListener<N> listener, TopologyChange<N> change) {
+    try {
+      listener.onTopologyChange(change);
+    } catch (RuntimeException e) {
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+  }
+}
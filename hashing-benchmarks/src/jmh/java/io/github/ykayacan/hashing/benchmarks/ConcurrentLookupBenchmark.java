@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.benchmarks;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.consistent.RingStorage;
+import io.github.ykayacan.hashing.rendezvous.RendezvousNodeRouter;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import io.github.ykayacan.hashing.rendezvous.strategy.DefaultRendezvousStrategy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup latency of the routers while the topology changes.
+ *
+ * <p>In the {@code churn} group reader threads look keys up while one writer thread keeps removing
+ * a node and adding it back. The {@code steady} group runs the same readers without a writer, as
+ * the baseline. Sample time mode reports the p99 and p999 of every lookup. The number of readers
+ * can be changed with {@code -tg}, such as {@code -tg 7,1} for seven readers and one writer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentLookupBenchmark {
+
+  private static final int KEY_COUNT = 1 << 16;
+
+  @Param({"CONSISTENT_SKIP_LIST", "CONSISTENT_OFF_HEAP", "CONSISTENT_COMPACT", "RENDEZVOUS"})
+  RouterType routerType;
+
+  @Param({"10", "100"})
+  int nodeCount;
+
+  @Param({"100"})
+  int replicaCount;
+
+  private Topology<?> topology;
+
+  private String[] keys;
+
+  @Setup
+  public void setUp() {
+    topology = routerType.create(nodeCount, replicaCount, MurMurHashFunction.create());
+    keys = IntStream.range(0, KEY_COUNT).mapToObj(i -> "key" + i).toArray(String[]::new);
+  }
+
+  @Benchmark
+  @Group("churn")
+  @GroupThreads(3)
+  public Optional<? extends Node<?>> churnLookup(Reader reader) {
+    return topology.router.getNode(keys[reader.nextKey()]);
+  }
+
+  @Benchmark
+  @Group("churn")
+  @GroupThreads(1)
+  public void churnWriter(Writer writer) {
+    topology.churn(writer.nextNode(nodeCount));
+  }
+
+  @Benchmark
+  @Group("steady")
+  @GroupThreads(3)
+  public Optional<? extends Node<?>> steadyLookup(Reader reader) {
+    return topology.router.getNode(keys[reader.nextKey()]);
+  }
+
+  /** The routers under test. */
+  public enum RouterType {
+    CONSISTENT_SKIP_LIST {
+      @Override
+      Topology<?> create(int nodeCount, int replicaCount, HashFunction hashFunction) {
+        return consistent(nodeCount, replicaCount, hashFunction, RingStorage.SKIP_LIST);
+      }
+    },
+    CONSISTENT_OFF_HEAP {
+      @Override
+      Topology<?> create(int nodeCount, int replicaCount, HashFunction hashFunction) {
+        return consistent(nodeCount, replicaCount, hashFunction, RingStorage.OFF_HEAP);
+      }
+    },
+    CONSISTENT_COMPACT {
+      @Override
+      Topology<?> create(int nodeCount, int replicaCount, HashFunction hashFunction) {
+        return consistent(nodeCount, replicaCount, hashFunction, RingStorage.COMPACT);
+      }
+    },
+    RENDEZVOUS {
+      @Override
+      Topology<?> create(int nodeCount, int replicaCount, HashFunction hashFunction) {
+        List<WeightedNode<?>> nodes = nodes(nodeCount, WeightedNode::of);
+        return new Topology<>(
+            RendezvousNodeRouter.create(nodes, hashFunction, DefaultRendezvousStrategy.create()),
+            nodes);
+      }
+    };
+
+    private static Topology<?> consistent(
+        int nodeCount, int replicaCount, HashFunction hashFunction, RingStorage ringStorage) {
+      List<PhysicalNode<?>> nodes = nodes(nodeCount, PhysicalNode::of);
+      return new Topology<>(
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+              .initialNodes(nodes)
+              .replicaCount(replicaCount)
+              .ringStorage(ringStorage)
+              .build(),
+          nodes);
+    }
+
+    private static <N extends Node<?>> List<N> nodes(int nodeCount, Function<String, N> factory) {
+      return IntStream.range(0, nodeCount)
+          .mapToObj(i -> factory.apply("node" + i))
+          .collect(Collectors.toList());
+    }
+
+    abstract Topology<?> create(int nodeCount, int replicaCount, HashFunction hashFunction);
+  }
+
+  /** A router with the nodes the writer churns. */
+  static final class Topology<N extends Node<?>> {
+    private final NodeRouter<N> router;
+    private final List<N> nodes;
+
+    Topology(NodeRouter<N> router, List<N> nodes) {
+      this.router = router;
+      this.nodes = nodes;
+    }
+
+    void churn(int index) {
+      N node = nodes.get(index);
+      router.removeNode(node.getNodeId());
+      router.addNode(node);
+    }
+  }
+
+  /** Per reader thread position in the keys. */
+  @State(Scope.Thread)
+  public static class Reader {
+    private int index;
+
+    int nextKey() {
+      index = (index + 1) & (KEY_COUNT - 1);
+      return index;
+    }
+  }
+
+  /** Per writer thread position in the nodes. */
+  @State(Scope.Thread)
+  public static class Writer {
+    private int index;
+
+    int nextNode(int nodeCount) {
+      index = index + 1 == nodeCount ? 0 : index + 1;
+      return index;
+    }
+  }
+}
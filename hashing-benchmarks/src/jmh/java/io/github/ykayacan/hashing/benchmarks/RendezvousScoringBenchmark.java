@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.benchmarks;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import io.github.ykayacan.hashing.rendezvous.strategy.DefaultRendezvousStrategy;
+import io.github.ykayacan.hashing.rendezvous.strategy.NodeSnapshot;
+import io.github.ykayacan.hashing.rendezvous.strategy.RendezvousStrategy;
+import io.github.ykayacan.hashing.rendezvous.strategy.WeightedRendezvousStrategy;
+import io.github.ykayacan.hashing.rendezvous.strategy.WeightedScoring;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of scoring every node for one key hash. The {@code collection} benchmark hashes each node
+ * id per lookup; the {@code snapshot} benchmark scores the precomputed seeds of a {@link
+ * NodeSnapshot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RendezvousScoringBenchmark {
+
+  private static final int KEY_COUNT = 1 << 12;
+
+  @Param({"DEFAULT", "WEIGHTED", "WEIGHTED_FAST"})
+  StrategyType strategyType;
+
+  @Param({"10", "100", "1000"})
+  int nodeCount;
+
+  private RendezvousStrategy<WeightedNode<?>> strategy;
+
+  private HashFunction hashFunction;
+
+  private List<WeightedNode<?>> nodes;
+
+  private NodeSnapshot<WeightedNode<?>> snapshot;
+
+  private long[] hashes;
+
+  private int index;
+
+  @Setup
+  public void setUp() {
+    strategy = strategyType.create();
+    hashFunction = MurMurHashFunction.create();
+    nodes =
+        IntStream.range(0, nodeCount)
+            .mapToObj(i -> WeightedNode.newBuilder("node" + i).weight(1 + i % 4).build())
+            .collect(Collectors.toList());
+    snapshot = NodeSnapshot.of(nodes, hashFunction);
+    hashes = IntStream.range(0, KEY_COUNT).mapToLong(i -> hashFunction.hash("key" + i)).toArray();
+  }
+
+  @Benchmark
+  public Optional<WeightedNode<?>> collection() {
+    return strategy.getNodeByHash(nextHash(), nodes, hashFunction);
+  }
+
+  @Benchmark
+  public Optional<WeightedNode<?>> snapshot() {
+    return strategy.getNodeByHash(nextHash(), snapshot);
+  }
+
+  private long nextHash() {
+    index = (index + 1) & (KEY_COUNT - 1);
+    return hashes[index];
+  }
+
+  /** The strategies under test. */
+  public enum StrategyType {
+    DEFAULT {
+      @Override
+      RendezvousStrategy<WeightedNode<?>> create() {
+        return DefaultRendezvousStrategy.create();
+      }
+    },
+    WEIGHTED {
+      @Override
+      RendezvousStrategy<WeightedNode<?>> create() {
+        return WeightedRendezvousStrategy.create();
+      }
+    },
+    WEIGHTED_FAST {
+      @Override
+      RendezvousStrategy<WeightedNode<?>> create() {
+        return WeightedRendezvousStrategy.create(WeightedScoring.FAST);
+      }
+    };
+
+    abstract RendezvousStrategy<WeightedNode<?>> create();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.benchmarks;
+
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.consistent.RingStorage;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Memory and lookup cost of the ring storages. The setup measures the heap and direct memory the
+ * ring retains per virtual node, after a full GC, and prints it next to the size the router
+ * reports; the benchmark then times lookups on that ring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingFootprintBenchmark {
+
+  private static final int KEY_COUNT = 1 << 16;
+
+  @Param({"SKIP_LIST", "OFF_HEAP", "COMPACT"})
+  RingStorage ringStorage;
+
+  @Param({"100", "1000"})
+  int nodeCount;
+
+  @Param({"200"})
+  int replicaCount;
+
+  private ConsistentNodeRouter<PhysicalNode<?>> router;
+
+  private String[] keys;
+
+  private int index;
+
+  @Setup
+  public void setUp() {
+    List<PhysicalNode<?>> nodes =
+        IntStream.range(0, nodeCount)
+            .mapToObj(i -> PhysicalNode.of("node" + i))
+            .collect(Collectors.toList());
+    keys = IntStream.range(0, KEY_COUNT).mapToObj(i -> "key" + i).toArray(String[]::new);
+
+    // the physical nodes are allocated before measuring, so only the ring is counted
+    long before = usedMemory();
+    router =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+            .replicaCount(replicaCount)
+            .ringStorage(ringStorage)
+            .build();
+    router.addNodes(nodes);
+    long retained = usedMemory() - before;
+
+    System.out.printf(
+        "%n%s: measured %.1f bytes per virtual node, reported %.1f%n",
+        ringStorage,
+        (double) retained / ((long) nodeCount * replicaCount),
+        router.getBytesPerVirtualNode());
+  }
+
+  private static long usedMemory() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        used += pool.getMemoryUsed();
+      }
+    }
+    return used;
+  }
+
+  @Benchmark
+  public Optional<PhysicalNode<?>> lookup() {
+    index = (index + 1) & (KEY_COUNT - 1);
+    return router.getNode(keys[index]);
+  }
+}
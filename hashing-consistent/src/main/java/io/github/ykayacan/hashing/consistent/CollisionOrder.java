@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashFunction128;
+
+/**
+ * Orders virtual nodes whose 64-bit tokens collide.
+ *
+ * <p>Colliding virtual nodes are all kept on the ring, next to each other, and the first one owns
+ * the hashes up to the token; the others take over when it leaves. With a {@link HashFunction128}
+ * {@link TokenAllocation#HASHED hashed} tokens are 128 bits wide and colliding virtual nodes are
+ * ordered by the low 64 bits of their tokens, otherwise by node id, as balanced tokens are not
+ * derived from the node and have no low half. The order only depends on the virtual nodes, never
+ * on the order they were added in, so every router agrees on the owner of a collided token.
+ *
+ * <p>Collisions are rare, so the replica index of a colliding virtual node is recovered by
+ * recomputing the tokens of its physical node instead of being stored for every virtual node.
+ */
+final class CollisionOrder {
+
+  private final HashFunction hashFunction;
+  private final TokenScheme tokenScheme;
+  private final int replicaCount;
+  private final boolean wideTokens;
+
+  private CollisionOrder(
+      HashFunction hashFunction,
+      TokenScheme tokenScheme,
+      int replicaCount,
+      TokenAllocation tokenAllocation) {
+    this.hashFunction = hashFunction;
+    this.tokenScheme = tokenScheme;
+    this.replicaCount = replicaCount;
+    this.wideTokens =
+        hashFunction instanceof HashFunction128 && tokenAllocation == TokenAllocation.HASHED;
+  }
+
+  /**
+   * Create collision order.
+   *
+   * @param hashFunction the hash function
+   * @param tokenScheme the token scheme
+   * @param replicaCount the replica count
+   * @param tokenAllocation the token allocation
+   * @return the collision order
+   */
+  static CollisionOrder create(
+      HashFunction hashFunction,
+      TokenScheme tokenScheme,
+      int replicaCount,
+      TokenAllocation tokenAllocation) {
+    return new CollisionOrder(hashFunction, tokenScheme, replicaCount, tokenAllocation);
+  }
+
+  /**
+   * Compares two virtual nodes sharing a token. Virtual nodes of the same physical node compare
+   * equal, a physical node with several virtual nodes at the token is ranked by its first one.
+   *
+   * @param a the owner of the first virtual node
+   * @param b the owner of the second virtual node
+   * @param token the shared token
+   * @return a negative value if the first virtual node comes first
+   */
+  int compare(PhysicalNode<?> a, PhysicalNode<?> b, long token) {
+    if (a.getNodeId().equals(b.getNodeId())) {
+      return 0;
+    }
+    if (wideTokens) {
+      int comparison = Long.compare(tokenLowOf(a, token), tokenLowOf(b, token));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return a.getNodeId().compareTo(b.getNodeId());
+  }
+
+  /** The lowest low half among the virtual nodes of a physical node at a token. */
+  private long tokenLowOf(PhysicalNode<?> node, long token) {
+    long baseHash = tokenScheme.baseHash(hashFunction, node.getNodeId());
+    long tokenLow = Long.MAX_VALUE;
+    boolean found = false;
+    for (int replicaIndex = 0; replicaIndex < replicaCount; replicaIndex++) {
+      if (tokenScheme.token(hashFunction, node, baseHash, replicaIndex) == token) {
+        long low = tokenScheme.tokenLow((HashFunction128) hashFunction, node, replicaIndex);
+        tokenLow = Math.min(tokenLow, low);
+        found = true;
+      }
+    }
+    if (!found) {
+      throw new IllegalStateException("No virtual node of " + node.getNodeId() + " at " + token);
+    }
+    return tokenLow;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.util.Arrays;
+
+/**
+ * {@link Ring} keeping sorted tokens in a {@code long[]} and their owner ordinals in a parallel
+ * {@code char[]}, or an {@code int[]} past 65536 physical nodes.
+ *
+ * <p>A virtual node costs 10 bytes and no object, where a {@link SkipListRing} entry costs a map
+ * node, its index nodes, a boxed token and a {@link VirtualNode}. Lookups and mutations are those
+ * of {@link SortedArrayRing}.
+ *
+ * @param <N> the type parameter
+ */
+final class CompactRing<N extends PhysicalNode<?>> extends SortedArrayRing<N> {
+
+  /** Up to this many ordinals fit the {@code char[]} owners. */
+  private static final int SMALL_ORDINALS = 1 << 16;
+
+  CompactRing(CollisionOrder collisionOrder, NodeOrdinals ordinals) {
+    super(collisionOrder, ordinals);
+  }
+
+  @Override
+  Storage allocate(int capacity, int ordinalCount) {
+    return ordinalCount > SMALL_ORDINALS
+        ? new WideStorage(new long[capacity], new int[capacity])
+        : new SmallStorage(new long[capacity], new char[capacity]);
+  }
+
+  /** Tokens with {@code char} owners. */
+  private static final class SmallStorage implements Storage {
+    private final long[] tokens;
+    private final char[] owners;
+
+    private SmallStorage(long[] tokens, char[] owners) {
+      this.tokens = tokens;
+      this.owners = owners;
+    }
+
+    @Override
+    public long tokenAt(int index) {
+      return tokens[index];
+    }
+
+    @Override
+    public int ownerAt(int index) {
+      return owners[index];
+    }
+
+    @Override
+    public void put(int index, long token, int owner) {
+      tokens[index] = token;
+      owners[index] = (char) owner;
+    }
+
+    @Override
+    public Storage trim(int size) {
+      return size == tokens.length
+          ? this
+          : new SmallStorage(Arrays.copyOf(tokens, size), Arrays.copyOf(owners, size));
+    }
+
+    /** The token and owner arrays, object headers excluded. */
+    @Override
+    public long sizeInBytes(int size) {
+      return (long) size * (Long.BYTES + Character.BYTES);
+    }
+  }
+
+  /** Tokens with {@code int} owners. */
+  private static final class WideStorage implements Storage {
+    private final long[] tokens;
+    private final int[] owners;
+
+    private WideStorage(long[] tokens, int[] owners) {
+      this.tokens = tokens;
+      this.owners = owners;
+    }
+
+    @Override
+    public long tokenAt(int index) {
+      return tokens[index];
+    }
+
+    @Override
+    public int ownerAt(int index) {
+      return owners[index];
+    }
+
+    @Override
+    public void put(int index, long token, int owner) {
+      tokens[index] = token;
+      owners[index] = owner;
+    }
+
+    @Override
+    public Storage trim(int size) {
+      return size == tokens.length
+          ? this
+          : new WideStorage(Arrays.copyOf(tokens, size), Arrays.copyOf(owners, size));
+    }
+
+    /** The token and owner arrays, object headers excluded. */
+    @Override
+    public long sizeInBytes(int size) {
+      return (long) size * (Long.BYTES + Integer.BYTES);
+    }
+  }
+}
@@ -16,39 +16,132 @@
 
 package io.github.ykayacan.hashing.consistent;
 
+import io.github.ykayacan.hashing.api.DomainPlacement;
 import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashFunction128;
+import io.github.ykayacan.hashing.api.HashRange;
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
 import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.RoutingEvents;
+import io.github.ykayacan.hashing.api.TopologyChange;
+import io.github.ykayacan.hashing.api.TopologyListener;
+import io.github.ykayacan.hashing.api.TopologyListeners;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.NavigableMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import org.checkerframework.checker.index.qual.Positive;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-public class ConsistentNodeRouter<N extends PhysicalNode> implements NodeRouter<N> {
+public class ConsistentNodeRouter<N extends PhysicalNode<?>> implements NodeRouter<N> {
+
+  /** Up to this many nodes are deduplicated by a linear scan instead of a hash set */
+  private static final int SMALL_COUNT = 8;
 
   /** All the current nodes in the pool */
-  private final NavigableMap<Long, VirtualNode<N>> ring;
+  private final Ring<N> ring;
 
   private final HashFunction hashFunction;
 
   private final int replicaCount;
 
+  private final TokenScheme tokenScheme;
+
+  private final TokenAllocation tokenAllocation;
+
+  private final CollisionOrder collisionOrder;
+
+  private final TopologyListeners<N> listeners;
+
+  private final NodeOrdinals ordinals = NodeOrdinals.create();
+
+  private final NodeHealth health = NodeHealth.create();
+
+  private final Predicate<N> healthy =
+      node -> !health.isDown(ordinals.ordinalOf(node.getNodeId()));
+
+  /** Serializes ring mutations with the computation of their topology changes */
+  private final Object mutationLock = new Object();
+
+  private volatile NodeTable<N> nodeTable = NodeTable.empty();
+
+  private final int activationStages;
+
+  private final long activationIntervalNanos;
+
+  @Nullable private final ScheduledExecutorService activationScheduler;
+
+  /** Nodes still being activated, guarded by {@code mutationLock}. */
+  private final List<Activation<N>> activations = new ArrayList<>();
+
+  /** Guarded by {@code mutationLock}. */
+  private boolean activationScheduled;
+
   private ConsistentNodeRouter(
-      Collection<N> initialNodes, int replicaCount, HashFunction hashFunction) {
+      Collection<N> initialNodes,
+      int replicaCount,
+      HashFunction hashFunction,
+      RingStorage ringStorage,
+      TokenScheme tokenScheme,
+      TokenAllocation tokenAllocation,
+      Executor listenerExecutor,
+      int activationStages,
+      long activationIntervalNanos,
+      @Nullable ScheduledExecutorService activationScheduler) {
     Objects.requireNonNull(initialNodes);
     Objects.requireNonNull(hashFunction);
+    Objects.requireNonNull(ringStorage);
+    Objects.requireNonNull(tokenScheme);
+    Objects.requireNonNull(tokenAllocation);
+    Objects.requireNonNull(listenerExecutor);
 
     if (replicaCount < 0) {
       throw new IllegalArgumentException("Illegal partition count: " + replicaCount);
     }
 
-    this.ring = new ConcurrentSkipListMap<>();
+    this.collisionOrder =
+        CollisionOrder.create(hashFunction, tokenScheme, replicaCount, tokenAllocation);
+    this.ring = createRing(ringStorage, collisionOrder, ordinals);
     this.replicaCount = replicaCount;
     this.hashFunction = hashFunction;
-    initialNodes.forEach(this::addNode);
+    this.tokenScheme = tokenScheme;
+    this.tokenAllocation = tokenAllocation;
+    this.listeners = TopologyListeners.create(listenerExecutor);
+    this.activationStages = activationStages;
+    this.activationIntervalNanos = activationIntervalNanos;
+    this.activationScheduler = activationScheduler;
+    addNodes(initialNodes, false);
+  }
+
+  private static <N extends PhysicalNode<?>> Ring<N> createRing(
+      RingStorage ringStorage, CollisionOrder collisionOrder, NodeOrdinals ordinals) {
+    switch (ringStorage) {
+      case OFF_HEAP:
+        return new OffHeapRing<>(collisionOrder, ordinals);
+      case COMPACT:
+        return new CompactRing<>(collisionOrder, ordinals);
+      case SKIP_LIST:
+      default:
+        return new SkipListRing<>(collisionOrder, ordinals);
+    }
   }
 
   /**
@@ -59,7 +152,7 @@ public class ConsistentNodeRouter<N extends PhysicalNode> implements NodeRouter<
    * @param hashFunction the hash function
    * @return the node router
    */
-  public static <N extends PhysicalNode> NodeRouter<N> create(
+  public static <N extends PhysicalNode<?>> NodeRouter<N> create(
       @Positive int replicaCount, HashFunction hashFunction) {
     return create(Collections.emptyList(), replicaCount, hashFunction);
   }
@@ -73,31 +166,385 @@ public class ConsistentNodeRouter<N extends PhysicalNode> implements NodeRouter<
    * @param hashFunction the hash function
    * @return the node router
    */
-  public static <N extends PhysicalNode> NodeRouter<N> create(
+  public static <N extends PhysicalNode<?>> NodeRouter<N> create(
       Collection<N> initialNodes, int replicaCount, HashFunction hashFunction) {
-    return new ConsistentNodeRouter<>(initialNodes, replicaCount, hashFunction);
+    return ConsistentNodeRouter.<N>newBuilder(hashFunction)
+        .initialNodes(initialNodes)
+        .replicaCount(replicaCount)
+        .build();
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * <p>Virtual nodes whose tokens collide are all kept on the ring and the first of them, in a
+   * deterministic order, owns the hashes up to the token. With a {@link HashFunction128} tokens are
+   * 128 bits wide and colliding tokens are ordered by their low 64 bits, otherwise by node id.
+   * Keys are always located by the 64-bit {@link HashFunction#hash(String)}, so lookups cost the
+   * same in both modes.
+   *
+   * @param <N> the type parameter
+   * @param hashFunction the hash function
+   * @return the builder
+   */
+  public static <N extends PhysicalNode<?>> Builder<N> newBuilder(HashFunction hashFunction) {
+    return new Builder<>(hashFunction);
   }
 
   @Override
   public Optional<N> getNode(@NonNull String nodeId) {
     Objects.requireNonNull(nodeId);
 
+    return getNodeByHash(hashFunction.hash(nodeId));
+  }
+
+  @Override
+  public Optional<N> getNode(long key) {
+    return getNodeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(keyHasher);
+
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  /**
+   * Returns the first healthy node clockwise from the hash, the node {@link #getNode(String)}
+   * returns for a key with this hash.
+   *
+   * @param hash the key hash
+   * @return the node
+   */
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    return Optional.ofNullable(nodeFor(hash));
+  }
+
+  @Override
+  public int route(String key) {
+    Objects.requireNonNull(key);
+
+    return routeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public int route(long key) {
+    return routeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public int routeByHash(long hash) {
+    int ordinal = ring.ceilingOrdinal(hash);
+    if (ordinal >= 0
+        && ((health.hasDown() && health.isDown(ordinal)) || RoutingEvents.isLookupSampled())) {
+      N node = nodeFor(hash);
+      ordinal = node == null ? -1 : ordinals.ordinalOf(node.getNodeId());
+    }
+    return ordinal;
+  }
+
+  @Override
+  public int routeCandidates(String key, int[] ordinals) {
+    Objects.requireNonNull(key);
+
+    return routeCandidatesByHash(hashFunction.hash(key), ordinals);
+  }
+
+  @Override
+  public int routeCandidates(long key, int[] ordinals) {
+    return routeCandidatesByHash(hashFunction.hash(key), ordinals);
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of the first distinct healthy nodes clockwise from the
+   * hash, walking the ring on primitives without allocating.
+   *
+   * @param hash the key hash
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   */
+  @Override
+  public int routeCandidatesByHash(long hash, int[] ordinals) {
+    Objects.requireNonNull(ordinals);
+
+    return ring.ceilingOrdinals(hash, ordinals, health);
+  }
+
+  @Override
+  public NodeTable<N> getNodeTable() {
+    return nodeTable;
+  }
+
+  /**
+   * Gets the bytes the ring holds per virtual node, excluding the physical nodes. On-heap sizes are
+   * estimated for a 64-bit JVM with compressed references. Takes linear time with {@link
+   * RingStorage#SKIP_LIST}.
+   *
+   * @return the bytes per virtual node, 0 if the ring is empty
+   */
+  public double getBytesPerVirtualNode() {
+    int size = ring.size();
+    return size == 0 ? 0 : (double) ring.sizeInBytes() / size;
+  }
+
+  private @Nullable N nodeFor(long hash) {
     if (ring.isEmpty()) {
-      return Optional.empty();
+      return null;
     }
 
-    Long nodeHash = ring.ceilingKey(hashFunction.hash(nodeId));
-    return Optional.ofNullable(ring.get(nodeHash)).map(VirtualNode::getPhysicalNode);
+    N node = ring.ceiling(hash);
+    if (node != null && health.hasDown() && !healthy.test(node)) {
+      node = ring.ceiling(hash, healthy);
+    }
+    if (RoutingEvents.isLookupSampled()) {
+      RoutingEvents.lookup(this, hash, node);
+    }
+    return node;
+  }
+
+  /**
+   * Gets the first {@code count} distinct healthy nodes clockwise from the key, walking the ring
+   * once.
+   *
+   * @param key the key
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  @Override
+  public List<N> getNodes(String key, int count) {
+    Objects.requireNonNull(key);
+    checkCount(count);
+
+    if (count == 0 || ring.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<N> nodes = new ArrayList<>(Math.min(count, SMALL_COUNT));
+    Set<String> nodeIds = count > SMALL_COUNT ? new HashSet<>() : null;
+    boolean skipDown = health.hasDown();
+    ring.ceiling(
+        hashFunction.hash(key),
+        node -> {
+          if ((!skipDown || healthy.test(node))
+              && (nodeIds == null ? !containsNode(nodes, node) : nodeIds.add(node.getNodeId()))) {
+            nodes.add(node);
+          }
+          return nodes.size() >= count;
+        });
+    return nodes;
+  }
+
+  private static boolean containsNode(List<? extends PhysicalNode<?>> nodes, PhysicalNode<?> node) {
+    for (int i = 0; i < nodes.size(); i++) {
+      if (nodes.get(i).getNodeId().equals(node.getNodeId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets {@code count} healthy nodes clockwise from the key spread across distinct zones, then
+   * racks, see {@link DomainPlacement}. The ring is walked once and the walk stops as soon as
+   * more nodes cannot change the replicas, or every node was seen.
+   *
+   * @param key the key
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  @Override
+  public List<N> getNodesAcrossDomains(String key, int count) {
+    Objects.requireNonNull(key);
+    checkCount(count);
+
+    if (count == 0 || ring.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    NodeTable<N> table = nodeTable;
+    DomainPlacement<N> placement = DomainPlacement.create(count, table);
+    boolean skipDown = health.hasDown();
+    BitSet seen = new BitSet(table.size());
+    ring.ceiling(
+        hashFunction.hash(key),
+        node -> {
+          int ordinal = ordinals.ordinalOf(node.getNodeId());
+          if (ordinal < 0 || seen.get(ordinal)) {
+            return false;
+          }
+          seen.set(ordinal);
+          return ((!skipDown || healthy.test(node)) && placement.offer(node))
+              || seen.cardinality() >= table.getNodeCount();
+        });
+    return placement.getReplicas();
+  }
+
+  private static void checkCount(int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal node count: " + count);
+    }
   }
 
   @Override
   public void addNode(N node) {
     Objects.requireNonNull(node);
 
-    for (int i = 0; i < replicaCount; i++) {
-      VirtualNode<N> virtualNode = VirtualNode.create(node, i);
-      long hash = hashFunction.hash(virtualNode.getNodeId());
-      ring.put(hash, virtualNode);
+    addNodes(Collections.singletonList(node));
+  }
+
+  /**
+   * Adds all nodes in a single step. Virtual nodes are hashed in parallel and their tokens are
+   * sorted once, which is much faster than adding nodes one by one. A {@link
+   * RingStorage#SKIP_LIST} ring inserts them in place, other rings are copied and published
+   * atomically. With {@link TokenAllocation#BALANCED} tokens are placed one node at a time, in
+   * node id order, against the current ring. With {@link Builder#stagedActivation(int) staged
+   * activation} only the first stage of their tokens is added.
+   *
+   * @param nodes nodes to be added
+   * @throws NullPointerException if {@code nodes} is null
+   */
+  @Override
+  public void addNodes(Iterable<N> nodes) {
+    addNodes(nodes, activationStages > 1 && replicaCount > 1);
+  }
+
+  private void addNodes(Iterable<N> nodes, boolean staged) {
+    Objects.requireNonNull(nodes);
+
+    if (!nodes.iterator().hasNext()) {
+      return;
+    }
+    boolean recorded = RoutingEvents.isTopologyChangeEnabled();
+    long start = recorded ? System.nanoTime() : 0L;
+    @Nullable TokenBatch<N> hashedBatch =
+        tokenAllocation == TokenAllocation.HASHED
+            ? TokenBatch.create(nodes, replicaCount, hashFunction, tokenScheme, collisionOrder)
+            : null;
+    synchronized (mutationLock) {
+      TokenBatch<N> batch =
+          hashedBatch != null
+              ? hashedBatch
+              : TokenAllocator.allocate(
+                  ring, ordinals, nodes, replicaCount, hashFunction, collisionOrder);
+      batch.getNodes().forEach(node -> ordinals.assign(node.getNodeId()));
+      batch.getNodes().forEach(node -> dropActivation(node.getNodeId()));
+      TokenBatch<N> published = batch;
+      if (!staged) {
+        ring.add(batch);
+      } else {
+        Activation<N> activation = new Activation<>(batch);
+        activations.add(activation);
+        published = activation.stage(activationReplicas(1));
+        ring.add(published);
+        scheduleActivation();
+      }
+      List<N> tableNodes = new ArrayList<>(nodeTable.getNodes());
+      tableNodes.addAll(batch.getNodes());
+      nodeTable = NodeTable.of(tableNodes, ordinals);
+      if (recorded) {
+        RoutingEvents.topologyChange(
+            this, "ADDED", batch.getNodes().size(), published.size(), System.nanoTime() - start);
+      }
+
+      if (!listeners.isEmpty()) {
+        Set<String> nodeIds = new HashSet<>();
+        batch.getNodes().forEach(node -> nodeIds.add(node.getNodeId()));
+        List<HashRange<N>> ranges = RingRanges.movedTo(ring, nodeIds);
+        listeners.fire(TopologyChange.of(TopologyChange.Type.ADDED, batch.getNodes(), ranges));
+      }
+    }
+  }
+
+  /**
+   * Brings the next stage of tokens of every node being activated online, each added batch of
+   * nodes in one ring update. Topology listeners get an {@code ADDED} change per stage, with the
+   * ranges that stage moved.
+   *
+   * @return {@code true} if some nodes still have tokens to activate
+   */
+  public boolean advanceActivation() {
+    synchronized (mutationLock) {
+      Iterator<Activation<N>> iterator = activations.iterator();
+      while (iterator.hasNext()) {
+        Activation<N> activation = iterator.next();
+        int previousReplicas = activationReplicas(activation.stage);
+        int replicas = activationReplicas(++activation.stage);
+        TokenBatch<N> stage = activation.stage(replicas);
+        if (activation.stage >= activationStages || stage.getNodes().isEmpty()) {
+          iterator.remove();
+        }
+        if (stage.getNodes().isEmpty() || replicas == previousReplicas) {
+          continue;
+        }
+        boolean recorded = RoutingEvents.isTopologyChangeEnabled();
+        long start = recorded ? System.nanoTime() : 0L;
+        ring.add(stage);
+        if (recorded) {
+          RoutingEvents.topologyChange(
+              this,
+              "ACTIVATED",
+              stage.getNodes().size(),
+              (long) stage.getNodes().size() * (replicas - previousReplicas),
+              System.nanoTime() - start);
+        }
+
+        if (!listeners.isEmpty()) {
+          Set<String> nodeIds = new HashSet<>();
+          stage.getNodes().forEach(node -> nodeIds.add(node.getNodeId()));
+          List<HashRange<N>> ranges =
+              RingRanges.movedTo(ring, nodeIds, newTokens(stage, previousReplicas));
+          listeners.fire(TopologyChange.of(TopologyChange.Type.ADDED, stage.getNodes(), ranges));
+        }
+      }
+      return !activations.isEmpty();
+    }
+  }
+
+  /** The number of replicas of each node online at the given stage. */
+  private int activationReplicas(int stage) {
+    return (int) (((long) replicaCount * stage + activationStages - 1) / activationStages);
+  }
+
+  /** Returns the sorted tokens of a stage that were not online before it. */
+  private static long[] newTokens(TokenBatch<?> stage, int previousReplicas) {
+    long[] tokens = new long[stage.size()];
+    int size = 0;
+    for (int i = 0; i < stage.size(); i++) {
+      if (stage.replicaIndexAt(i) >= previousReplicas) {
+        tokens[size++] = stage.tokenAt(i);
+      }
+    }
+    return Arrays.copyOf(tokens, size);
+  }
+
+  /** Stops activating a node, its online tokens stay. */
+  private void dropActivation(String nodeId) {
+    activations.forEach(activation -> activation.dropped.add(nodeId));
+  }
+
+  private void scheduleActivation() {
+    if (activationIntervalNanos == 0 || activationScheduled || activations.isEmpty()) {
+      return;
+    }
+    ScheduledExecutorService scheduler =
+        activationScheduler != null ? activationScheduler : DefaultActivationScheduler.INSTANCE;
+    try {
+      scheduler.schedule(
+          () -> {
+            synchronized (mutationLock) {
+              activationScheduled = false;
+              advanceActivation();
+              scheduleActivation();
+            }
+          },
+          activationIntervalNanos,
+          TimeUnit.NANOSECONDS);
+      activationScheduled = true;
+    } catch (RejectedExecutionException e) {
+      // a shut down scheduler leaves activations to advanceActivation()
     }
   }
 
@@ -105,6 +552,273 @@ public class ConsistentNodeRouter<N extends PhysicalNode> implements NodeRouter<
   public void removeNode(String nodeId) {
     Objects.requireNonNull(nodeId);
 
-    ring.values().removeIf(virtualNode -> virtualNode.isVirtualNodeOf(nodeId));
+    synchronized (mutationLock) {
+      dropActivation(nodeId);
+      if (listeners.isEmpty()) {
+        removeFromRing(nodeId);
+        return;
+      }
+
+      List<HashRange<N>> ranges = RingRanges.movedFrom(ring, Collections.singleton(nodeId));
+      removeFromRing(nodeId);
+
+      List<N> removed = new ArrayList<>();
+      for (HashRange<N> range : ranges) {
+        range
+            .getPreviousOwner()
+            .filter(node -> !removed.contains(node))
+            .ifPresent(removed::add);
+      }
+      if (!removed.isEmpty()) {
+        listeners.fire(TopologyChange.of(TopologyChange.Type.REMOVED, removed, ranges));
+      }
+    }
+  }
+
+  private void removeFromRing(String nodeId) {
+    boolean recorded = RoutingEvents.isTopologyChangeEnabled();
+    long start = recorded ? System.nanoTime() : 0L;
+    int removed = ring.remove(nodeId);
+    int ordinal = ordinals.release(nodeId);
+    health.markUp(ordinal);
+    nodeTable = NodeTable.of(nodeTable.getNodes(), ordinals);
+    if (recorded && ordinal >= 0) {
+      RoutingEvents.topologyChange(this, "REMOVED", 1, removed, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Ejects a node for a time window. Its keys fall through to the next distinct healthy node
+   * clockwise on the ring; the ring itself is left untouched.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   */
+  @Override
+  public void markDown(String nodeId, long duration, TimeUnit unit) {
+    Objects.requireNonNull(nodeId);
+    Objects.requireNonNull(unit);
+
+    synchronized (mutationLock) {
+      int ordinal = ordinals.ordinalOf(nodeId);
+      if (ordinal >= 0) {
+        health.markDown(ordinal, duration, unit);
+      }
+    }
+  }
+
+  @Override
+  public void markUp(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    // an ordinal released by a racing remove may already belong to another node
+    synchronized (mutationLock) {
+      health.markUp(ordinals.ordinalOf(nodeId));
+    }
+  }
+
+  /**
+   * Registers a listener called after each committed add or remove with the hash ranges that
+   * changed owner. Listeners are called on the executor given to the {@link Builder}.
+   *
+   * @param listener the listener
+   */
+  @Override
+  public void addTopologyListener(TopologyListener<N> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeTopologyListener(TopologyListener<N> listener) {
+    listeners.remove(listener);
+  }
+
+  /** The tokens of added nodes, brought online in stages. */
+  private static final class Activation<N extends PhysicalNode<?>> {
+    private final TokenBatch<N> batch;
+
+    /** Ids of nodes removed or added again since, their tokens are left alone */
+    private final Set<String> dropped = new HashSet<>();
+
+    private int stage = 1;
+
+    private Activation(TokenBatch<N> batch) {
+      this.batch = batch;
+    }
+
+    private TokenBatch<N> stage(int replicas) {
+      return batch.select(replicas, node -> !dropped.contains(node.getNodeId()));
+    }
+  }
+
+  /** Advances activations of routers built without a scheduler, created on first use. */
+  private static final class DefaultActivationScheduler {
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "consistent-node-activation");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <N> the type parameter
+   */
+  public static final class Builder<N extends PhysicalNode<?>> {
+
+    private final HashFunction hashFunction;
+    private Collection<N> initialNodes = Collections.emptyList();
+    private int replicaCount;
+    private RingStorage ringStorage = RingStorage.SKIP_LIST;
+    private TokenScheme tokenScheme = TokenScheme.VIRTUAL_NODE_ID;
+    private TokenAllocation tokenAllocation = TokenAllocation.HASHED;
+    private Executor listenerExecutor = ForkJoinPool.commonPool();
+    private int activationStages = 1;
+    private long activationIntervalNanos;
+    @Nullable private ScheduledExecutorService activationScheduler;
+
+    private Builder(HashFunction hashFunction) {
+      Objects.requireNonNull(hashFunction);
+      this.hashFunction = hashFunction;
+    }
+
+    /**
+     * Initial nodes builder.
+     *
+     * @param initialNodes the initial nodes
+     * @return the builder
+     */
+    public Builder<N> initialNodes(Collection<N> initialNodes) {
+      this.initialNodes = Objects.requireNonNull(initialNodes);
+      return this;
+    }
+
+    /**
+     * Replica count builder.
+     *
+     * @param replicaCount the replica count
+     * @return the builder
+     */
+    public Builder<N> replicaCount(@Positive int replicaCount) {
+      this.replicaCount = replicaCount;
+      return this;
+    }
+
+    /**
+     * Ring storage builder. Defaults to {@link RingStorage#SKIP_LIST}.
+     *
+     * @param ringStorage the ring storage
+     * @return the builder
+     */
+    public Builder<N> ringStorage(RingStorage ringStorage) {
+      this.ringStorage = Objects.requireNonNull(ringStorage);
+      return this;
+    }
+
+    /**
+     * Token scheme builder. Defaults to {@link TokenScheme#VIRTUAL_NODE_ID}.
+     *
+     * @param tokenScheme the token scheme
+     * @return the builder
+     */
+    public Builder<N> tokenScheme(TokenScheme tokenScheme) {
+      this.tokenScheme = Objects.requireNonNull(tokenScheme);
+      return this;
+    }
+
+    /**
+     * Token allocation builder. Defaults to {@link TokenAllocation#HASHED}. With {@link
+     * TokenAllocation#BALANCED} the token scheme is not used and 8 to 16 replicas are enough.
+     *
+     * @param tokenAllocation the token allocation
+     * @return the builder
+     */
+    public Builder<N> tokenAllocation(TokenAllocation tokenAllocation) {
+      this.tokenAllocation = Objects.requireNonNull(tokenAllocation);
+      return this;
+    }
+
+    /**
+     * Listener executor builder, topology listeners are called on it. Defaults to {@link
+     * ForkJoinPool#commonPool()}.
+     *
+     * @param listenerExecutor the listener executor
+     * @return the builder
+     */
+    public Builder<N> listenerExecutor(Executor listenerExecutor) {
+      this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+      return this;
+    }
+
+    /**
+     * Staged activation builder. Nodes added after the router is built bring their tokens online
+     * in the given number of stages, each stage adding the next replicas of every node, so their
+     * share of keys grows gradually while their caches warm up. Each stage is published as one
+     * ring update. Stages advance on {@link ConsistentNodeRouter#advanceActivation()}. Initial
+     * nodes are activated at once. Defaults to a single stage.
+     *
+     * @param stages the number of stages
+     * @return the builder
+     */
+    public Builder<N> stagedActivation(@Positive int stages) {
+      if (stages < 1) {
+        throw new IllegalArgumentException("Illegal activation stages: " + stages);
+      }
+      this.activationStages = stages;
+      return this;
+    }
+
+    /**
+     * Staged activation builder, stages also advance every interval. See {@link
+     * #stagedActivation(int)}.
+     *
+     * @param stages the number of stages
+     * @param interval the interval between stages
+     * @param unit the unit
+     * @return the builder
+     */
+    public Builder<N> stagedActivation(@Positive int stages, long interval, TimeUnit unit) {
+      if (interval <= 0) {
+        throw new IllegalArgumentException("Illegal activation interval: " + interval);
+      }
+      stagedActivation(stages);
+      this.activationIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Activation scheduler builder, advances timed stages. Defaults to a daemon thread shared by
+     * all routers.
+     *
+     * @param activationScheduler the activation scheduler
+     * @return the builder
+     */
+    public Builder<N> activationScheduler(ScheduledExecutorService activationScheduler) {
+      this.activationScheduler = Objects.requireNonNull(activationScheduler);
+      return this;
+    }
+
+    /**
+     * Build consistent node router.
+     *
+     * @return the consistent node router
+     */
+    public ConsistentNodeRouter<N> build() {
+      return new ConsistentNodeRouter<>(
+          initialNodes,
+          replicaCount,
+          hashFunction,
+          ringStorage,
+          tokenScheme,
+          tokenAllocation,
+          listenerExecutor,
+          activationStages,
+          activationIntervalNanos,
+          activationScheduler);
+    }
   }
 }
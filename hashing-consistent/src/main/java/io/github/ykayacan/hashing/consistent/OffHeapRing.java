@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link Ring} keeping sorted tokens and their owner ordinals in direct {@link ByteBuffer}s.
+ *
+ * <p>Only the ordinal to physical node table lives on-heap, see {@link SortedArrayRing}.
+ *
+ * @param <N> the type parameter
+ */
+final class OffHeapRing<N extends PhysicalNode<?>> extends SortedArrayRing<N> {
+
+  private static final int TOKEN_BYTES = Long.BYTES;
+  private static final int OWNER_BYTES = Integer.BYTES;
+
+  OffHeapRing(CollisionOrder collisionOrder, NodeOrdinals ordinals) {
+    super(collisionOrder, ordinals);
+  }
+
+  @Override
+  Storage allocate(int capacity, int ordinalCount) {
+    return new BufferStorage(capacity);
+  }
+
+  /** The direct token and owner buffers. */
+  private static final class BufferStorage implements Storage {
+    private final ByteBuffer tokens;
+    private final ByteBuffer owners;
+
+    private BufferStorage(int capacity) {
+      this.tokens = allocate(capacity, TOKEN_BYTES);
+      this.owners = allocate(capacity, OWNER_BYTES);
+    }
+
+    private static ByteBuffer allocate(int entries, int entryBytes) {
+      return ByteBuffer.allocateDirect(entries * entryBytes).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public long tokenAt(int index) {
+      return tokens.getLong(index * TOKEN_BYTES);
+    }
+
+    @Override
+    public int ownerAt(int index) {
+      return owners.getInt(index * OWNER_BYTES);
+    }
+
+    @Override
+    public void put(int index, long token, int owner) {
+      tokens.putLong(index * TOKEN_BYTES, token);
+      owners.putInt(index * OWNER_BYTES, owner);
+    }
+
+    /** Keeps the buffers, replaced tokens leave their tail unused until the next mutation. */
+    @Override
+    public Storage trim(int size) {
+      return this;
+    }
+
+    @Override
+    public long sizeInBytes(int size) {
+      return (long) size * (TOKEN_BYTES + OWNER_BYTES);
+    }
+  }
+}
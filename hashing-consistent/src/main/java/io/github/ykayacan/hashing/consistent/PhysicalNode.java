@@ -16,34 +16,41 @@
 
 package io.github.ykayacan.hashing.consistent;
 
+import io.github.ykayacan.hashing.api.FailureDomain;
 import io.github.ykayacan.hashing.api.Node;
 import java.util.Objects;
-import java.util.Optional;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-/** The type Physical node. */
-public class PhysicalNode implements Node {
+/**
+ * The type Physical node. Two physical nodes are equal when their node ids are.
+ *
+ * @param <D> the type of the payload
+ */
+public class PhysicalNode<D> implements Node<D> {
 
   private final String nodeId;
-  @Nullable private final Object data;
+  @Nullable private final D data;
+  private final FailureDomain failureDomain;
 
   /**
    * Instantiates a new Physical node.
    *
    * @param nodeId the node id
    * @param data the data
+   * @param failureDomain the failure domain
    */
-  private PhysicalNode(String nodeId, @Nullable Object data) {
+  private PhysicalNode(String nodeId, @Nullable D data, FailureDomain failureDomain) {
     this.nodeId = nodeId;
     this.data = data;
+    this.failureDomain = failureDomain;
   }
 
-  public static PhysicalNode of(String nodeId) {
-    return newBuilder(nodeId).build();
+  public static <D> PhysicalNode<D> of(String nodeId) {
+    return new PhysicalNode<>(Objects.requireNonNull(nodeId), null, FailureDomain.UNKNOWN);
   }
 
-  public static Builder newBuilder(String nodeId) {
-    return new Builder(nodeId);
+  public static Builder<Object> newBuilder(String nodeId) {
+    return new Builder<>(nodeId);
   }
 
   @Override
@@ -52,8 +59,13 @@ public class PhysicalNode implements Node {
   }
 
   @Override
-  public Optional<Object> getData() {
-    return Optional.ofNullable(data);
+  public @Nullable D data() {
+    return data;
+  }
+
+  @Override
+  public FailureDomain getFailureDomain() {
+    return failureDomain;
   }
 
   @Override
@@ -64,25 +76,37 @@ public class PhysicalNode implements Node {
     if (!(o instanceof PhysicalNode)) {
       return false;
     }
-    PhysicalNode that = (PhysicalNode) o;
-    return Objects.equals(nodeId, that.nodeId) && Objects.equals(data, that.data);
+    return nodeId.equals(((PhysicalNode<?>) o).nodeId);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(nodeId, data);
+    return nodeId.hashCode();
   }
 
   @Override
   public String toString() {
-    return "PhysicalNode{" + "nodeId='" + nodeId + '\'' + ", data=" + data + '}';
+    return "PhysicalNode{"
+        + "nodeId='"
+        + nodeId
+        + '\''
+        + ", data="
+        + data
+        + ", failureDomain="
+        + failureDomain
+        + '}';
   }
 
-  /** The type Builder. */
-  public static final class Builder {
+  /**
+   * The type Builder.
+   *
+   * @param <D> the type of the payload
+   */
+  public static final class Builder<D> {
 
     private String nodeId;
-    @Nullable private Object data;
+    @Nullable private D data;
+    private FailureDomain failureDomain = FailureDomain.UNKNOWN;
 
     private Builder(String nodeId) {
       Objects.requireNonNull(nodeId);
@@ -90,13 +114,27 @@ public class PhysicalNode implements Node {
     }
 
     /**
-     * Data builder.
+     * Data builder, typing the node by its payload.
      *
+     * @param <T> the type of the payload
      * @param data the data
      * @return the builder
      */
-    public Builder data(@Nullable Object data) {
-      this.data = data;
+    @SuppressWarnings("unchecked")
+    public <T> Builder<T> data(@Nullable T data) {
+      Builder<T> builder = (Builder<T>) this;
+      builder.data = data;
+      return builder;
+    }
+
+    /**
+     * Failure domain builder.
+     *
+     * @param failureDomain the failure domain
+     * @return the builder
+     */
+    public Builder<D> failureDomain(FailureDomain failureDomain) {
+      this.failureDomain = Objects.requireNonNull(failureDomain);
       return this;
     }
 
@@ -105,8 +143,8 @@ public class PhysicalNode implements Node {
      *
      * @return the physical node
      */
-    public PhysicalNode build() {
-      return new PhysicalNode(nodeId, data);
+    public PhysicalNode<D> build() {
+      return new PhysicalNode<>(nodeId, data, failureDomain);
     }
   }
 }
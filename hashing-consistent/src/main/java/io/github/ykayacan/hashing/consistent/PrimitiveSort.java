@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel merge sort of parallel primitive arrays, ordering entries by key and then by value.
+ *
+ * <p>Sorting both arrays together avoids boxing every entry just to carry its value along.
+ */
+final class PrimitiveSort {
+
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+  private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+  private PrimitiveSort() {}
+
+  /**
+   * Sorts keys in ascending order and reorders values with them. Equal keys are ordered by value.
+   *
+   * @param keys the keys
+   * @param values the values, same length as keys
+   */
+  static void sort(long[] keys, int[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Keys and values must have the same length");
+    }
+
+    long[] keyBuffer = new long[keys.length];
+    int[] valueBuffer = new int[values.length];
+    SortTask task = new SortTask(keys, values, keyBuffer, valueBuffer, 0, keys.length);
+    if (keys.length < PARALLEL_THRESHOLD) {
+      task.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    }
+  }
+
+  private static boolean less(long key, int value, long otherKey, int otherValue) {
+    return key < otherKey || (key == otherKey && value < otherValue);
+  }
+
+  private static final class SortTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] keys;
+    private final int[] values;
+    private final long[] keyBuffer;
+    private final int[] valueBuffer;
+    private final int from;
+    private final int to;
+
+    private SortTask(
+        long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int from, int to) {
+      this.keys = keys;
+      this.values = values;
+      this.keyBuffer = keyBuffer;
+      this.valueBuffer = valueBuffer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      int length = to - from;
+      if (length <= INSERTION_SORT_THRESHOLD) {
+        insertionSort();
+        return;
+      }
+
+      int mid = (from + to) >>> 1;
+      SortTask left = new SortTask(keys, values, keyBuffer, valueBuffer, from, mid);
+      SortTask right = new SortTask(keys, values, keyBuffer, valueBuffer, mid, to);
+      if (length < PARALLEL_THRESHOLD) {
+        left.compute();
+        right.compute();
+      } else {
+        invokeAll(left, right);
+      }
+      merge(mid);
+    }
+
+    private void insertionSort() {
+      for (int i = from + 1; i < to; i++) {
+        long key = keys[i];
+        int value = values[i];
+        int j = i - 1;
+        while (j >= from && less(key, value, keys[j], values[j])) {
+          keys[j + 1] = keys[j];
+          values[j + 1] = values[j];
+          j--;
+        }
+        keys[j + 1] = key;
+        values[j + 1] = value;
+      }
+    }
+
+    private void merge(int mid) {
+      if (!less(keys[mid], values[mid], keys[mid - 1], values[mid - 1])) {
+        // halves are already in order
+        return;
+      }
+
+      int i = from;
+      int j = mid;
+      int k = from;
+      while (i < mid && j < to) {
+        if (less(keys[j], values[j], keys[i], values[i])) {
+          keyBuffer[k] = keys[j];
+          valueBuffer[k++] = values[j++];
+        } else {
+          keyBuffer[k] = keys[i];
+          valueBuffer[k++] = values[i++];
+        }
+      }
+      while (i < mid) {
+        keyBuffer[k] = keys[i];
+        valueBuffer[k++] = values[i++];
+      }
+      while (j < to) {
+        keyBuffer[k] = keys[j];
+        valueBuffer[k++] = values[j++];
+      }
+      System.arraycopy(keyBuffer, from, keys, from, to - from);
+      System.arraycopy(valueBuffer, from, values, from, to - from);
+    }
+  }
+}
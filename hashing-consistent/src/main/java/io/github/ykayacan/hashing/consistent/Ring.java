@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The token ring backing a {@link ConsistentNodeRouter}.
+ *
+ * <p>Tokens are ordered as signed longs, so every implementation routes a hash to the same owner.
+ * Owners are identified by the ordinals of the router's {@link NodeOrdinals}, which the router
+ * assigns before adding a node and releases after removing it.
+ *
+ * @param <N> the type parameter
+ */
+interface Ring<N extends PhysicalNode<?>> {
+
+  /**
+   * Returns the owner of the first token greater than or equal to the given hash, wrapping around
+   * to the first token of the ring. Of colliding tokens the first in {@link CollisionOrder} wins.
+   *
+   * @param hash the hash
+   * @return the owner or {@code null} if the ring is empty
+   */
+  @Nullable
+  N ceiling(long hash);
+
+  /**
+   * Returns the ordinal of the owner {@link #ceiling(long)} returns.
+   *
+   * @param hash the hash
+   * @return the ordinal or -1 if the ring is empty
+   */
+  int ceilingOrdinal(long hash);
+
+  /**
+   * Returns the owner of the first token, clockwise from the given hash, whose owner is eligible.
+   *
+   * @param hash the hash
+   * @param eligible the eligible owners
+   * @return the owner or {@code null} if no owner is eligible
+   */
+  @Nullable
+  N ceiling(long hash, Predicate<? super N> eligible);
+
+  /**
+   * Fills an array with the ordinals of the first distinct owners clockwise from the given hash
+   * that are not down, walking the ring at most once.
+   *
+   * @param hash the hash
+   * @param ordinals the array to fill
+   * @param health the health of the owners
+   * @return the number of ordinals filled
+   */
+  int ceilingOrdinals(long hash, int[] ordinals, NodeHealth health);
+
+  /**
+   * Adds an ordinal after the first {@code count} entries of an array unless it is there already
+   * or down.
+   *
+   * @param ordinals the array
+   * @param count the number of entries filled
+   * @param ordinal the ordinal
+   * @param health the health of the owners
+   * @return the new number of entries filled
+   */
+  static int addDistinct(int[] ordinals, int count, int ordinal, NodeHealth health) {
+    for (int i = 0; i < count; i++) {
+      if (ordinals[i] == ordinal) {
+        return count;
+      }
+    }
+    if (health.hasDown() && health.isDown(ordinal)) {
+      return count;
+    }
+    ordinals[count] = ordinal;
+    return count + 1;
+  }
+
+  /**
+   * Adds the tokens of a batch of physical nodes. A node already on the ring is replaced and
+   * colliding tokens are all kept, in {@link CollisionOrder}.
+   *
+   * @param batch the token batch
+   */
+  void add(TokenBatch<N> batch);
+
+  /**
+   * Removes all tokens of a physical node.
+   *
+   * @param nodeId the physical node id
+   * @return the number of tokens removed
+   */
+  int remove(String nodeId);
+
+  /**
+   * Visits every token with its owner, in token order. Colliding tokens are visited in {@link
+   * CollisionOrder}, only the first of them owns hashes.
+   *
+   * @param action the action
+   */
+  void forEachToken(ObjLongConsumer<N> action);
+
+  /**
+   * Copies the tokens owning hashes, the first of colliding ones, in token order with the
+   * ordinals of their owners.
+   *
+   * @param tokens the tokens, at least {@link #size()} long
+   * @param owners the owner ordinals, at least {@link #size()} long
+   * @return the number of tokens copied
+   */
+  int copyOwningTokens(long[] tokens, int[] owners);
+
+  /**
+   * Checks if the ring has no tokens.
+   *
+   * @return the boolean
+   */
+  boolean isEmpty();
+
+  /**
+   * Gets the number of virtual nodes, colliding ones included.
+   *
+   * @return the size
+   */
+  int size();
+
+  /**
+   * Gets the bytes held by the virtual nodes, excluding the physical nodes. Sizes of on-heap
+   * objects are estimated for a 64-bit JVM with compressed references.
+   *
+   * @return the size in bytes
+   */
+  long sizeInBytes();
+}
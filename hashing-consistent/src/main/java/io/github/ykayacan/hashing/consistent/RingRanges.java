@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.HashRange;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** Computes the hash ranges that move when nodes join or leave a {@link Ring}. */
+final class RingRanges {
+
+  private RingRanges() {}
+
+  /**
+   * Returns the ranges the given nodes, already on the ring, took over from other nodes.
+   *
+   * @param <N> the type parameter
+   * @param ring the ring
+   * @param nodeIds the added node ids
+   * @return the ranges
+   */
+  static <N extends PhysicalNode<?>> List<HashRange<N>> movedTo(Ring<N> ring, Set<String> nodeIds) {
+    return ownedRanges(ring, nodeIds, null, true);
+  }
+
+  /**
+   * Returns the ranges the given tokens of the given nodes, already on the ring, took over. Other
+   * tokens of these nodes were already on the ring, so a range can move from a node to itself and
+   * is then left out.
+   *
+   * @param <N> the type parameter
+   * @param ring the ring
+   * @param nodeIds the node ids
+   * @param sortedTokens the added tokens, sorted
+   * @return the ranges
+   */
+  static <N extends PhysicalNode<?>> List<HashRange<N>> movedTo(
+      Ring<N> ring, Set<String> nodeIds, long[] sortedTokens) {
+    return ownedRanges(ring, nodeIds, sortedTokens, true);
+  }
+
+  /**
+   * Returns the ranges the given nodes, still on the ring, will hand over to other nodes.
+   *
+   * @param <N> the type parameter
+   * @param ring the ring
+   * @param nodeIds the removed node ids
+   * @return the ranges
+   */
+  static <N extends PhysicalNode<?>> List<HashRange<N>> movedFrom(
+      Ring<N> ring, Set<String> nodeIds) {
+    return ownedRanges(ring, nodeIds, null, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <N extends PhysicalNode<?>> List<HashRange<N>> ownedRanges(
+      Ring<N> ring, Set<String> nodeIds, long @Nullable [] sortedTokens, boolean added) {
+    List<N> owners = new ArrayList<>();
+    long[][] tokens = {new long[16]};
+    ring.forEachToken(
+        (owner, token) -> {
+          if (owners.size() == tokens[0].length) {
+            tokens[0] = Arrays.copyOf(tokens[0], owners.size() * 2);
+          }
+          tokens[0][owners.size()] = token;
+          owners.add(owner);
+        });
+
+    int size = owners.size();
+    if (size == 0) {
+      return Collections.emptyList();
+    }
+
+    boolean[] moved = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      moved[i] =
+          nodeIds.contains(owners.get(i).getNodeId())
+              && (sortedTokens == null || Arrays.binarySearch(sortedTokens, tokens[0][i]) >= 0);
+    }
+
+    // the closest owner clockwise whose token did not move
+    Object[] successors = new Object[size];
+    N next = null;
+    for (int k = 2 * size - 1; k >= 0; k--) {
+      int i = k % size;
+      if (k < size) {
+        successors[i] = next;
+      }
+      if (!moved[i]) {
+        next = owners.get(i);
+      }
+    }
+
+    List<HashRange<N>> ranges = new ArrayList<>();
+    long start = 0L;
+    N owner = null;
+    N successor = null;
+    int end = -1;
+    for (int i = 0; i < size; i++) {
+      if (i > 0 && tokens[0][i] == tokens[0][i - 1]) {
+        // a collided token behind the first one owns no hashes
+        if (end == i - 1) {
+          end = i;
+        }
+        continue;
+      }
+      N current = owners.get(i);
+      if (!moved[i] || current.equals(successors[i])) {
+        continue;
+      }
+      if (owner != null && end == i - 1 && owner == current && successor == successors[i]) {
+        end = i;
+        continue;
+      }
+      if (owner != null) {
+        ranges.add(range(start, tokens[0][end], owner, successor, added));
+      }
+      start = tokens[0][(i - 1 + size) % size];
+      owner = current;
+      successor = (N) successors[i];
+      end = i;
+    }
+    if (owner != null) {
+      ranges.add(range(start, tokens[0][end], owner, successor, added));
+    }
+    return ranges;
+  }
+
+  private static <N extends PhysicalNode<?>> HashRange<N> range(
+      long start, long end, N owner, @Nullable N successor, boolean added) {
+    return added
+        ? HashRange.of(start, end, successor, owner)
+        : HashRange.of(start, end, owner, successor);
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+/** Storage backends available for the token ring of a {@link ConsistentNodeRouter}. */
+public enum RingStorage {
+
+  /**
+   * Keeps one {@link VirtualNode} per token in a {@link
+   * java.util.concurrent.ConcurrentSkipListMap}. Mutations are lock-free and insert tokens in
+   * place, so adding nodes to a large ring only costs their own tokens, but every virtual node is a
+   * long-lived heap object.
+   */
+  SKIP_LIST,
+
+  /**
+   * Keeps tokens and owner ordinals in direct {@link java.nio.ByteBuffer}s and searches them as
+   * primitives. Only the physical node table stays on-heap, which keeps very large rings out of
+   * the old generation. Mutations copy the ring and publish the new one atomically.
+   */
+  OFF_HEAP,
+
+  /**
+   * Keeps tokens in a sorted {@code long[]} and owner ordinals in a parallel {@code char[]}, or an
+   * {@code int[]} past 65536 physical nodes. A virtual node costs 10 bytes instead of the 70 or so
+   * of {@link #SKIP_LIST}, and lookups search the primitives. Mutations copy the ring and publish
+   * the new one atomically.
+   */
+  COMPACT
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * {@link Ring} backed by a {@link ConcurrentSkipListMap} of virtual nodes.
+ *
+ * <p>Batches are inserted in place, token by token, so a lookup racing with an insertion may see
+ * part of the batch, and adding to a ring of n tokens costs O(log n) per token whatever the ring
+ * size. A batch added to an empty ring, the bulk build, is built aside from its sorted tokens in
+ * linear time and published in one step. Virtual nodes with colliding tokens share an entry,
+ * chained in {@link CollisionOrder}.
+ *
+ * @param <N> the type parameter
+ */
+final class SkipListRing<N extends PhysicalNode<?>> implements Ring<N> {
+
+  /** A map node, a boxed token and a third of an index node. */
+  private static final int TOKEN_BYTES = 24 + 16 + 8;
+
+  private static final int VIRTUAL_NODE_BYTES = 24;
+
+  private final CollisionOrder collisionOrder;
+
+  private final NodeOrdinals ordinals;
+
+  private volatile ConcurrentSkipListMap<Long, VirtualNode<N>> ring =
+      new ConcurrentSkipListMap<>();
+
+  SkipListRing(CollisionOrder collisionOrder, NodeOrdinals ordinals) {
+    this.collisionOrder = collisionOrder;
+    this.ordinals = ordinals;
+  }
+
+  @Override
+  public @Nullable N ceiling(long hash) {
+    Map.Entry<Long, VirtualNode<N>> entry = ring.ceilingEntry(hash);
+    if (entry == null) {
+      entry = ring.firstEntry();
+    }
+    return entry == null ? null : entry.getValue().getPhysicalNode();
+  }
+
+  @Override
+  public int ceilingOrdinal(long hash) {
+    N node = ceiling(hash);
+    return node == null ? -1 : ordinals.ordinalOf(node.getNodeId());
+  }
+
+  @Override
+  public @Nullable N ceiling(long hash, Predicate<? super N> eligible) {
+    ConcurrentSkipListMap<Long, VirtualNode<N>> current = ring;
+    for (VirtualNode<N> virtualNode : current.tailMap(hash, true).values()) {
+      N node = firstEligible(virtualNode, eligible);
+      if (node != null) {
+        return node;
+      }
+    }
+    for (VirtualNode<N> virtualNode : current.headMap(hash, false).values()) {
+      N node = firstEligible(virtualNode, eligible);
+      if (node != null) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int ceilingOrdinals(long hash, int[] ordinals, NodeHealth health) {
+    ConcurrentSkipListMap<Long, VirtualNode<N>> current = ring;
+    int count = addOrdinals(current.tailMap(hash, true).values(), ordinals, 0, health);
+    return addOrdinals(current.headMap(hash, false).values(), ordinals, count, health);
+  }
+
+  private int addOrdinals(
+      Iterable<VirtualNode<N>> heads, int[] ordinals, int count, NodeHealth health) {
+    for (VirtualNode<N> head : heads) {
+      for (VirtualNode<N> virtualNode = head;
+          virtualNode != null && count < ordinals.length;
+          virtualNode = virtualNode.getNext()) {
+        int ordinal = this.ordinals.ordinalOf(virtualNode.getPhysicalNode().getNodeId());
+        if (ordinal >= 0) {
+          count = Ring.addDistinct(ordinals, count, ordinal, health);
+        }
+      }
+      if (count == ordinals.length) {
+        break;
+      }
+    }
+    return count;
+  }
+
+  private static <N extends PhysicalNode<?>> @Nullable N firstEligible(
+      @Nullable VirtualNode<N> virtualNode, Predicate<? super N> eligible) {
+    for (; virtualNode != null; virtualNode = virtualNode.getNext()) {
+      if (eligible.test(virtualNode.getPhysicalNode())) {
+        return virtualNode.getPhysicalNode();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void add(TokenBatch<N> batch) {
+    if (ring.isEmpty()) {
+      ring = new ConcurrentSkipListMap<>(new BatchMap<>(batch));
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      long token = batch.tokenAt(i);
+      VirtualNode<N> virtualNode = VirtualNode.create(batch.nodeAt(i), batch.replicaIndexAt(i));
+      VirtualNode<N> head = ring.get(token);
+      ring.put(token, head == null ? virtualNode : insert(head, virtualNode, token));
+    }
+  }
+
+  /** Inserts a virtual node into a collision chain, replacing the same virtual node. */
+  private VirtualNode<N> insert(
+      @Nullable VirtualNode<N> head, VirtualNode<N> virtualNode, long token) {
+    if (head == null) {
+      return virtualNode;
+    }
+    if (isSameVirtualNode(head, virtualNode)) {
+      return virtualNode.withNext(head.getNext());
+    }
+    N node = virtualNode.getPhysicalNode();
+    if (collisionOrder.compare(node, head.getPhysicalNode(), token) < 0) {
+      return virtualNode.withNext(without(head, virtualNode));
+    }
+    return head.withNext(insert(head.getNext(), virtualNode, token));
+  }
+
+  /** Removes the same virtual node from a chain. */
+  private static <N extends PhysicalNode<?>> @Nullable VirtualNode<N> without(
+      @Nullable VirtualNode<N> head, VirtualNode<N> virtualNode) {
+    if (head == null) {
+      return null;
+    }
+    if (isSameVirtualNode(head, virtualNode)) {
+      return head.getNext();
+    }
+    VirtualNode<N> next = without(head.getNext(), virtualNode);
+    return next == head.getNext() ? head : head.withNext(next);
+  }
+
+  private static boolean isSameVirtualNode(VirtualNode<?> a, VirtualNode<?> b) {
+    return a.getReplicaIndex() == b.getReplicaIndex()
+        && a.isVirtualNodeOf(b.getPhysicalNode().getNodeId());
+  }
+
+  /** Removes all virtual nodes of a physical node from a chain. */
+  private static <N extends PhysicalNode<?>> @Nullable VirtualNode<N> without(
+      @Nullable VirtualNode<N> head, String nodeId) {
+    if (head == null) {
+      return null;
+    }
+    VirtualNode<N> next = without(head.getNext(), nodeId);
+    if (head.isVirtualNodeOf(nodeId)) {
+      return next;
+    }
+    return next == head.getNext() ? head : head.withNext(next);
+  }
+
+  @Override
+  public synchronized int remove(String nodeId) {
+    int removed = 0;
+    for (Map.Entry<Long, VirtualNode<N>> entry : ring.entrySet()) {
+      VirtualNode<N> head = entry.getValue();
+      VirtualNode<N> remaining = without(head, nodeId);
+      if (remaining == null) {
+        ring.remove(entry.getKey(), head);
+      } else if (remaining != head) {
+        ring.replace(entry.getKey(), head, remaining);
+      } else {
+        continue;
+      }
+      for (VirtualNode<N> virtualNode = head;
+          virtualNode != null;
+          virtualNode = virtualNode.getNext()) {
+        if (virtualNode.isVirtualNodeOf(nodeId)) {
+          removed++;
+        }
+      }
+    }
+    return removed;
+  }
+
+  @Override
+  public void forEachToken(ObjLongConsumer<N> action) {
+    ring.forEach(
+        (token, head) -> {
+          for (VirtualNode<N> virtualNode = head;
+              virtualNode != null;
+              virtualNode = virtualNode.getNext()) {
+            action.accept(virtualNode.getPhysicalNode(), token);
+          }
+        });
+  }
+
+  @Override
+  public int copyOwningTokens(long[] tokens, int[] owners) {
+    int count = 0;
+    for (Map.Entry<Long, VirtualNode<N>> entry : ring.entrySet()) {
+      tokens[count] = entry.getKey();
+      owners[count++] = ordinals.ordinalOf(entry.getValue().getPhysicalNode().getNodeId());
+    }
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return ring.isEmpty();
+  }
+
+  /** Walks the ring, so takes linear time. */
+  @Override
+  public int size() {
+    return size(ring);
+  }
+
+  private static int size(ConcurrentSkipListMap<Long, ? extends VirtualNode<?>> ring) {
+    int size = 0;
+    for (VirtualNode<?> head : ring.values()) {
+      for (VirtualNode<?> virtualNode = head;
+          virtualNode != null;
+          virtualNode = virtualNode.getNext()) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Every token costs a map node of 24 bytes, a 16 byte boxed {@link Long} and a third of a 24
+   * byte index node on average, and every virtual node 24 bytes. Walks the ring, so takes linear
+   * time.
+   */
+  @Override
+  public long sizeInBytes() {
+    ConcurrentSkipListMap<Long, VirtualNode<N>> current = ring;
+    return (long) current.size() * TOKEN_BYTES + (long) size(current) * VIRTUAL_NODE_BYTES;
+  }
+
+  /**
+   * The tokens of a batch as a sorted map of collision chains. {@link ConcurrentSkipListMap} is
+   * built from a sorted map without comparing keys, only its entries are read.
+   */
+  private static final class BatchMap<N extends PhysicalNode<?>>
+      extends AbstractMap<Long, VirtualNode<N>> implements SortedMap<Long, VirtualNode<N>> {
+
+    private final TokenBatch<N> batch;
+
+    private final int size;
+
+    private BatchMap(TokenBatch<N> batch) {
+      this.batch = batch;
+      int distinct = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        if (i == 0 || batch.tokenAt(i) != batch.tokenAt(i - 1)) {
+          distinct++;
+        }
+      }
+      this.size = distinct;
+    }
+
+    @Override
+    public @Nullable Comparator<? super Long> comparator() {
+      return null;
+    }
+
+    @Override
+    public Long firstKey() {
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+      return batch.tokenAt(0);
+    }
+
+    @Override
+    public Long lastKey() {
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+      return batch.tokenAt(batch.size() - 1);
+    }
+
+    @Override
+    public SortedMap<Long, VirtualNode<N>> subMap(Long fromKey, Long toKey) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedMap<Long, VirtualNode<N>> headMap(Long toKey) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedMap<Long, VirtualNode<N>> tailMap(Long fromKey) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<Map.Entry<Long, VirtualNode<N>>> entrySet() {
+      return new AbstractSet<Map.Entry<Long, VirtualNode<N>>>() {
+        @Override
+        public Iterator<Map.Entry<Long, VirtualNode<N>>> iterator() {
+          return new Iterator<Map.Entry<Long, VirtualNode<N>>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+              return index < batch.size();
+            }
+
+            @Override
+            public Map.Entry<Long, VirtualNode<N>> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              long token = batch.tokenAt(index);
+              int end = index + 1;
+              while (end < batch.size() && batch.tokenAt(end) == token) {
+                end++;
+              }
+              // colliding tokens are sorted in collision order, chain them from the last one
+              VirtualNode<N> head = null;
+              for (int i = end - 1; i >= index; i--) {
+                VirtualNode<N> virtualNode =
+                    VirtualNode.create(batch.nodeAt(i), batch.replicaIndexAt(i));
+                head = head == null ? virtualNode : virtualNode.withNext(head);
+              }
+              index = end;
+              return new AbstractMap.SimpleImmutableEntry<>(token, head);
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+  }
+}
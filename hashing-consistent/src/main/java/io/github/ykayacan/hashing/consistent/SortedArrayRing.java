@@ -0,0 +1,288 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * {@link Ring} keeping sorted tokens and their owner ordinals in {@link Storage} that subclasses
+ * lay out, with an ordinal to physical node table on-heap. The owner ordinals are those of the
+ * router's {@link NodeOrdinals}, so {@link #ceilingOrdinal(long)} needs no further lookup.
+ *
+ * <p>Lookups binary search the tokens on primitives and never allocate. Mutations are serialized,
+ * build a complete new ring and publish it with a single volatile write, so readers always see
+ * either the previous or the next ring. Colliding tokens are all kept, next to each other in
+ * {@link CollisionOrder}.
+ *
+ * @param <N> the type parameter
+ */
+abstract class SortedArrayRing<N extends PhysicalNode<?>> implements Ring<N> {
+
+  private final CollisionOrder collisionOrder;
+
+  private final NodeOrdinals ordinals;
+
+  private volatile Snapshot snapshot;
+
+  SortedArrayRing(CollisionOrder collisionOrder, NodeOrdinals ordinals) {
+    this.collisionOrder = collisionOrder;
+    this.ordinals = ordinals;
+    this.snapshot = new Snapshot(allocate(0, 0), 0, new Object[0]);
+  }
+
+  /**
+   * Allocates storage for a new ring.
+   *
+   * @param capacity the number of tokens
+   * @param ordinalCount the number of ordinals the owners may refer to
+   * @return the storage
+   */
+  abstract Storage allocate(int capacity, int ordinalCount);
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public @Nullable N ceiling(long hash) {
+    Snapshot current = snapshot;
+    if (current.size == 0) {
+      return null;
+    }
+
+    int index = current.ceilingIndex(hash);
+    if (index == current.size) {
+      index = 0;
+    }
+    return (N) current.nodes[current.storage.ownerAt(index)];
+  }
+
+  @Override
+  public int ceilingOrdinal(long hash) {
+    Snapshot current = snapshot;
+    if (current.size == 0) {
+      return -1;
+    }
+
+    int index = current.ceilingIndex(hash);
+    return current.storage.ownerAt(index == current.size ? 0 : index);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public @Nullable N ceiling(long hash, Predicate<? super N> eligible) {
+    Snapshot current = snapshot;
+    int start = current.ceilingIndex(hash);
+    for (int i = 0; i < current.size; i++) {
+      int index = start + i < current.size ? start + i : start + i - current.size;
+      N node = (N) current.nodes[current.storage.ownerAt(index)];
+      if (eligible.test(node)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int ceilingOrdinals(long hash, int[] ordinals, NodeHealth health) {
+    Snapshot current = snapshot;
+    int start = current.ceilingIndex(hash);
+    int count = 0;
+    for (int i = 0; i < current.size && count < ordinals.length; i++) {
+      int index = start + i < current.size ? start + i : start + i - current.size;
+      count = Ring.addDistinct(ordinals, count, current.storage.ownerAt(index), health);
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized void add(TokenBatch<N> batch) {
+    Snapshot current = snapshot;
+
+    List<N> batchNodes = batch.getNodes();
+    int[] batchOrdinals = new int[batchNodes.size()];
+    boolean[] replaced = new boolean[current.nodes.length];
+    Object[] nodes = current.nodes;
+    for (int k = 0; k < batchNodes.size(); k++) {
+      N node = batchNodes.get(k);
+      int ordinal = ordinals.ordinalOf(node.getNodeId());
+      if (ordinal < 0) {
+        throw new IllegalStateException("Unassigned node: " + node.getNodeId());
+      }
+      if (ordinal < current.nodes.length && current.nodes[ordinal] != null) {
+        replaced[ordinal] = true;
+      }
+      if (ordinal >= nodes.length) {
+        nodes = Arrays.copyOf(nodes, ordinal + 1);
+      } else if (nodes == current.nodes) {
+        nodes = nodes.clone();
+      }
+      nodes[ordinal] = node;
+      batchOrdinals[k] = ordinal;
+    }
+
+    Storage storage = allocate(current.size + batch.size(), nodes.length);
+    Storage tokens = current.storage;
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < current.size || j < batch.size()) {
+      if (i < current.size && replaced[tokens.ownerAt(i)]) {
+        i++;
+        continue;
+      }
+
+      if (j == batch.size() || (i < current.size && precedes(current, i, nodes, batch, j))) {
+        storage.put(size, tokens.tokenAt(i), tokens.ownerAt(i++));
+      } else {
+        storage.put(size, batch.tokenAt(j), batchOrdinals[batch.nodeIndexAt(j++)]);
+      }
+      size++;
+    }
+
+    snapshot = new Snapshot(storage.trim(size), size, nodes);
+  }
+
+  /** Checks if a token of the ring goes before a token of the batch. */
+  private boolean precedes(
+      Snapshot current, int index, Object[] nodes, TokenBatch<N> batch, int batchIndex) {
+    long token = current.storage.tokenAt(index);
+    long batchToken = batch.tokenAt(batchIndex);
+    if (token != batchToken) {
+      return token < batchToken;
+    }
+    PhysicalNode<?> node = (PhysicalNode<?>) nodes[current.storage.ownerAt(index)];
+    return collisionOrder.compare(node, batch.nodeAt(batchIndex), token) <= 0;
+  }
+
+  @Override
+  public synchronized int remove(String nodeId) {
+    Snapshot current = snapshot;
+    int ordinal = ordinals.ordinalOf(nodeId);
+    if (ordinal < 0 || ordinal >= current.nodes.length || current.nodes[ordinal] == null) {
+      return 0;
+    }
+
+    Storage tokens = current.storage;
+    int capacity = 0;
+    for (int i = 0; i < current.size; i++) {
+      if (tokens.ownerAt(i) != ordinal) {
+        capacity++;
+      }
+    }
+
+    Storage storage = allocate(capacity, current.nodes.length);
+    int size = 0;
+    for (int i = 0; i < current.size; i++) {
+      int owner = tokens.ownerAt(i);
+      if (owner != ordinal) {
+        storage.put(size++, tokens.tokenAt(i), owner);
+      }
+    }
+
+    Object[] nodes = current.nodes.clone();
+    nodes[ordinal] = null;
+
+    snapshot = new Snapshot(storage, size, nodes);
+    return current.size - size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void forEachToken(ObjLongConsumer<N> action) {
+    Snapshot current = snapshot;
+    for (int i = 0; i < current.size; i++) {
+      action.accept((N) current.nodes[current.storage.ownerAt(i)], current.storage.tokenAt(i));
+    }
+  }
+
+  @Override
+  public int copyOwningTokens(long[] tokens, int[] owners) {
+    Snapshot current = snapshot;
+    int count = 0;
+    for (int i = 0; i < current.size; i++) {
+      long token = current.storage.tokenAt(i);
+      if (count == 0 || tokens[count - 1] != token) {
+        tokens[count] = token;
+        owners[count++] = current.storage.ownerAt(i);
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return snapshot.size == 0;
+  }
+
+  @Override
+  public int size() {
+    return snapshot.size;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    Snapshot current = snapshot;
+    return current.storage.sizeInBytes(current.size);
+  }
+
+  /** Tokens and owner ordinals of one ring, written once in token order and then only read. */
+  interface Storage {
+
+    long tokenAt(int index);
+
+    int ownerAt(int index);
+
+    void put(int index, long token, int owner);
+
+    /** Returns storage holding the first {@code size} entries, possibly this one. */
+    Storage trim(int size);
+
+    /** Returns the bytes held by the first {@code size} entries. */
+    long sizeInBytes(int size);
+  }
+
+  /** An immutable ring published as a whole. */
+  private static final class Snapshot {
+    private final Storage storage;
+    private final int size;
+    private final Object[] nodes;
+
+    private Snapshot(Storage storage, int size, Object[] nodes) {
+      this.storage = storage;
+      this.size = size;
+      this.nodes = nodes;
+    }
+
+    /** Returns the index of the first token greater than or equal to the hash. */
+    private int ceilingIndex(long hash) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (storage.tokenAt(mid) < hash) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+/** Strategies placing the virtual nodes of a physical node on the ring. */
+public enum TokenAllocation {
+
+  /**
+   * Derives every token from the node id with the {@link TokenScheme}. Tokens only depend on the
+   * node, so every router agrees on the ring whatever order nodes were added in, but ownership
+   * varies with roughly {@code 1 / sqrt(replicaCount)} and balance needs hundreds of replicas.
+   */
+  HASHED,
+
+  /**
+   * Picks the tokens of each new node, one at a time, to minimize the variance of ownership given
+   * the current ring, in the spirit of Cassandra's token allocation. The first node gets evenly
+   * spaced tokens and a new token always splits a range of another node, so 8 to 16 replicas are
+   * as balanced as hundreds of hashed ones. Tokens depend on the ring at the time of the add, so
+   * routers sharing a ring must add nodes in the same order. Removals hand ranges to the next
+   * token and are not rebalanced.
+   */
+  BALANCED
+}
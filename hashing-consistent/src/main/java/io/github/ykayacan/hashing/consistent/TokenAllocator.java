@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places the tokens of new physical nodes to balance ownership, see {@link
+ * TokenAllocation#BALANCED}.
+ *
+ * <p>Every token greedily takes the part of a range of another node that lowers the sum of squared
+ * ownerships the most. Giving {@code s} positions of a range owned by {@code o} to the new node
+ * {@code x} changes that sum by {@code 2s(own(x) - own(o) + s)}, which is lowest at {@code s =
+ * (own(o) - own(x)) / 2}, so each token halves the gap between the new node and one of the most
+ * loaded nodes. Early tokens overshoot while later ones find only small ranges, so once all tokens
+ * are placed each of them slides between its neighbours to equalize the new node with the owner
+ * of the next token. Only ranges moving to the new node change owner, as with hashed tokens. A
+ * token is always strictly inside a range, so balanced tokens never collide.
+ *
+ * <p>Tokens of a physical node are indexed in token order, so a node added again keeps its tokens
+ * and replica indexes. A node only partly on the ring, such as one part-way through staged
+ * activation, keeps the tokens it has and only the missing ones are placed.
+ */
+final class TokenAllocator {
+
+  private static final double RING_SIZE = 0x1p64;
+
+  /** Passes moving the tokens of a new node once all of them are placed. */
+  private static final int REFINE_ROUNDS = 8;
+
+  /** Ring tokens in token order, one per distinct token. */
+  private long[] tokens;
+
+  /** Owner index of each token, the ordinal of the owner. */
+  private int[] owners;
+
+  private int size;
+
+  private final NodeOrdinals ordinals;
+
+  /** Owner indexes of the nodes without an ordinal yet, after all ordinals in use. */
+  private final Map<String, Integer> newOwnerIndexes = new HashMap<>();
+
+  private int nextOwnerIndex;
+
+  /** Owned positions of each owner index. */
+  private double[] ownership;
+
+  private TokenAllocator(
+      Ring<?> ring, NodeOrdinals ordinals, List<? extends PhysicalNode<?>> nodes) {
+    this.ordinals = ordinals;
+    tokens = new long[Math.max(ring.size(), 16)];
+    owners = new int[tokens.length];
+    size = ring.copyOwningTokens(tokens, owners);
+
+    for (int i = 0; i < size; i++) {
+      nextOwnerIndex = Math.max(nextOwnerIndex, owners[i] + 1);
+    }
+    for (PhysicalNode<?> node : nodes) {
+      nextOwnerIndex = Math.max(nextOwnerIndex, ordinals.ordinalOf(node.getNodeId()) + 1);
+    }
+    ownership = new double[Math.max(nextOwnerIndex, 16)];
+    recount();
+  }
+
+  /**
+   * Allocates the tokens of the given nodes, in node id order, against the current ring. Nodes
+   * already on the ring keep their tokens.
+   *
+   * @param <N> the type parameter
+   * @param ring the current ring
+   * @param ordinals the ordinals of the nodes on the ring
+   * @param nodes the physical nodes
+   * @param replicaCount the replica count
+   * @param hashFunction the hash function placing the tokens of the first node
+   * @param collisionOrder the order of colliding tokens
+   * @return the token batch
+   */
+  static <N extends PhysicalNode<?>> TokenBatch<N> allocate(
+      Ring<N> ring,
+      NodeOrdinals ordinals,
+      Iterable<N> nodes,
+      int replicaCount,
+      HashFunction hashFunction,
+      CollisionOrder collisionOrder) {
+    List<N> sortedNodes = TokenBatch.sortNodes(nodes);
+    long size = (long) sortedNodes.size() * replicaCount;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many virtual nodes: " + size);
+    }
+
+    TokenAllocator allocator = new TokenAllocator(ring, ordinals, sortedNodes);
+    long[] tokens = new long[(int) size];
+    for (int nodeIndex = 0; nodeIndex < sortedNodes.size(); nodeIndex++) {
+      long[] nodeTokens =
+          allocator.tokensOf(sortedNodes.get(nodeIndex).getNodeId(), replicaCount, hashFunction);
+      System.arraycopy(nodeTokens, 0, tokens, nodeIndex * replicaCount, replicaCount);
+    }
+    return TokenBatch.of(sortedNodes, replicaCount, tokens, collisionOrder);
+  }
+
+  /** The tokens of a node in token order, allocating those the node has not on the ring. */
+  private long[] tokensOf(String nodeId, int replicaCount, HashFunction hashFunction) {
+    long[] nodeTokens = new long[replicaCount];
+    int owner = ownerIndexOf(nodeId);
+    int existing = 0;
+    for (int i = 0; i < size && existing < replicaCount; i++) {
+      if (owners[i] == owner) {
+        nodeTokens[existing++] = tokens[i];
+      }
+    }
+    if (existing == replicaCount) {
+      return nodeTokens;
+    }
+    long[] kept = Arrays.copyOf(nodeTokens, existing);
+    Arrays.sort(kept);
+
+    if (size == 0) {
+      long base = hashFunction.hash(nodeId);
+      long step = Long.divideUnsigned(-1L, Math.max(replicaCount, 1));
+      for (int replicaIndex = 0; replicaIndex < replicaCount; replicaIndex++) {
+        insert(base + replicaIndex * step, owner);
+      }
+    } else {
+      for (int replicaIndex = existing; replicaIndex < replicaCount; replicaIndex++) {
+        allocate(owner);
+      }
+      for (int round = 0; round < REFINE_ROUNDS; round++) {
+        refine(owner, kept);
+      }
+    }
+    // the same state as a new allocator over the resulting ring, so batches match single adds
+    recount();
+
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (owners[i] == owner) {
+        nodeTokens[count++] = tokens[i];
+      }
+    }
+    return nodeTokens;
+  }
+
+  private void recount() {
+    Arrays.fill(ownership, 0);
+    for (int i = 0; i < size; i++) {
+      ownership[owners[i]] += toDouble(rangeLength(i));
+    }
+  }
+
+  /** Places one token of the given owner. */
+  private void allocate(int owner) {
+    int best = -1;
+    double bestDelta = Double.POSITIVE_INFINITY;
+    long bestShare = 0;
+    for (int i = 0; i < size; i++) {
+      int other = owners[i];
+      long length = rangeLength(i);
+      if (other == owner || (length != 0 && Long.compareUnsigned(length, 2) < 0)) {
+        continue;
+      }
+      // shares are counted in unsigned longs, doubles cannot tell a range from its length - 1
+      double gap = Math.floor((ownership[other] - ownership[owner]) / 2);
+      long share = gap < 1 ? 1 : toUnsigned(gap);
+      if (Long.compareUnsigned(share, length - 1) > 0) {
+        share = length - 1;
+      }
+      double positions = toDouble(share);
+      double delta = positions * (ownership[owner] - ownership[other] + positions);
+      if (delta < bestDelta) {
+        best = i;
+        bestDelta = delta;
+        bestShare = share;
+      }
+    }
+    if (best < 0) {
+      throw new IllegalStateException("No range left to split");
+    }
+
+    long start = tokens[(best == 0 ? size : best) - 1];
+    ownership[owner] += toDouble(bestShare);
+    ownership[owners[best]] -= toDouble(bestShare);
+    insert(start + bestShare, owner);
+  }
+
+  /**
+   * Moves every new token of the owner towards the point equalizing it with the next owner.
+   *
+   * @param kept the sorted tokens the owner already had, which stay in place
+   */
+  private void refine(int owner, long[] kept) {
+    for (int i = 0; i < size; i++) {
+      int next = i + 1 == size ? 0 : i + 1;
+      int other = owners[next];
+      if (owners[i] != owner || other == owner || Arrays.binarySearch(kept, tokens[i]) >= 0) {
+        continue;
+      }
+      long start = tokens[(i == 0 ? size : i) - 1];
+      long own = tokens[i] - start;
+      long length = tokens[next] - start;
+      double gap = (ownership[other] - ownership[owner]) / 2;
+      double target = Math.min(Math.max(toDouble(own) + gap, 1), toDouble(length) - 1);
+      long share = toUnsigned(Math.floor(target));
+      if (Long.compareUnsigned(share, length - 1) > 0) {
+        share = length - 1;
+      }
+      if (share == 0 || share == own) {
+        continue;
+      }
+      double moved = toDouble(share) - toDouble(own);
+      ownership[owner] += moved;
+      ownership[other] -= moved;
+      remove(i);
+      insert(start + share, owner);
+    }
+  }
+
+  private void remove(int index) {
+    System.arraycopy(tokens, index + 1, tokens, index, size - index - 1);
+    System.arraycopy(owners, index + 1, owners, index, size - index - 1);
+    size--;
+  }
+
+  /**
+   * The number of hashes owned by the token at {@code index}, {@code (previous, token]}, as an
+   * unsigned long. A lone token owns the whole ring, represented as 0.
+   */
+  private long rangeLength(int index) {
+    return tokens[index] - tokens[(index == 0 ? size : index) - 1];
+  }
+
+  private static double toDouble(long positions) {
+    if (positions == 0) {
+      return RING_SIZE;
+    }
+    return positions >= 0 ? positions : (positions >>> 1) * 2.0;
+  }
+
+  private static long toUnsigned(double positions) {
+    return positions < 0x1p63 ? (long) positions : (long) (positions - 0x1p63) + Long.MIN_VALUE;
+  }
+
+  private void insert(long token, int owner) {
+    if (size == tokens.length) {
+      tokens = Arrays.copyOf(tokens, size * 2);
+      owners = Arrays.copyOf(owners, size * 2);
+    }
+    int index = Arrays.binarySearch(tokens, 0, size, token);
+    index = index >= 0 ? index : -index - 1;
+    System.arraycopy(tokens, index, tokens, index + 1, size - index);
+    System.arraycopy(owners, index, owners, index + 1, size - index);
+    tokens[index] = token;
+    owners[index] = owner;
+    size++;
+  }
+
+  private int ownerIndexOf(String nodeId) {
+    int ordinal = ordinals.ordinalOf(nodeId);
+    if (ordinal >= 0) {
+      return ordinal;
+    }
+    Integer index = newOwnerIndexes.get(nodeId);
+    if (index == null) {
+      index = nextOwnerIndex++;
+      newOwnerIndexes.put(nodeId, index);
+      if (index == ownership.length) {
+        ownership = Arrays.copyOf(ownership, index * 2);
+      }
+    }
+    return index;
+  }
+}
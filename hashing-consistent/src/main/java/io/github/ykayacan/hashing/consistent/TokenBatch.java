@@ -0,0 +1,265 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The tokens of a set of physical nodes, sorted and ready to be published to a {@link Ring}.
+ *
+ * <p>Nodes are ordered by node id and every token carries a slot ({@code nodeIndex * replicaCount
+ * + replicaIndex}). Tokens are sorted by token and colliding tokens by {@link CollisionOrder},
+ * whatever order the nodes were given in.
+ *
+ * @param <N> the type parameter
+ */
+final class TokenBatch<N extends PhysicalNode<?>> {
+
+  private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+  private final List<N> nodes;
+  private final int replicaCount;
+  private final long[] tokens;
+  private final int[] slots;
+
+  private TokenBatch(List<N> nodes, int replicaCount, long[] tokens, int[] slots) {
+    this.nodes = nodes;
+    this.replicaCount = replicaCount;
+    this.tokens = tokens;
+    this.slots = slots;
+  }
+
+  /**
+   * Hashes all virtual nodes of the given physical nodes, in parallel for large batches, and sorts
+   * the resulting tokens. If a node id is given more than once the last node wins.
+   *
+   * @param <N> the type parameter
+   * @param nodes the physical nodes
+   * @param replicaCount the replica count
+   * @param hashFunction the hash function
+   * @param tokenScheme the token scheme
+   * @param collisionOrder the order of colliding tokens
+   * @return the token batch
+   */
+  static <N extends PhysicalNode<?>> TokenBatch<N> create(
+      Iterable<N> nodes,
+      int replicaCount,
+      HashFunction hashFunction,
+      TokenScheme tokenScheme,
+      CollisionOrder collisionOrder) {
+    List<N> sortedNodes = sortNodes(nodes);
+
+    long size = (long) sortedNodes.size() * replicaCount;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many virtual nodes: " + size);
+    }
+
+    long[] baseHashes = new long[sortedNodes.size()];
+    range(baseHashes.length)
+        .forEach(
+            index ->
+                baseHashes[index] =
+                    tokenScheme.baseHash(hashFunction, sortedNodes.get(index).getNodeId()));
+
+    long[] tokens = new long[(int) size];
+    range(tokens.length)
+        .forEach(
+            slot -> {
+              int nodeIndex = slot / replicaCount;
+              tokens[slot] =
+                  tokenScheme.token(
+                      hashFunction,
+                      sortedNodes.get(nodeIndex),
+                      baseHashes[nodeIndex],
+                      slot % replicaCount);
+            });
+    return of(sortedNodes, replicaCount, tokens, collisionOrder);
+  }
+
+  /**
+   * Sorts precomputed tokens, the token of a virtual node being at its slot.
+   *
+   * @param <N> the type parameter
+   * @param sortedNodes the physical nodes, ordered by node id
+   * @param replicaCount the replica count
+   * @param tokens the tokens by slot, sorted in place
+   * @param collisionOrder the order of colliding tokens
+   * @return the token batch
+   */
+  static <N extends PhysicalNode<?>> TokenBatch<N> of(
+      List<N> sortedNodes, int replicaCount, long[] tokens, CollisionOrder collisionOrder) {
+    int[] slots = new int[tokens.length];
+    Arrays.setAll(slots, slot -> slot);
+
+    PrimitiveSort.sort(tokens, slots);
+    sortCollisions(tokens, slots, replicaCount, sortedNodes, collisionOrder);
+    return new TokenBatch<>(sortedNodes, replicaCount, tokens, slots);
+  }
+
+  /**
+   * Orders nodes by node id. If a node id is given more than once the last node wins.
+   *
+   * @param <N> the type parameter
+   * @param nodes the physical nodes
+   * @return the distinct nodes, ordered by node id
+   */
+  static <N extends PhysicalNode<?>> List<N> sortNodes(Iterable<N> nodes) {
+    Map<String, N> nodesById = new LinkedHashMap<>();
+    nodes.forEach(node -> nodesById.put(node.getNodeId(), node));
+
+    List<N> sortedNodes = new ArrayList<>(nodesById.values());
+    sortedNodes.sort(Comparator.comparing(PhysicalNode::getNodeId));
+    return sortedNodes;
+  }
+
+  /** Sorts runs of colliding tokens, already in slot order, by the collision order. */
+  private static void sortCollisions(
+      long[] tokens,
+      int[] slots,
+      int replicaCount,
+      List<? extends PhysicalNode<?>> nodes,
+      CollisionOrder collisionOrder) {
+    for (int start = 0, end; start < tokens.length; start = end) {
+      end = start + 1;
+      while (end < tokens.length && tokens[end] == tokens[start]) {
+        end++;
+      }
+      if (end - start > 1) {
+        long token = tokens[start];
+        Integer[] run = new Integer[end - start];
+        for (int i = 0; i < run.length; i++) {
+          run[i] = slots[start + i];
+        }
+        // stable, so virtual nodes of the same physical node stay in slot order
+        Arrays.sort(
+            run,
+            (a, b) ->
+                collisionOrder.compare(
+                    nodes.get(a / replicaCount), nodes.get(b / replicaCount), token));
+        for (int i = 0; i < run.length; i++) {
+          slots[start + i] = run[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Selects the first replicas of the kept nodes, without sorting again.
+   *
+   * @param replicas the number of replicas kept of each node
+   * @param keep the kept nodes
+   * @return the token batch
+   */
+  TokenBatch<N> select(int replicas, Predicate<? super N> keep) {
+    int[] nodeIndexes = new int[nodes.size()];
+    List<N> selectedNodes = new ArrayList<>();
+    for (int i = 0; i < nodeIndexes.length; i++) {
+      nodeIndexes[i] = keep.test(nodes.get(i)) ? selectedNodes.size() : -1;
+      if (nodeIndexes[i] >= 0) {
+        selectedNodes.add(nodes.get(i));
+      }
+    }
+
+    long[] selectedTokens = new long[tokens.length];
+    int[] selectedSlots = new int[tokens.length];
+    int size = 0;
+    for (int i = 0; i < tokens.length; i++) {
+      int nodeIndex = nodeIndexes[nodeIndexAt(i)];
+      if (nodeIndex >= 0 && replicaIndexAt(i) < replicas) {
+        selectedTokens[size] = tokens[i];
+        selectedSlots[size] = nodeIndex * replicaCount + replicaIndexAt(i);
+        size++;
+      }
+    }
+    return new TokenBatch<>(
+        selectedNodes,
+        replicaCount,
+        Arrays.copyOf(selectedTokens, size),
+        Arrays.copyOf(selectedSlots, size));
+  }
+
+  private static IntStream range(int size) {
+    IntStream range = IntStream.range(0, size);
+    return size >= PARALLEL_THRESHOLD ? range.parallel() : range;
+  }
+
+  /**
+   * Gets the physical nodes of this batch, ordered by node id.
+   *
+   * @return the nodes
+   */
+  List<N> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Gets the number of tokens.
+   *
+   * @return the size
+   */
+  int size() {
+    return tokens.length;
+  }
+
+  /**
+   * Gets the token at given position.
+   *
+   * @param index the position in token order
+   * @return the token
+   */
+  long tokenAt(int index) {
+    return tokens[index];
+  }
+
+  /**
+   * Gets the index of the owner in {@link #getNodes()}.
+   *
+   * @param index the position in token order
+   * @return the node index
+   */
+  int nodeIndexAt(int index) {
+    return slots[index] / replicaCount;
+  }
+
+  /**
+   * Gets the owner of the token at given position.
+   *
+   * @param index the position in token order
+   * @return the physical node
+   */
+  N nodeAt(int index) {
+    return nodes.get(nodeIndexAt(index));
+  }
+
+  /**
+   * Gets the replica index of the token at given position.
+   *
+   * @param index the position in token order
+   * @return the replica index
+   */
+  int replicaIndexAt(int index) {
+    return slots[index] % replicaCount;
+  }
+}
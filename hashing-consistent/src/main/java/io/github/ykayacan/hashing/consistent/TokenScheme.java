@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.consistent;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashFunction128;
+
+/** Schemes deriving the ring tokens of the virtual nodes of a physical node. */
+public enum TokenScheme {
+
+  /**
+   * Hashes the {@code nodeId-replicaIndex} String of every virtual node. Rings built with this
+   * scheme match rings built by earlier versions, at the cost of one String per virtual node.
+   */
+  VIRTUAL_NODE_ID {
+    @Override
+    long baseHash(HashFunction hashFunction, String nodeId) {
+      return 0L;
+    }
+
+    @Override
+    long token(HashFunction hashFunction, PhysicalNode<?> node, long baseHash, int replicaIndex) {
+      return hashFunction.hash(VirtualNode.nodeIdOf(node, replicaIndex));
+    }
+
+    @Override
+    long tokenLow(HashFunction128 hashFunction, PhysicalNode<?> node, int replicaIndex) {
+      return hashFunction.hashLow(VirtualNode.nodeIdOf(node, replicaIndex));
+    }
+  },
+
+  /**
+   * Hashes the node id once and derives every replica token numerically, Kirsch-Mitzenmacher
+   * style: {@code mix(h1 + i * h2)} where {@code h1} is the node id hash and {@code h2} an odd
+   * value derived from it. No String is created per virtual node. Tokens differ from {@link
+   * #VIRTUAL_NODE_ID}, so all routers sharing a ring must use the same scheme.
+   */
+  DERIVED {
+    @Override
+    long baseHash(HashFunction hashFunction, String nodeId) {
+      return hashFunction.hash(nodeId);
+    }
+
+    @Override
+    long token(HashFunction hashFunction, PhysicalNode<?> node, long baseHash, int replicaIndex) {
+      long step = mix(baseHash) | 1L;
+      return mix(baseHash + replicaIndex * step);
+    }
+
+    @Override
+    long tokenLow(HashFunction128 hashFunction, PhysicalNode<?> node, int replicaIndex) {
+      return token(hashFunction, node, hashFunction.hashLow(node.getNodeId()), replicaIndex);
+    }
+  };
+
+  /**
+   * Stafford's variant 13 of the MurmurHash3 finalizer, spreads arithmetic progressions of the
+   * derived tokens over the whole ring.
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+    value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+    return value ^ (value >>> 31);
+  }
+
+  /**
+   * Computes the per node part of the tokens, once for all replicas.
+   *
+   * @param hashFunction the hash function
+   * @param nodeId the physical node id
+   * @return the base hash
+   */
+  abstract long baseHash(HashFunction hashFunction, String nodeId);
+
+  /**
+   * Computes the token of a virtual node.
+   *
+   * @param hashFunction the hash function
+   * @param node the physical node
+   * @param baseHash the base hash of the physical node
+   * @param replicaIndex the replica index
+   * @return the token
+   */
+  abstract long token(
+      HashFunction hashFunction, PhysicalNode<?> node, long baseHash, int replicaIndex);
+
+  /**
+   * Computes the low 64 bits of the 128-bit token of a virtual node, {@link #token} being the high
+   * 64 bits.
+   *
+   * @param hashFunction the 128-bit hash function
+   * @param node the physical node
+   * @param replicaIndex the replica index
+   * @return the low 64 bits of the token
+   */
+  abstract long tokenLow(HashFunction128 hashFunction, PhysicalNode<?> node, int replicaIndex);
+}
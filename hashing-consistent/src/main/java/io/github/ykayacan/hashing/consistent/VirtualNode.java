@@ -18,21 +18,35 @@ package io.github.ykayacan.hashing.consistent;
 
 import io.github.ykayacan.hashing.api.Node;
 import java.util.Objects;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * The type Virtual node.
  *
  * @param <N> the type parameter
  */
-final class VirtualNode<N extends Node> {
+final class VirtualNode<N extends Node<?>> {
   private final N physicalNode;
   private final int replicaIndex;
-  private final String nodeId;
 
-  private VirtualNode(N physicalNode, int replicaIndex) {
+  /** The next virtual node sharing the same token, see {@link CollisionOrder}. */
+  @Nullable private final VirtualNode<N> next;
+
+  private VirtualNode(N physicalNode, int replicaIndex, @Nullable VirtualNode<N> next) {
     this.physicalNode = physicalNode;
     this.replicaIndex = replicaIndex;
-    nodeId = physicalNode.getNodeId() + "-" + replicaIndex;
+    this.next = next;
+  }
+
+  /**
+   * Returns the id of a virtual node, which is hashed to get its token.
+   *
+   * @param physicalNode the physical node
+   * @param replicaIndex the replica index
+   * @return the virtual node id
+   */
+  static String nodeIdOf(Node<?> physicalNode, int replicaIndex) {
+    return physicalNode.getNodeId() + "-" + replicaIndex;
   }
 
   /**
@@ -43,17 +57,46 @@ final class VirtualNode<N extends Node> {
    * @param replicaIndex the replica index
    * @return the virtual node
    */
-  static <N extends Node> VirtualNode<N> create(N physicalNode, int replicaIndex) {
-    return new VirtualNode<>(physicalNode, replicaIndex);
+  static <N extends Node<?>> VirtualNode<N> create(N physicalNode, int replicaIndex) {
+    return new VirtualNode<>(physicalNode, replicaIndex, null);
+  }
+
+  /**
+   * Returns a copy of this virtual node followed by given colliding virtual nodes.
+   *
+   * @param next the next virtual node sharing the same token
+   * @return the virtual node
+   */
+  VirtualNode<N> withNext(@Nullable VirtualNode<N> next) {
+    return new VirtualNode<>(physicalNode, replicaIndex, next);
+  }
+
+  /**
+   * Gets the next virtual node sharing the same token.
+   *
+   * @return the next virtual node or {@code null}
+   */
+  @Nullable
+  VirtualNode<N> getNext() {
+    return next;
+  }
+
+  /**
+   * Gets replica index.
+   *
+   * @return the replica index
+   */
+  int getReplicaIndex() {
+    return replicaIndex;
   }
 
   /**
-   * Gets node id.
+   * Gets node id. The id is not kept, it is built on each call.
    *
    * @return the node id
    */
   String getNodeId() {
-    return nodeId;
+    return nodeIdOf(physicalNode, replicaIndex);
   }
 
   /**
@@ -99,9 +142,6 @@ final class VirtualNode<N extends Node> {
         + physicalNode
         + ", replicaIndex="
         + replicaIndex
-        + ", nodeId='"
-        + nodeId
-        + '\''
         + '}';
   }
 }
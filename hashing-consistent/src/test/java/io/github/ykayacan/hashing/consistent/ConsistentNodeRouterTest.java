@@ -19,36 +19,63 @@ package io.github.ykayacan.hashing.consistent;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.github.ykayacan.hashing.api.DomainPlacement;
+import io.github.ykayacan.hashing.api.FailureDomain;
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashFunction128;
+import io.github.ykayacan.hashing.api.HashRange;
+import io.github.ykayacan.hashing.api.KeyHasher;
 import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.RoutingEvents;
+import io.github.ykayacan.hashing.api.TopologyChange;
 import io.github.ykayacan.hashing.consistent.util.StreamUtil;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
 class ConsistentNodeRouterTest {
 
   @Test
   void testEmpty() {
-    NodeRouter<PhysicalNode> router = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
     assertFalse(router.getNode("key").isPresent());
   }
 
   /** Ensure the same node returned for same key after a large change to the pool of nodes */
   @Test
   void testConsistentAfterRemove() {
-    NodeRouter<PhysicalNode> router = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
     IntStream.range(0, 1000)
         .parallel()
         .mapToObj(index -> PhysicalNode.of("node" + index))
         .forEach(router::addNode);
 
-    Optional<PhysicalNode> node = router.getNode("key");
+    Optional<PhysicalNode<?>> node = router.getNode("key");
 
     Random random = new Random();
     IntStream.range(0, 250)
@@ -62,10 +89,10 @@ class ConsistentNodeRouterTest {
   /** Ensure that a new node returned after deleted */
   @Test
   void testPreviousDeleted() {
-    NodeRouter<PhysicalNode> router = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
     router.addNodes(Arrays.asList(PhysicalNode.of("node1"), PhysicalNode.of("node2")));
 
-    Optional<PhysicalNode> node = router.getNode("key");
+    Optional<PhysicalNode<?>> node = router.getNode("key");
     node.ifPresent(physicalNode -> router.removeNode(physicalNode.getNodeId()));
 
     Set<String> set = new HashSet<>();
@@ -82,10 +109,10 @@ class ConsistentNodeRouterTest {
   /** Ensure same node will still be returned if removed/readded */
   @Test
   void testReAdd() {
-    NodeRouter<PhysicalNode> router = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
     router.addNodes(Arrays.asList(PhysicalNode.of("node1"), PhysicalNode.of("node2")));
 
-    Optional<PhysicalNode> node = router.getNode("key");
+    Optional<PhysicalNode<?>> node = router.getNode("key");
     node.ifPresent(
         physicalNode -> {
           router.removeNode(physicalNode.getNodeId());
@@ -97,8 +124,8 @@ class ConsistentNodeRouterTest {
   /** Ensure 2 hashes if have nodes added in different order will have same results */
   @Test
   void testDifferentOrder() {
-    NodeRouter<PhysicalNode> router1 = createConsistentRouter();
-    NodeRouter<PhysicalNode> router2 = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router1 = createConsistentRouter();
+    NodeRouter<PhysicalNode<?>> router2 = createConsistentRouter();
 
     IntStream.range(0, 1000)
         .parallel()
@@ -112,7 +139,787 @@ class ConsistentNodeRouterTest {
     assertEquals(router2.getNode("key"), router1.getNode("key"));
   }
 
-  private NodeRouter<PhysicalNode> createConsistentRouter() {
+  /** Ensure off-heap and compact rings route every key to the same node as the skip list ring */
+  @Test
+  void testPrimitiveStoragesSameAsSkipList() {
+    for (RingStorage ringStorage : Arrays.asList(RingStorage.OFF_HEAP, RingStorage.COMPACT)) {
+      NodeRouter<PhysicalNode<?>> skipList = createConsistentRouter();
+      NodeRouter<PhysicalNode<?>> primitive =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+              .replicaCount(15)
+              .ringStorage(ringStorage)
+              .build();
+
+      IntStream.range(0, 100)
+          .mapToObj(index -> PhysicalNode.of("node" + index))
+          .forEach(
+              node -> {
+                skipList.addNode(node);
+                primitive.addNode(node);
+              });
+      IntStream.range(0, 100)
+          .filter(index -> index % 3 == 0)
+          .mapToObj(index -> "node" + index)
+          .forEach(
+              nodeId -> {
+                skipList.removeNode(nodeId);
+                primitive.removeNode(nodeId);
+              });
+      // takes a released ordinal
+      skipList.addNode(PhysicalNode.of("node100"));
+      primitive.addNode(PhysicalNode.of("node100"));
+
+      NodeTable<PhysicalNode<?>> table = primitive.getNodeTable();
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(skipList.getNode("key" + i), primitive.getNode("key" + i));
+        assertEquals(primitive.getNode("key" + i).get(), table.get(primitive.route("key" + i)));
+      }
+    }
+  }
+
+  @Test
+  void testBytesPerVirtualNode() {
+    List<PhysicalNode<?>> nodes =
+        IntStream.range(0, 100)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList());
+    Map<RingStorage, Double> bytes = new HashMap<>();
+    for (RingStorage ringStorage : RingStorage.values()) {
+      ConsistentNodeRouter<PhysicalNode<?>> router = createRouter(ringStorage, 15);
+      assertEquals(0.0, router.getBytesPerVirtualNode());
+      router.addNodes(nodes);
+      bytes.put(ringStorage, router.getBytesPerVirtualNode());
+    }
+    assertEquals(10.0, bytes.get(RingStorage.COMPACT));
+    assertEquals(12.0, bytes.get(RingStorage.OFF_HEAP));
+    assertTrue(bytes.get(RingStorage.SKIP_LIST) > 60);
+
+    // past 65536 ordinals owners take an int each
+    List<PhysicalNode<?>> manyNodes =
+        IntStream.range(0, 70000)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList());
+    ConsistentNodeRouter<PhysicalNode<?>> compact = createRouter(RingStorage.COMPACT, 1);
+    ConsistentNodeRouter<PhysicalNode<?>> offHeap = createRouter(RingStorage.OFF_HEAP, 1);
+    compact.addNodes(manyNodes);
+    offHeap.addNodes(manyNodes);
+    assertEquals(12.0, compact.getBytesPerVirtualNode());
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(offHeap.getNode("key" + i), compact.getNode("key" + i));
+    }
+  }
+
+  private static ConsistentNodeRouter<PhysicalNode<?>> createRouter(
+      RingStorage ringStorage, int replicaCount) {
+    return ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+        .replicaCount(replicaCount)
+        .ringStorage(ringStorage)
+        .build();
+  }
+
+  /** Ensure a ring built in bulk routes every key like a ring built node by node */
+  @Test
+  void testBulkBuildSameAsIncremental() {
+    List<PhysicalNode<?>> nodes =
+        IntStream.range(0, 500)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList());
+
+    for (RingStorage ringStorage : RingStorage.values()) {
+      NodeRouter<PhysicalNode<?>> incremental = createConsistentRouter();
+      nodes.forEach(incremental::addNode);
+
+      NodeRouter<PhysicalNode<?>> bulk =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+              .initialNodes(nodes.subList(0, 400))
+              .replicaCount(15)
+              .ringStorage(ringStorage)
+              .build();
+      bulk.addNodes(nodes.subList(400, 500));
+
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(incremental.getNode("key" + i), bulk.getNode("key" + i));
+      }
+    }
+  }
+
+  /** Ensure colliding tokens resolve to the same node whatever the insertion order */
+  @Test
+  void testBulkBuildCollisionsAreDeterministic() {
+    List<PhysicalNode<?>> nodes =
+        Arrays.asList(PhysicalNode.of("node2"), PhysicalNode.of("node1"), PhysicalNode.of("node3"));
+
+    for (RingStorage ringStorage : RingStorage.values()) {
+      NodeRouter<PhysicalNode<?>> router =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(key -> 42)
+              .initialNodes(nodes)
+              .replicaCount(3)
+              .ringStorage(ringStorage)
+              .build();
+
+      assertEquals(Optional.of(PhysicalNode.of("node1")), router.getNode("key"));
+      // every colliding token is kept
+      router.removeNode("node1");
+      assertEquals(Optional.of(PhysicalNode.of("node2")), router.getNode("key"));
+      router.removeNode("node2");
+      assertEquals(Optional.of(PhysicalNode.of("node3")), router.getNode("key"));
+    }
+  }
+
+  /** Ensure colliding tokens added one by one are kept and resolve whatever the order */
+  @Test
+  void testCollisionsAcrossAdds() {
+    for (RingStorage ringStorage : RingStorage.values()) {
+      for (List<String> nodeIds :
+          Arrays.asList(
+              Arrays.asList("node2", "node1", "node3"), Arrays.asList("node3", "node2", "node1"))) {
+        ConsistentNodeRouter<PhysicalNode<?>> router =
+            ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(key -> 42)
+                .replicaCount(3)
+                .ringStorage(ringStorage)
+                .listenerExecutor(Runnable::run)
+                .build();
+        nodeIds.forEach(nodeId -> router.addNode(PhysicalNode.of(nodeId)));
+        assertEquals(Optional.of(PhysicalNode.of("node1")), router.getNode("key"));
+
+        List<TopologyChange<PhysicalNode<?>>> changes = new ArrayList<>();
+        router.addTopologyListener(changes::add);
+        router.removeNode("node1");
+        assertEquals(Optional.of(PhysicalNode.of("node2")), router.getNode("key"));
+        HashRange<PhysicalNode<?>> range = changes.get(0).getRanges().get(0);
+        assertEquals(Optional.of(PhysicalNode.of("node2")), range.getNewOwner());
+        assertTrue(range.contains(0));
+
+        router.addNode(PhysicalNode.of("node1"));
+        router.removeNode("node2");
+        router.removeNode("node1");
+        assertEquals(Optional.of(PhysicalNode.of("node3")), router.getNode("key"));
+      }
+    }
+  }
+
+  /** Ensure colliding 128-bit tokens resolve by their low bits on both storages */
+  @Test
+  void testHashFunction128Collisions() {
+    HashFunction murmur = MurMurHashFunction.create();
+    HashFunction128 hashFunction =
+        new HashFunction128() {
+          @Override
+          public long hash(String key) {
+            return 42;
+          }
+
+          @Override
+          public long hashLow(String key) {
+            return murmur.hash(key);
+          }
+        };
+    List<PhysicalNode<?>> nodes =
+        IntStream.range(0, 20)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList());
+    String first =
+        nodes.stream()
+            .flatMap(node -> IntStream.range(0, 3).mapToObj(i -> VirtualNode.nodeIdOf(node, i)))
+            .min(Comparator.comparingLong(murmur::hash))
+            .get();
+    String expected = first.substring(0, first.lastIndexOf('-'));
+
+    for (RingStorage ringStorage : RingStorage.values()) {
+      NodeRouter<PhysicalNode<?>> router =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+              .replicaCount(3)
+              .ringStorage(ringStorage)
+              .build();
+      List<PhysicalNode<?>> shuffled = new ArrayList<>(nodes);
+      Collections.shuffle(shuffled, new Random(ringStorage.ordinal()));
+      router.addNodes(shuffled.subList(0, 10));
+      shuffled.subList(10, 20).forEach(router::addNode);
+
+      assertEquals(expected, router.getNode("key").get().getNodeId());
+      router.removeNode(expected);
+      assertNotEquals(expected, router.getNode("key").get().getNodeId());
+    }
+  }
+
+  /** Ensure balanced tokens collide in node id order, they have no low half to compare */
+  @Test
+  void testBalancedCollisionsWithHashFunction128() {
+    HashFunction128 hashFunction =
+        new HashFunction128() {
+          @Override
+          public long hash(String key) {
+            return 42;
+          }
+
+          @Override
+          public long hashLow(String key) {
+            return key.hashCode();
+          }
+        };
+    CollisionOrder collisionOrder =
+        CollisionOrder.create(
+            hashFunction, TokenScheme.VIRTUAL_NODE_ID, 3, TokenAllocation.BALANCED);
+    PhysicalNode<?> a = PhysicalNode.of("node1");
+    PhysicalNode<?> b = PhysicalNode.of("node2");
+    assertTrue(collisionOrder.compare(a, b, 7) < 0);
+    assertTrue(collisionOrder.compare(b, a, 7) > 0);
+    assertEquals(0, collisionOrder.compare(a, PhysicalNode.of("node1"), 7));
+  }
+
+  /** Ensure derived tokens spread keys evenly and only move keys of a removed node */
+  @Test
+  void testDerivedTokenScheme() {
+    NodeRouter<PhysicalNode<?>> router =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+            .initialNodes(
+                IntStream.range(0, 50)
+                    .mapToObj(index -> PhysicalNode.of("node" + index))
+                    .collect(Collectors.toList()))
+            .replicaCount(100)
+            .tokenScheme(TokenScheme.DERIVED)
+            .build();
+
+    Map<String, Integer> counts = new HashMap<>();
+    Map<String, PhysicalNode<?>> owners = new HashMap<>();
+    for (int i = 0; i < 50000; i++) {
+      PhysicalNode<?> node = router.getNode("key" + i).get();
+      counts.merge(node.getNodeId(), 1, Integer::sum);
+      owners.put("key" + i, node);
+    }
+    assertEquals(50, counts.size());
+    counts.values().forEach(count -> assertTrue(count > 500 && count < 1500));
+
+    router.removeNode("node0");
+    owners.forEach(
+        (key, owner) -> {
+          if (!owner.getNodeId().equals("node0")) {
+            assertEquals(Optional.of(owner), router.getNode(key));
+          }
+        });
+  }
+
+  /** Ensure balanced tokens spread keys evenly with few replicas and only move keys to new nodes */
+  @Test
+  void testBalancedTokenAllocation() {
+    NodeRouter<PhysicalNode<?>> router = createBalancedRouter(RingStorage.SKIP_LIST);
+    Map<String, PhysicalNode<?>> owners = new HashMap<>();
+    for (int index = 0; index < 50; index++) {
+      PhysicalNode<?> node = PhysicalNode.of(String.format("node%02d", index));
+      router.addNode(node);
+      for (int i = 0; i < 50000; i++) {
+        PhysicalNode<?> owner = router.getNode("key" + i).get();
+        PhysicalNode<?> previous = owners.put("key" + i, owner);
+        assertTrue(previous == null || previous.equals(owner) || owner.equals(node));
+      }
+    }
+
+    Map<String, Integer> counts = new HashMap<>();
+    owners.values().forEach(owner -> counts.merge(owner.getNodeId(), 1, Integer::sum));
+    assertEquals(50, counts.size());
+    counts.values().forEach(count -> assertTrue(count > 800 && count < 1200, "" + count));
+
+    // a node added again keeps its tokens, a bulk build matches adds in node id order
+    router.addNode(PhysicalNode.of("node07"));
+    NodeRouter<PhysicalNode<?>> bulk = createBalancedRouter(RingStorage.OFF_HEAP);
+    bulk.addNodes(
+        IntStream.range(0, 50)
+            .mapToObj(index -> PhysicalNode.of(String.format("node%02d", index)))
+            .collect(Collectors.toList()));
+    owners.forEach(
+        (key, owner) -> {
+          assertEquals(Optional.of(owner), router.getNode(key));
+          assertEquals(Optional.of(owner), bulk.getNode(key));
+        });
+  }
+
+  /** Ensure a node added again part-way through activation keeps the tokens it already has */
+  @Test
+  void testBalancedPartlyActivatedNode() {
+    for (RingStorage ringStorage : RingStorage.values()) {
+      ConsistentNodeRouter<PhysicalNode<?>> router =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+              .initialNodes(
+                  IntStream.range(0, 10)
+                      .mapToObj(index -> PhysicalNode.of("node" + index))
+                      .collect(Collectors.toList()))
+              .replicaCount(16)
+              .ringStorage(ringStorage)
+              .tokenAllocation(TokenAllocation.BALANCED)
+              .stagedActivation(4)
+              .listenerExecutor(Runnable::run)
+              .build();
+      Map<String, PhysicalNode<?>> before = new HashMap<>();
+      IntStream.range(0, 10000)
+          .forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+      PhysicalNode<?> added = PhysicalNode.of("node10");
+      router.addNode(added);
+      Map<String, PhysicalNode<?>> partial = new HashMap<>();
+      IntStream.range(0, 10000)
+          .forEach(i -> partial.put("key" + i, router.getNode("key" + i).get()));
+      router.addNode(added);
+      while (router.advanceActivation()) {
+        // activate the remaining stages
+      }
+
+      long moved = 0;
+      for (int i = 0; i < 10000; i++) {
+        String key = "key" + i;
+        PhysicalNode<?> owner = router.getNode(key).get();
+        if (partial.get(key).equals(added)) {
+          assertEquals(added, owner);
+        }
+        if (owner.equals(added)) {
+          moved++;
+        } else {
+          assertEquals(before.get(key), owner);
+        }
+      }
+      assertTrue(Math.abs(moved - 909) < 300, "" + moved);
+    }
+  }
+
+  private static NodeRouter<PhysicalNode<?>> createBalancedRouter(RingStorage ringStorage) {
+    return ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+        .replicaCount(16)
+        .ringStorage(ringStorage)
+        .tokenAllocation(TokenAllocation.BALANCED)
+        .build();
+  }
+
+  /** Ensure listeners receive exactly the hash ranges whose owner changed */
+  @Test
+  void testTopologyListenerRanges() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    NodeRouter<PhysicalNode<?>> router =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+            .initialNodes(
+                IntStream.range(0, 10)
+                    .mapToObj(index -> PhysicalNode.of("node" + index))
+                    .collect(Collectors.toList()))
+            .replicaCount(15)
+            .listenerExecutor(Runnable::run)
+            .build();
+    List<TopologyChange<PhysicalNode<?>>> changes = new ArrayList<>();
+    router.addTopologyListener(changes::add);
+
+    Map<String, PhysicalNode<?>> before = new HashMap<>();
+    IntStream.range(0, 10000).forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+    PhysicalNode<?> added = PhysicalNode.of("node10");
+    router.addNode(added);
+    router.removeNode("node10");
+
+    assertEquals(2, changes.size());
+    TopologyChange<PhysicalNode<?>> addition = changes.get(0);
+    assertEquals(TopologyChange.Type.ADDED, addition.getType());
+    assertEquals(Collections.singletonList(added), addition.getNodes());
+    TopologyChange<PhysicalNode<?>> removal = changes.get(1);
+    assertEquals(TopologyChange.Type.REMOVED, removal.getType());
+    assertEquals(Collections.singletonList(added), removal.getNodes());
+
+    before.forEach(
+        (key, owner) -> {
+          long hash = hashFunction.hash(key);
+          Optional<HashRange<PhysicalNode<?>>> range =
+              addition.getRanges().stream().filter(r -> r.contains(hash)).findFirst();
+          Optional<HashRange<PhysicalNode<?>>> reverted =
+              removal.getRanges().stream().filter(r -> r.contains(hash)).findFirst();
+          assertEquals(range.isPresent(), reverted.isPresent());
+          range.ifPresent(
+              r -> {
+                assertEquals(Optional.of(owner), r.getPreviousOwner());
+                assertEquals(Optional.of(added), r.getNewOwner());
+              });
+          assertEquals(Optional.of(owner), router.getNode(key));
+        });
+  }
+
+  /** Ensure each activation stage only moves keys to the new node and reports what it moved */
+  @Test
+  void testStagedActivation() throws InterruptedException {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<PhysicalNode<?>> initialNodes =
+        IntStream.range(0, 10)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList());
+    PhysicalNode<?> added = PhysicalNode.of("node10");
+    NodeRouter<PhysicalNode<?>> expected = ConsistentNodeRouter.create(100, hashFunction);
+    expected.addNodes(initialNodes);
+    expected.addNode(added);
+
+    for (RingStorage ringStorage : RingStorage.values()) {
+      ConsistentNodeRouter<PhysicalNode<?>> router =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+              .initialNodes(initialNodes)
+              .replicaCount(100)
+              .ringStorage(ringStorage)
+              .stagedActivation(4)
+              .listenerExecutor(Runnable::run)
+              .build();
+      List<TopologyChange<PhysicalNode<?>>> changes = new ArrayList<>();
+      router.addTopologyListener(changes::add);
+
+      Map<String, PhysicalNode<?>> owners = new HashMap<>();
+      IntStream.range(0, 10000)
+          .forEach(i -> owners.put("key" + i, router.getNode("key" + i).get()));
+
+      router.addNode(added);
+      long moved = 0;
+      for (int stage = 1; stage <= 4; stage++) {
+        TopologyChange<PhysicalNode<?>> change = changes.get(stage - 1);
+        assertEquals(TopologyChange.Type.ADDED, change.getType());
+        assertEquals(Collections.singletonList(added), change.getNodes());
+
+        long count = 0;
+        for (Map.Entry<String, PhysicalNode<?>> entry : owners.entrySet()) {
+          PhysicalNode<?> owner = router.getNode(entry.getKey()).get();
+          long hash = hashFunction.hash(entry.getKey());
+          Optional<HashRange<PhysicalNode<?>>> range =
+              change.getRanges().stream().filter(r -> r.contains(hash)).findFirst();
+          if (owner.equals(entry.getValue())) {
+            assertFalse(range.isPresent());
+          } else {
+            assertEquals(added, owner);
+            assertEquals(Optional.of(entry.getValue()), range.get().getPreviousOwner());
+            entry.setValue(owner);
+            count++;
+          }
+        }
+        assertTrue(count > 100);
+        moved += count;
+        assertEquals(stage < 3, router.advanceActivation());
+      }
+      assertEquals(4, changes.size());
+      assertTrue(Math.abs(moved - 909) < 300);
+      owners.forEach((key, owner) -> assertEquals(expected.getNode(key), Optional.of(owner)));
+    }
+
+    ConsistentNodeRouter<PhysicalNode<?>> timed =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+            .initialNodes(initialNodes)
+            .replicaCount(100)
+            .stagedActivation(4, 10, TimeUnit.MILLISECONDS)
+            .build();
+    timed.addNode(added);
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertFalse(timed.advanceActivation());
+    IntStream.range(0, 10000)
+        .mapToObj(i -> "key" + i)
+        .forEach(key -> assertEquals(expected.getNode(key), timed.getNode(key)));
+  }
+
+  /** Ensure keys hashed after the last token wrap around to the first one */
+  @Test
+  void testWrapAround() {
+    NodeRouter<PhysicalNode<?>> router =
+        ConsistentNodeRouter.create(
+            Collections.singletonList(PhysicalNode.of("node1")), 1, key -> key.length());
+
+    assertEquals(Optional.of(PhysicalNode.of("node1")), router.getNode("key-after-last-token"));
+  }
+
+  /** Ensure keys of an ejected node fall through to other nodes until it is back up */
+  @Test
+  void testMarkDown() throws InterruptedException {
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
+    IntStream.range(0, 10)
+        .mapToObj(index -> PhysicalNode.of("node" + index))
+        .forEach(router::addNode);
+
+    Map<String, PhysicalNode<?>> before = new HashMap<>();
+    IntStream.range(0, 1000).forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    before.forEach(
+        (key, owner) -> {
+          PhysicalNode<?> node = router.getNode(key).get();
+          assertNotEquals("node0", node.getNodeId());
+          if (!owner.getNodeId().equals("node0")) {
+            assertEquals(owner, node);
+          }
+        });
+
+    router.markUp("node0");
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+
+    router.markDown("node0", 10, TimeUnit.MILLISECONDS);
+    TimeUnit.MILLISECONDS.sleep(20);
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+  }
+
+  /** Ensure replicas are distinct and start with the primary node */
+  @Test
+  void testGetNodes() {
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
+    IntStream.range(0, 10)
+        .mapToObj(index -> PhysicalNode.of("node" + index))
+        .forEach(router::addNode);
+
+    for (int i = 0; i < 1000; i++) {
+      List<PhysicalNode<?>> nodes = router.getNodes("key" + i, 3);
+      assertEquals(3, nodes.size());
+      assertEquals(3, new HashSet<>(nodes).size());
+      assertEquals(router.getNode("key" + i).get(), nodes.get(0));
+    }
+    assertEquals(10, router.getNodes("key", 20).size());
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    IntStream.range(0, 1000)
+        .forEach(
+            i ->
+                router
+                    .getNodes("key" + i, 3)
+                    .forEach(node -> assertNotEquals("node0", node.getNodeId())));
+  }
+
+  /** Ensure replicas land in distinct zones while there are enough zones, then distinct racks */
+  @Test
+  void testGetNodesAcrossDomains() {
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
+    for (int zone = 0; zone < 3; zone++) {
+      for (int rack = 0; rack < 2; rack++) {
+        for (int host = 0; host < 3; host++) {
+          router.addNode(
+              PhysicalNode.newBuilder("node-" + zone + "-" + rack + "-" + host)
+                  .failureDomain(FailureDomain.of("zone" + zone, "rack" + rack))
+                  .build());
+        }
+      }
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      List<PhysicalNode<?>> nodes = router.getNodesAcrossDomains("key" + i, 3);
+      assertEquals(3, nodes.size());
+      assertEquals(
+          3, nodes.stream().map(node -> node.getFailureDomain().getZone()).distinct().count());
+      assertEquals(router.getNode("key" + i).get(), nodes.get(0));
+
+      nodes = router.getNodesAcrossDomains("key" + i, 6);
+      assertEquals(6, nodes.stream().map(PhysicalNode::getFailureDomain).distinct().count());
+
+      // with fewer zones than replicas the walk stops early, picking what a full walk would
+      for (int count = 4; count <= 8; count++) {
+        DomainPlacement<PhysicalNode<?>> placement = DomainPlacement.create(count);
+        router.getNodes("key" + i, 18).forEach(placement::offer);
+        assertEquals(placement.getReplicas(), router.getNodesAcrossDomains("key" + i, count));
+      }
+
+      // more replicas than nodes, the walk ends once every node was seen
+      nodes = router.getNodesAcrossDomains("key" + i, 20);
+      assertEquals(18, nodes.stream().distinct().count());
+      assertEquals(
+          3, nodes.stream().map(node -> node.getFailureDomain().getZone()).distinct().count());
+    }
+
+    assertEquals(18, router.getNodesAcrossDomains("key", Integer.MAX_VALUE).size());
+
+    router.markDown("node-0-0-0", 1, TimeUnit.HOURS);
+    List<PhysicalNode<?>> nodes = router.getNodesAcrossDomains("key", 20);
+    assertEquals(17, nodes.size());
+    assertFalse(nodes.contains(PhysicalNode.of("node-0-0-0")));
+  }
+
+  /** Ensure long keys, typed keys and precomputed hashes route like their String keys */
+  @Test
+  void testGetNodeByHash() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
+    assertFalse(router.getNodeByHash(0).isPresent());
+    IntStream.range(0, 10)
+        .mapToObj(index -> PhysicalNode.of("node" + index))
+        .forEach(router::addNode);
+
+    KeyHasher<UUID> keyHasher = key -> hashFunction.hash(key.toString());
+    for (long i = 0; i < 1000; i++) {
+      Optional<PhysicalNode<?>> node = router.getNode(Long.toString(i));
+      assertEquals(node, router.getNode(i));
+      assertEquals(node, router.getNodeByHash(hashFunction.hash(Long.toString(i))));
+
+      UUID uuid = new UUID(i, -i);
+      assertEquals(router.getNode(uuid.toString()), router.getNode(uuid, keyHasher));
+    }
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    LongStream.range(0, 1000)
+        .forEach(i -> assertNotEquals("node0", router.getNode(i).get().getNodeId()));
+  }
+
+  @Test
+  void testTypedPayload() {
+    NodeRouter<PhysicalNode<StringBuilder>> router =
+        ConsistentNodeRouter.create(15, MurMurHashFunction.create());
+    StringBuilder pool = new StringBuilder("pool");
+    router.addNode(PhysicalNode.newBuilder("node1").data(pool).build());
+
+    PhysicalNode<StringBuilder> node = router.getNode("key").get();
+    assertSame(pool, node.data());
+    assertEquals(Optional.of(pool), node.getData());
+
+    // identity is the node id, whatever the payload or failure domain
+    PhysicalNode<?> other =
+        PhysicalNode.newBuilder("node1")
+            .data(new StringBuilder("pool"))
+            .failureDomain(FailureDomain.of("zone1", "rack1"))
+            .build();
+    assertEquals(node, other);
+
+    assertEquals(node.hashCode(), other.hashCode());
+    assertNotEquals(node, PhysicalNode.newBuilder("node2").data(pool).build());
+
+    // re-adding an id replaces the node
+    PhysicalNode<StringBuilder> replacement =
+        PhysicalNode.newBuilder("node1").data(new StringBuilder("pool2")).build();
+    router.addNode(replacement);
+    assertSame(replacement, router.getNode("key").get());
+    assertSame(replacement, router.getNodeTable().get(router.route("key")));
+    assertEquals(1, router.getNodeTable().getNodes().size());
+  }
+
+  @Test
+  void testRoute() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    NodeRouter<PhysicalNode<?>> router = createConsistentRouter();
+    assertEquals(-1, router.route("key"));
+    assertEquals(0, router.getNodeTable().size());
+    IntStream.range(0, 10).mapToObj(i -> PhysicalNode.of("node" + i)).forEach(router::addNode);
+
+    NodeTable<PhysicalNode<?>> table = router.getNodeTable();
+    assertEquals(10, table.size());
+    KeyHasher<Long> keyHasher = hashFunction::hash;
+    for (long i = 0; i < 1000; i++) {
+      int ordinal = router.route(Long.toString(i));
+      assertEquals(router.getNode(Long.toString(i)).get(), table.get(ordinal));
+      assertEquals(router.getNode(i).get(), table.get(router.route(i)));
+      assertEquals(router.route(i), router.routeByHash(hashFunction.hash(i)));
+      assertEquals(router.route(i), router.route(i, keyHasher));
+    }
+
+    // a removed node frees its ordinal for the next node
+    int ordinal = router.route("key");
+    String nodeId = table.get(ordinal).getNodeId();
+    router.removeNode(nodeId);
+    assertNull(router.getNodeTable().get(ordinal));
+    assertNotEquals(ordinal, router.route("key"));
+    router.addNode(PhysicalNode.of("node10"));
+    assertEquals("node10", router.getNodeTable().get(ordinal).getNodeId());
+    assertEquals(table.get(0), router.getNodeTable().get(0));
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    for (long i = 0; i < 1000; i++) {
+      assertNotEquals("node0", router.getNodeTable().get(router.route(i)).getNodeId());
+    }
+  }
+
+  /** Ensure route candidates are the distinct healthy successors of a key */
+  @Test
+  void testRouteCandidates() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    for (RingStorage ringStorage : RingStorage.values()) {
+      NodeRouter<PhysicalNode<?>> router =
+          ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(hashFunction)
+              .replicaCount(15)
+              .ringStorage(ringStorage)
+              .build();
+      int[] candidates = new int[3];
+      assertEquals(0, router.routeCandidates("key", candidates));
+      IntStream.range(0, 10).mapToObj(i -> PhysicalNode.of("node" + i)).forEach(router::addNode);
+
+      NodeTable<PhysicalNode<?>> table = router.getNodeTable();
+      for (long i = 0; i < 1000; i++) {
+        assertEquals(3, router.routeCandidates(Long.toString(i), candidates));
+        List<PhysicalNode<?>> nodes = router.getNodes(Long.toString(i), 3);
+        for (int j = 0; j < 3; j++) {
+          assertEquals(nodes.get(j), table.get(candidates[j]));
+        }
+        assertEquals(3, router.routeCandidates(i, candidates));
+        assertEquals(router.route(i), candidates[0]);
+        assertEquals(3, router.routeCandidatesByHash(hashFunction.hash(i), candidates));
+        assertEquals(router.routeByHash(hashFunction.hash(i)), candidates[0]);
+      }
+      assertEquals(10, router.routeCandidates("key", new int[20]));
+
+      router.markDown("node0", 1, TimeUnit.HOURS);
+      for (long i = 0; i < 1000; i++) {
+        assertEquals(3, router.routeCandidates(i, candidates));
+        assertEquals(router.route(i), candidates[0]);
+        IntStream.of(candidates)
+            .forEach(ordinal -> assertNotEquals("node0", table.get(ordinal).getNodeId()));
+      }
+      assertEquals(9, router.routeCandidates("key", new int[20]));
+    }
+  }
+
+  private NodeRouter<PhysicalNode<?>> createConsistentRouter() {
     return ConsistentNodeRouter.create(15, MurMurHashFunction.create());
   }
+
+  /** Ensure sampled lookups and topology changes are recorded as JFR events */
+  @Test
+  void testFlightRecorderEvents() throws IOException {
+    ConsistentNodeRouter<PhysicalNode<?>> router =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+            .replicaCount(100)
+            .build();
+    ConsistentNodeRouter<PhysicalNode<?>> staged =
+        ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(MurMurHashFunction.create())
+            .replicaCount(100)
+            .stagedActivation(4)
+            .build();
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("io.github.ykayacan.hashing.Lookup");
+      recording.enable("io.github.ykayacan.hashing.TopologyChange");
+      recording.start();
+      IntStream.range(0, 10).forEach(i -> router.addNode(PhysicalNode.of("node" + i)));
+      router.removeNode("node0");
+      staged.addNode(PhysicalNode.of("node0"));
+      staged.removeNode("node0");
+      LongStream.range(0, 50_000).forEach(router::getNode);
+      recording.stop();
+
+      Path file = Files.createTempFile("routing", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+      Files.delete(file);
+    }
+
+    List<RecordedEvent> changes = eventsOf(events, "TopologyChange", router);
+    assertEquals(11, changes.size());
+    assertEquals("ADDED", changes.get(0).getString("change"));
+    assertEquals(100, changes.get(0).getLong("tokenCount"));
+    assertEquals("REMOVED", changes.get(10).getString("change"));
+    assertEquals(100, changes.get(10).getLong("tokenCount"));
+
+    // a node removed part-way through activation reports the tokens it had
+    List<RecordedEvent> stagedChanges = eventsOf(events, "TopologyChange", staged);
+    assertEquals(2, stagedChanges.size());
+    assertEquals(25, stagedChanges.get(0).getLong("tokenCount"));
+    assertEquals("REMOVED", stagedChanges.get(1).getString("change"));
+    assertEquals(25, stagedChanges.get(1).getLong("tokenCount"));
+
+    List<RecordedEvent> lookups = eventsOf(events, "Lookup", router);
+    assertTrue(lookups.size() > 10 && lookups.size() < 500);
+    for (RecordedEvent lookup : lookups) {
+      assertEquals(RoutingEvents.DEFAULT_LOOKUP_SAMPLE_RATE, lookup.getInt("sampleRate"));
+      assertEquals(
+          router.getNodeByHash(lookup.getLong("keyHash")).get().getNodeId(),
+          lookup.getString("nodeId"));
+    }
+  }
+
+  private static List<RecordedEvent> eventsOf(
+      List<RecordedEvent> events, String name, Object router) {
+    String eventName = "io.github.ykayacan.hashing." + name;
+    String routerName =
+        router.getClass().getSimpleName()
+            + '@'
+            + Integer.toHexString(System.identityHashCode(router));
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals(eventName))
+        .filter(event -> event.getString("router").equals(routerName))
+        .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+        .collect(Collectors.toList());
+  }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.jcstress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.consistent.RingStorage;
+import java.util.Arrays;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.LL_Result;
+
+/**
+ * Visibility of {@code ConsistentNodeRouter#getNode} against concurrent topology changes, for
+ * every {@link RingStorage}. A reader must see either the ring before or the ring after a change,
+ * never a ring without any owner for the key, and an added batch of nodes must appear at once.
+ */
+public final class ConsistentRouterStress {
+
+  private static final PhysicalNode<?> NODE_A = PhysicalNode.of("a");
+  private static final PhysicalNode<?> NODE_B = PhysicalNode.of("b");
+  private static final PhysicalNode<?> NODE_C = PhysicalNode.of("c");
+
+  /** A key owned by b once b joins a. */
+  private static final String KEY_B =
+      Routers.keyOf(() -> Routers.consistent(RingStorage.SKIP_LIST, NODE_A, NODE_B), "b");
+
+  /** Keys owned by b and c once both join a ring without nodes. */
+  private static final String BATCH_KEY_B =
+      Routers.keyOf(() -> Routers.consistent(RingStorage.SKIP_LIST, NODE_B, NODE_C), "b");
+
+  private static final String BATCH_KEY_C =
+      Routers.keyOf(() -> Routers.consistent(RingStorage.SKIP_LIST, NODE_B, NODE_C), "c");
+
+  private ConsistentRouterStress() {}
+
+  @JCStressTest
+  @Outcome(id = "a, b", expect = ACCEPTABLE, desc = "Reader saw the ring before the add")
+  @Outcome(id = "b, b", expect = ACCEPTABLE, desc = "Reader saw the ring after the add")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the add got lost")
+  @State
+  public static class SkipListAddNode {
+    private final NodeRouter<PhysicalNode<?>> router =
+        Routers.consistent(RingStorage.SKIP_LIST, NODE_A);
+
+    @Actor
+    public void writer() {
+      router.addNode(NODE_B);
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "b, a", expect = ACCEPTABLE, desc = "Reader saw the ring before the remove")
+  @Outcome(id = "a, a", expect = ACCEPTABLE, desc = "Reader saw the ring after the remove")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the remove got lost")
+  @State
+  public static class SkipListRemoveNode {
+    private final NodeRouter<PhysicalNode<?>> router =
+        Routers.consistent(RingStorage.SKIP_LIST, NODE_A, NODE_B);
+
+    @Actor
+    public void writer() {
+      router.removeNode(NODE_B.getNodeId());
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "none, none", expect = ACCEPTABLE, desc = "Both reads before the add")
+  @Outcome(id = "b, c", expect = ACCEPTABLE, desc = "Both reads after the add")
+  @Outcome(id = "none, c", expect = ACCEPTABLE_INTERESTING, desc = "Add between the reads")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw a partially added batch")
+  @State
+  public static class SkipListAddNodes {
+    private final NodeRouter<PhysicalNode<?>> router = Routers.consistent(RingStorage.SKIP_LIST);
+
+    @Actor
+    public void writer() {
+      router.addNodes(Arrays.asList(NODE_B, NODE_C));
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, BATCH_KEY_B);
+      result.r2 = Routers.nodeIdOf(router, BATCH_KEY_C);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "a, b", expect = ACCEPTABLE, desc = "Reader saw the ring before the add")
+  @Outcome(id = "b, b", expect = ACCEPTABLE, desc = "Reader saw the ring after the add")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the add got lost")
+  @State
+  public static class OffHeapAddNode {
+    private final NodeRouter<PhysicalNode<?>> router =
+        Routers.consistent(RingStorage.OFF_HEAP, NODE_A);
+
+    @Actor
+    public void writer() {
+      router.addNode(NODE_B);
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "b, a", expect = ACCEPTABLE, desc = "Reader saw the ring before the remove")
+  @Outcome(id = "a, a", expect = ACCEPTABLE, desc = "Reader saw the ring after the remove")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the remove got lost")
+  @State
+  public static class OffHeapRemoveNode {
+    private final NodeRouter<PhysicalNode<?>> router =
+        Routers.consistent(RingStorage.OFF_HEAP, NODE_A, NODE_B);
+
+    @Actor
+    public void writer() {
+      router.removeNode(NODE_B.getNodeId());
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "none, none", expect = ACCEPTABLE, desc = "Both reads before the add")
+  @Outcome(id = "b, c", expect = ACCEPTABLE, desc = "Both reads after the add")
+  @Outcome(id = "none, c", expect = ACCEPTABLE_INTERESTING, desc = "Add between the reads")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw a partially added batch")
+  @State
+  public static class OffHeapAddNodes {
+    private final NodeRouter<PhysicalNode<?>> router = Routers.consistent(RingStorage.OFF_HEAP);
+
+    @Actor
+    public void writer() {
+      router.addNodes(Arrays.asList(NODE_B, NODE_C));
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, BATCH_KEY_B);
+      result.r2 = Routers.nodeIdOf(router, BATCH_KEY_C);
+    }
+  }
+}
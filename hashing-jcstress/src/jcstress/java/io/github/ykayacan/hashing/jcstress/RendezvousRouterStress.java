@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.jcstress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.LL_Result;
+
+/**
+ * Visibility of {@code RendezvousNodeRouter#getNode} against concurrent topology changes. A reader
+ * must see the node set either before or after a change, never a key without an owner.
+ */
+public final class RendezvousRouterStress {
+
+  private static final WeightedNode<?> NODE_A = WeightedNode.of("a");
+  private static final WeightedNode<?> NODE_B = WeightedNode.of("b");
+
+  /** A key owned by b once b joins a. */
+  private static final String KEY_B = Routers.keyOf(() -> Routers.rendezvous(NODE_A, NODE_B), "b");
+
+  private RendezvousRouterStress() {}
+
+  @JCStressTest
+  @Outcome(id = "a, b", expect = ACCEPTABLE, desc = "Reader saw the nodes before the add")
+  @Outcome(id = "b, b", expect = ACCEPTABLE, desc = "Reader saw the nodes after the add")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the add got lost")
+  @State
+  public static class AddNode {
+    private final NodeRouter<WeightedNode<?>> router = Routers.rendezvous(NODE_A);
+
+    @Actor
+    public void writer() {
+      router.addNode(NODE_B);
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+
+  @JCStressTest
+  @Outcome(id = "b, a", expect = ACCEPTABLE, desc = "Reader saw the nodes before the remove")
+  @Outcome(id = "a, a", expect = ACCEPTABLE, desc = "Reader saw the nodes after the remove")
+  @Outcome(expect = FORBIDDEN, desc = "Reader saw no owner or the remove got lost")
+  @State
+  public static class RemoveNode {
+    private final NodeRouter<WeightedNode<?>> router = Routers.rendezvous(NODE_A, NODE_B);
+
+    @Actor
+    public void writer() {
+      router.removeNode(NODE_B.getNodeId());
+    }
+
+    @Actor
+    public void reader(LL_Result result) {
+      result.r1 = Routers.nodeIdOf(router, KEY_B);
+    }
+
+    @Arbiter
+    public void arbiter(LL_Result result) {
+      result.r2 = Routers.nodeIdOf(router, KEY_B);
+    }
+  }
+}
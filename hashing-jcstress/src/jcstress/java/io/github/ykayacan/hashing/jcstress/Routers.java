@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.jcstress;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.consistent.RingStorage;
+import io.github.ykayacan.hashing.rendezvous.RendezvousNodeRouter;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import io.github.ykayacan.hashing.rendezvous.strategy.DefaultRendezvousStrategy;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/** Routers and keys shared by the stress tests. */
+final class Routers {
+
+  /** Stafford's variant 13 finalizer over {@link String#hashCode()}, cheap and well spread. */
+  static final HashFunction HASH_FUNCTION =
+      key -> {
+        long value = key.hashCode();
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+      };
+
+  static final int REPLICA_COUNT = 16;
+
+  private Routers() {}
+
+  static NodeRouter<PhysicalNode<?>> consistent(RingStorage ringStorage, PhysicalNode<?>... nodes) {
+    return ConsistentNodeRouter.<PhysicalNode<?>>newBuilder(HASH_FUNCTION)
+        .initialNodes(Arrays.asList(nodes))
+        .replicaCount(REPLICA_COUNT)
+        .ringStorage(ringStorage)
+        .build();
+  }
+
+  static NodeRouter<WeightedNode<?>> rendezvous(WeightedNode<?>... nodes) {
+    return RendezvousNodeRouter.create(
+        Arrays.asList(nodes), HASH_FUNCTION, DefaultRendezvousStrategy.create());
+  }
+
+  /**
+   * Finds a key routed to the given node by a router built with the given nodes.
+   *
+   * @param <N> the type parameter
+   * @param router the router factory
+   * @param nodeId the node id
+   * @return the key
+   */
+  static <N extends Node<?>> String keyOf(Supplier<NodeRouter<N>> router, String nodeId) {
+    NodeRouter<N> probe = router.get();
+    for (int i = 0; ; i++) {
+      String key = "key" + i;
+      if (probe.getNode(key).filter(node -> node.getNodeId().equals(nodeId)).isPresent()) {
+        return key;
+      }
+    }
+  }
+
+  static String nodeIdOf(NodeRouter<?> router, String key) {
+    return router.getNode(key).map(Node::getNodeId).orElse("none");
+  }
+}
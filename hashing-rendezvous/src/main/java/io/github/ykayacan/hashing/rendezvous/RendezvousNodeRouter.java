@@ -16,15 +16,38 @@
 
 package io.github.ykayacan.hashing.rendezvous;
 
+import io.github.ykayacan.hashing.rendezvous.strategy.NodeSnapshot;
 import io.github.ykayacan.hashing.rendezvous.strategy.RendezvousStrategy;
+import io.github.ykayacan.hashing.api.DomainPlacement;
 import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
 import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.RoutingEvents;
+import io.github.ykayacan.hashing.api.TopologyChange;
+import io.github.ykayacan.hashing.api.TopologyListener;
+import io.github.ykayacan.hashing.api.TopologyListeners;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * A high performance thread safe implementation of Rendezvous (Highest Random Weight, HRW) hashing
@@ -48,7 +71,12 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @param <N> the type parameter
  */
-public class RendezvousNodeRouter<N extends WeightedNode> implements NodeRouter<N> {
+public class RendezvousNodeRouter<N extends WeightedNode<?>> implements NodeRouter<N> {
+
+  /** Ramps move weights in this many steps, each publishing a new snapshot */
+  private static final int RAMP_STEPS = 20;
+
+  private static final long MIN_RAMP_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
   /** All the current ring in the pool */
   private final Set<N> ring;
@@ -57,17 +85,53 @@ public class RendezvousNodeRouter<N extends WeightedNode> implements NodeRouter<
 
   private final RendezvousStrategy<N> strategy;
 
+  private final TopologyListeners<N> listeners;
+
+  private final NodeOrdinals ordinals = NodeOrdinals.create();
+
+  private final NodeHealth health = NodeHealth.create();
+
+  private final Predicate<N> healthy =
+      node -> !health.isDown(ordinals.ordinalOf(node.getNodeId()));
+
+  /** Serializes ring mutations so topology changes are published in commit order */
+  private final Object mutationLock = new Object();
+
+  /** Primitive copy of the ring, rebuilt on every mutation, scored by hash lookups */
+  private volatile NodeSnapshot<N> snapshot = NodeSnapshot.empty();
+
+  private volatile NodeTable<N> nodeTable = NodeTable.empty();
+
+  private final long slowStartNanos;
+
+  @Nullable private final ScheduledExecutorService rampScheduler;
+
+  /** Weight ramps by node id, guarded by {@code mutationLock}. */
+  private final Map<String, Ramp> ramps = new HashMap<>();
+
+  /** Guarded by {@code mutationLock}. */
+  private boolean rampStepScheduled;
+
   private RendezvousNodeRouter(
-      Collection<N> initialNodes, HashFunction hashFunction, RendezvousStrategy<N> strategy) {
+      Collection<N> initialNodes,
+      HashFunction hashFunction,
+      RendezvousStrategy<N> strategy,
+      Executor listenerExecutor,
+      long slowStartNanos,
+      @Nullable ScheduledExecutorService rampScheduler) {
     Objects.requireNonNull(initialNodes);
     Objects.requireNonNull(hashFunction);
     Objects.requireNonNull(strategy);
+    Objects.requireNonNull(listenerExecutor);
 
     this.ring = ConcurrentHashMap.newKeySet();
     this.hashFunction = hashFunction;
     this.strategy = strategy;
+    this.listeners = TopologyListeners.create(listenerExecutor);
+    this.slowStartNanos = slowStartNanos;
+    this.rampScheduler = rampScheduler;
 
-    ring.addAll(initialNodes);
+    addNodes(initialNodes, false);
   }
 
   /**
@@ -78,7 +142,7 @@ public class RendezvousNodeRouter<N extends WeightedNode> implements NodeRouter<
    * @param strategy the strategy
    * @return the node router
    */
-  public static <N extends WeightedNode> NodeRouter<N> create(
+  public static <N extends WeightedNode<?>> NodeRouter<N> create(
       HashFunction hashFunction, RendezvousStrategy<N> strategy) {
     return create(Collections.emptyList(), hashFunction, strategy);
   }
@@ -92,27 +156,597 @@ public class RendezvousNodeRouter<N extends WeightedNode> implements NodeRouter<
    * @param strategy the strategy
    * @return the node router
    */
-  public static <N extends WeightedNode> NodeRouter<N> create(
+  public static <N extends WeightedNode<?>> NodeRouter<N> create(
       Collection<N> initialNodes, HashFunction hashFunction, RendezvousStrategy<N> strategy) {
-    return new RendezvousNodeRouter<>(initialNodes, hashFunction, strategy);
+    return RendezvousNodeRouter.newBuilder(hashFunction, strategy)
+        .initialNodes(initialNodes)
+        .build();
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <N> the type parameter
+   * @param hashFunction the hash function
+   * @param strategy the strategy
+   * @return the builder
+   */
+  public static <N extends WeightedNode<?>> Builder<N> newBuilder(
+      HashFunction hashFunction, RendezvousStrategy<N> strategy) {
+    return new Builder<>(hashFunction, strategy);
   }
 
   @Override
   public Optional<N> getNode(String nodeId) {
-    return strategy.getNode(nodeId, ring, hashFunction);
+    NodeSnapshot<N> current = snapshot;
+    Optional<N> node = strategy.getNode(nodeId, current);
+    if (node.isPresent() && health.hasDown() && !healthy.test(node.get())) {
+      node = strategy.getNode(nodeId, current, healthy);
+    }
+    if (RoutingEvents.isLookupSampled()) {
+      RoutingEvents.lookup(this, hashFunction.hash(nodeId), node.orElse(null));
+    }
+    return node;
+  }
+
+  /**
+   * Returns the node {@link #getNodeByHash(long)} returns for the hash of the key, scoring without
+   * a String per key. Scores differ from {@link #getNode(String)}, so a long key may land on
+   * another node than its decimal String form; route a key space by one form only.
+   *
+   * @param key the key
+   * @return the node
+   */
+  @Override
+  public Optional<N> getNode(long key) {
+    return getNodeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(keyHasher);
+
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  /**
+   * Returns the highest scoring healthy node for a precomputed key hash. Scores mix the key hash
+   * with the hash of each node id instead of hashing a String per node, so keys routed by hash may
+   * land on a different node than the same keys routed by {@link #getNode(String)}. Node id hashes
+   * and weights are kept in a snapshot taken on every mutation, so a lookup hashes nothing.
+   *
+   * @param hash the key hash
+   * @return the node
+   */
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    NodeSnapshot<N> current = snapshot;
+    Optional<N> node = strategy.getNodeByHash(hash, current);
+    if (node.isPresent() && health.hasDown() && !healthy.test(node.get())) {
+      node = strategy.getNodeByHash(hash, current, healthy);
+    }
+    if (RoutingEvents.isLookupSampled()) {
+      RoutingEvents.lookup(this, hash, node.orElse(null));
+    }
+    return node;
+  }
+
+  /**
+   * Returns the ordinal of the node {@link #getNode(String)} returns. Scoring a String key
+   * allocates; {@link #routeByHash(long)} does not.
+   *
+   * @param key the key
+   * @return the ordinal, or -1 if there is no node
+   */
+  @Override
+  public int route(String key) {
+    Optional<N> node = getNode(key);
+    return node.isPresent() ? ordinals.ordinalOf(node.get().getNodeId()) : -1;
+  }
+
+  @Override
+  public int route(long key) {
+    return routeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public int routeByHash(long hash) {
+    NodeSnapshot<N> current = snapshot;
+    int index = strategy.getIndexByHash(hash, current, null);
+    if (index >= 0 && health.hasDown() && !healthy.test(current.nodeAt(index))) {
+      index = strategy.getIndexByHash(hash, current, healthy);
+    }
+    if (RoutingEvents.isLookupSampled()) {
+      RoutingEvents.lookup(this, hash, index < 0 ? null : current.nodeAt(index));
+    }
+    return index < 0 ? -1 : ordinals.ordinalOf(current.nodeAt(index).getNodeId());
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of the highest scoring healthy nodes, the first being
+   * the one {@link #route(String)} returns. Scoring a String key allocates; {@link
+   * #routeCandidatesByHash(long, int[])} does not.
+   *
+   * @param key the key
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   */
+  @Override
+  public int routeCandidates(String key, int[] ordinals) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(ordinals);
+
+    NodeSnapshot<N> current = snapshot;
+    boolean skipDown = health.hasDown();
+    int count = 0;
+    for (N node :
+        strategy.getNodes(key, current, skipDown ? current.size() : ordinals.length)) {
+      if (count == ordinals.length) {
+        break;
+      }
+      if (!skipDown || healthy.test(node)) {
+        ordinals[count++] = this.ordinals.ordinalOf(node.getNodeId());
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public int routeCandidates(long key, int[] ordinals) {
+    return routeCandidatesByHash(hashFunction.hash(key), ordinals);
+  }
+
+  /**
+   * Fills {@code ordinals} with the ordinals of the highest scoring healthy nodes for a
+   * precomputed key hash, ranking the snapshot seeds without allocating.
+   *
+   * @param hash the key hash
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   */
+  @Override
+  public int routeCandidatesByHash(long hash, int[] ordinals) {
+    Objects.requireNonNull(ordinals);
+
+    NodeSnapshot<N> current = snapshot;
+    int count =
+        strategy.getIndexesByHash(hash, current, ordinals, health.hasDown() ? healthy : null);
+    for (int i = 0; i < count; i++) {
+      ordinals[i] = this.ordinals.ordinalOf(current.nodeAt(ordinals[i]).getNodeId());
+    }
+    return count;
+  }
+
+  @Override
+  public NodeTable<N> getNodeTable() {
+    return nodeTable;
+  }
+
+  /**
+   * Gets the {@code count} highest scoring healthy nodes, scoring every node once.
+   *
+   * @param key the key
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  @Override
+  public List<N> getNodes(String key, int count) {
+    Objects.requireNonNull(key);
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal node count: " + count);
+    }
+
+    NodeSnapshot<N> current = snapshot;
+    if (!health.hasDown()) {
+      return strategy.getNodes(key, current, count);
+    }
+    List<N> nodes = new ArrayList<>(Math.min(count, current.size()));
+    for (N node : strategy.getNodes(key, current, Math.max(count, current.size()))) {
+      if (nodes.size() >= count) {
+        break;
+      }
+      if (healthy.test(node)) {
+        nodes.add(node);
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Gets {@code count} healthy nodes spread across distinct zones, then racks, see {@link
+   * DomainPlacement}. Every node is scored once and the ranking is walked until every replica
+   * landed in a distinct zone.
+   *
+   * @param key the key
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  @Override
+  public List<N> getNodesAcrossDomains(String key, int count) {
+    Objects.requireNonNull(key);
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal node count: " + count);
+    }
+
+    NodeSnapshot<N> current = snapshot;
+    DomainPlacement<N> placement = DomainPlacement.create(count, nodeTable);
+    boolean skipDown = health.hasDown();
+    for (N node : strategy.getNodes(key, current, Math.max(count, current.size()))) {
+      if ((!skipDown || healthy.test(node)) && placement.offer(node)) {
+        break;
+      }
+    }
+    return placement.getReplicas();
   }
 
   @Override
   public void addNode(N node) {
     Objects.requireNonNull(node);
 
-    ring.add(node);
+    addNodes(Collections.singletonList(node));
+  }
+
+  /**
+   * Adds all nodes in a single step. With a {@link Builder#slowStart(long, TimeUnit) slow start}
+   * their weights ramp up from near zero. A node with the id of a node in the router replaces it
+   * and keeps its ordinal and any ramp in progress.
+   *
+   * @param nodes nodes to be added
+   */
+  @Override
+  public void addNodes(Iterable<N> nodes) {
+    addNodes(nodes, slowStartNanos > 0);
+  }
+
+  private void addNodes(Iterable<N> nodes, boolean slowStart) {
+    Objects.requireNonNull(nodes);
+
+    synchronized (mutationLock) {
+      boolean recorded = RoutingEvents.isTopologyChangeEnabled();
+      long start = recorded ? System.nanoTime() : 0L;
+      List<N> added = new ArrayList<>();
+      List<N> fresh = new ArrayList<>();
+      for (N node : nodes) {
+        // nodes are equal by id, so a re-added node replaces the previous one
+        if (!ring.remove(Objects.requireNonNull(node))) {
+          fresh.add(node);
+        }
+        ring.add(node);
+        ordinals.assign(node.getNodeId());
+        added.add(node);
+      }
+      if (!added.isEmpty()) {
+        if (slowStart) {
+          long now = System.nanoTime();
+          fresh.forEach(
+              node ->
+                  ramps.put(
+                      node.getNodeId(), new Ramp(1.0 / RAMP_STEPS, 1, now, slowStartNanos, false)));
+        }
+        publishSnapshot(System.nanoTime());
+        nodeTable = NodeTable.of(ring, ordinals);
+        if (recorded) {
+          RoutingEvents.topologyChange(
+              this, "ADDED", added.size(), added.size(), System.nanoTime() - start);
+        }
+      }
+
+      if (!added.isEmpty() && !listeners.isEmpty()) {
+        listeners.fire(
+            TopologyChange.of(TopologyChange.Type.ADDED, added, Collections.emptyList()));
+      }
+    }
   }
 
   @Override
   public void removeNode(String nodeId) {
     Objects.requireNonNull(nodeId);
 
-    ring.removeIf(node -> node.getNodeId().equals(nodeId));
+    synchronized (mutationLock) {
+      boolean recorded = RoutingEvents.isTopologyChangeEnabled();
+      long start = recorded ? System.nanoTime() : 0L;
+      if (removeNodeLocked(nodeId)) {
+        publishSnapshot(System.nanoTime());
+        if (recorded) {
+          RoutingEvents.topologyChange(this, "REMOVED", 1, 1, System.nanoTime() - start);
+        }
+      }
+    }
+  }
+
+  /** Removes a node, leaving the snapshot to the caller. */
+  private boolean removeNodeLocked(String nodeId) {
+    List<N> removed = new ArrayList<>();
+    ring.removeIf(
+        node -> {
+          if (node.getNodeId().equals(nodeId)) {
+            removed.add(node);
+            return true;
+          }
+          return false;
+        });
+    health.markUp(ordinals.release(nodeId));
+    ramps.remove(nodeId);
+    if (removed.isEmpty()) {
+      return false;
+    }
+    nodeTable = NodeTable.of(ring, ordinals);
+
+    if (!listeners.isEmpty()) {
+      listeners.fire(
+          TopologyChange.of(TopologyChange.Type.REMOVED, removed, Collections.emptyList()));
+    }
+    return true;
+  }
+
+  /**
+   * Drains a node: its weight ramps down to zero over the duration, moving its keys to the other
+   * nodes gradually, then the node is removed. A node still ramping up drains from its current
+   * weight. Weights only matter to strategies scoring by weight, such as {@link
+   * io.github.ykayacan.hashing.rendezvous.strategy.WeightedRendezvousStrategy}.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   */
+  public void drainNode(String nodeId, long duration, TimeUnit unit) {
+    Objects.requireNonNull(nodeId);
+    Objects.requireNonNull(unit);
+    if (duration < 0) {
+      throw new IllegalArgumentException("Illegal drain duration: " + duration);
+    }
+
+    synchronized (mutationLock) {
+      if (ordinals.ordinalOf(nodeId) < 0) {
+        return;
+      }
+      long now = System.nanoTime();
+      Ramp ramp = ramps.get(nodeId);
+      double from = ramp == null ? 1 : ramp.factorAt(now);
+      ramps.put(nodeId, new Ramp(from, 0, now, unit.toNanos(duration), true));
+      rampStep();
+    }
+  }
+
+  /**
+   * Publishes the weights of the current ramp step, removes drained nodes and schedules the next
+   * step. Lookups only ever read the published snapshot, so ramps cost them nothing.
+   */
+  private void rampStep() {
+    synchronized (mutationLock) {
+      rampStepScheduled = false;
+      long now = System.nanoTime();
+      int stepped = ramps.size();
+      Iterator<Map.Entry<String, Ramp>> iterator = ramps.entrySet().iterator();
+      List<String> drained = new ArrayList<>();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Ramp> entry = iterator.next();
+        Ramp ramp = entry.getValue();
+        if (ramp.isDoneAt(now)) {
+          iterator.remove();
+          if (ramp.removeAtEnd) {
+            drained.add(entry.getKey());
+          }
+        }
+      }
+      drained.forEach(this::removeNodeLocked);
+      publishSnapshot(now);
+      if (RoutingEvents.isTopologyChangeEnabled()) {
+        long duration = System.nanoTime() - now;
+        RoutingEvents.topologyChange(this, "WEIGHTS", stepped, stepped, duration);
+        if (!drained.isEmpty()) {
+          RoutingEvents.topologyChange(
+              this, "REMOVED", drained.size(), drained.size(), duration);
+        }
+      }
+    }
+  }
+
+  /** Publishes a snapshot with the weights of the ramps at the given time. */
+  private void publishSnapshot(long now) {
+    if (ramps.isEmpty()) {
+      snapshot = NodeSnapshot.of(ring, hashFunction);
+      return;
+    }
+
+    snapshot =
+        NodeSnapshot.of(
+            ring,
+            hashFunction,
+            node -> {
+              Ramp ramp = ramps.get(node.getNodeId());
+              return ramp == null ? node.getWeight() : node.getWeight() * ramp.factorAt(now);
+            });
+    if (!rampStepScheduled) {
+      long stepNanos = Long.MAX_VALUE;
+      for (Ramp ramp : ramps.values()) {
+        stepNanos = Math.min(stepNanos, ramp.durationNanos / RAMP_STEPS);
+      }
+      try {
+        scheduler()
+            .schedule(
+                this::rampStep, Math.max(stepNanos, MIN_RAMP_STEP_NANOS), TimeUnit.NANOSECONDS);
+        rampStepScheduled = true;
+      } catch (RejectedExecutionException e) {
+        // a shut down scheduler freezes ramps at their current step
+      }
+    }
+  }
+
+  private ScheduledExecutorService scheduler() {
+    return rampScheduler != null ? rampScheduler : DefaultRampScheduler.INSTANCE;
+  }
+
+  /**
+   * Ejects a node for a time window. Its keys fall through to the node with the next-best score;
+   * the node set itself is left untouched.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   */
+  @Override
+  public void markDown(String nodeId, long duration, TimeUnit unit) {
+    Objects.requireNonNull(nodeId);
+    Objects.requireNonNull(unit);
+
+    synchronized (mutationLock) {
+      int ordinal = ordinals.ordinalOf(nodeId);
+      if (ordinal >= 0) {
+        health.markDown(ordinal, duration, unit);
+      }
+    }
+  }
+
+  @Override
+  public void markUp(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    // an ordinal released by a racing remove may already belong to another node
+    synchronized (mutationLock) {
+      health.markUp(ordinals.ordinalOf(nodeId));
+    }
+  }
+
+  /**
+   * Registers a listener called after each committed add or remove with the affected nodes.
+   * Listeners are called on the executor given to the {@link Builder}.
+   *
+   * @param listener the listener
+   */
+  @Override
+  public void addTopologyListener(TopologyListener<N> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeTopologyListener(TopologyListener<N> listener) {
+    listeners.remove(listener);
+  }
+
+  /** A weight factor moving linearly from one value to another. */
+  private static final class Ramp {
+    private final double from;
+    private final double to;
+    private final long startNanos;
+    private final long durationNanos;
+    private final boolean removeAtEnd;
+
+    private Ramp(double from, double to, long startNanos, long durationNanos, boolean removeAtEnd) {
+      this.from = from;
+      this.to = to;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+      this.removeAtEnd = removeAtEnd;
+    }
+
+    private boolean isDoneAt(long now) {
+      return now - startNanos >= durationNanos;
+    }
+
+    private double factorAt(long now) {
+      if (isDoneAt(now)) {
+        return to;
+      }
+      return from + (to - from) * (now - startNanos) / durationNanos;
+    }
+  }
+
+  /** Steps the ramps of routers built without a ramp scheduler, created on first use. */
+  private static final class DefaultRampScheduler {
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "rendezvous-weight-ramp");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <N> the type parameter
+   */
+  public static final class Builder<N extends WeightedNode<?>> {
+
+    private final HashFunction hashFunction;
+    private final RendezvousStrategy<N> strategy;
+    private Collection<N> initialNodes = Collections.emptyList();
+    private Executor listenerExecutor = ForkJoinPool.commonPool();
+    private long slowStartNanos;
+    @Nullable private ScheduledExecutorService rampScheduler;
+
+    private Builder(HashFunction hashFunction, RendezvousStrategy<N> strategy) {
+      Objects.requireNonNull(hashFunction);
+      Objects.requireNonNull(strategy);
+      this.hashFunction = hashFunction;
+      this.strategy = strategy;
+    }
+
+    /**
+     * Initial nodes builder.
+     *
+     * @param initialNodes the initial nodes
+     * @return the builder
+     */
+    public Builder<N> initialNodes(Collection<N> initialNodes) {
+      this.initialNodes = Objects.requireNonNull(initialNodes);
+      return this;
+    }
+
+    /**
+     * Listener executor builder, topology listeners are called on it. Defaults to {@link
+     * ForkJoinPool#commonPool()}.
+     *
+     * @param listenerExecutor the listener executor
+     * @return the builder
+     */
+    public Builder<N> listenerExecutor(Executor listenerExecutor) {
+      this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+      return this;
+    }
+
+    /**
+     * Slow start builder. Nodes added after the router is built start at a twentieth of their
+     * weight, which ramps up to their full weight over the duration in twenty steps, so caches of
+     * a new node warm up before it gets its full share of keys. Each step publishes a new
+     * snapshot; lookups never read the clock. Initial nodes start at their full weight. Defaults to
+     * no slow start.
+     *
+     * @param duration the duration
+     * @param unit the unit
+     * @return the builder
+     */
+    public Builder<N> slowStart(long duration, TimeUnit unit) {
+      if (duration < 0) {
+        throw new IllegalArgumentException("Illegal slow start: " + duration);
+      }
+      this.slowStartNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * Ramp scheduler builder, runs the steps of slow starts and drains. Defaults to a daemon
+     * thread shared by all routers.
+     *
+     * @param rampScheduler the ramp scheduler
+     * @return the builder
+     */
+    public Builder<N> rampScheduler(ScheduledExecutorService rampScheduler) {
+      this.rampScheduler = Objects.requireNonNull(rampScheduler);
+      return this;
+    }
+
+    /**
+     * Build rendezvous node router.
+     *
+     * @return the rendezvous node router
+     */
+    public RendezvousNodeRouter<N> build() {
+      return new RendezvousNodeRouter<>(
+          initialNodes, hashFunction, strategy, listenerExecutor, slowStartNanos, rampScheduler);
+    }
   }
 }
@@ -16,17 +16,23 @@
 
 package io.github.ykayacan.hashing.rendezvous;
 
+import io.github.ykayacan.hashing.api.FailureDomain;
 import io.github.ykayacan.hashing.api.Node;
 import java.util.Objects;
-import java.util.Optional;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-/** The type Weighted node. */
-public class WeightedNode implements Node {
+/**
+ * The type Weighted node. Two weighted nodes are equal when their node ids are, whatever their
+ * weights.
+ *
+ * @param <D> the type of the payload
+ */
+public class WeightedNode<D> implements Node<D> {
 
   private final String nodeId;
-  @Nullable private final Object data;
+  @Nullable private final D data;
   private final int weight;
+  private final FailureDomain failureDomain;
 
   /**
    * Instantiates a new Weighted node.
@@ -35,18 +41,32 @@ public class WeightedNode implements Node {
    * @param weight the weight
    * @param data the data
    */
-  protected WeightedNode(String nodeId, int weight, @Nullable Object data) {
+  protected WeightedNode(String nodeId, int weight, @Nullable D data) {
+    this(nodeId, weight, data, FailureDomain.UNKNOWN);
+  }
+
+  /**
+   * Instantiates a new Weighted node.
+   *
+   * @param nodeId the node id
+   * @param weight the weight
+   * @param data the data
+   * @param failureDomain the failure domain
+   */
+  protected WeightedNode(
+      String nodeId, int weight, @Nullable D data, FailureDomain failureDomain) {
     this.nodeId = nodeId;
     this.data = data;
     this.weight = weight;
+    this.failureDomain = Objects.requireNonNull(failureDomain);
   }
 
-  public static WeightedNode of(String nodeId) {
-    return newBuilder(nodeId).build();
+  public static <D> WeightedNode<D> of(String nodeId) {
+    return new WeightedNode<>(Objects.requireNonNull(nodeId), 0, null);
   }
 
-  public static Builder newBuilder(String nodeId) {
-    return new Builder(nodeId);
+  public static Builder<Object> newBuilder(String nodeId) {
+    return new Builder<>(nodeId);
   }
 
   @Override
@@ -55,8 +75,8 @@ public class WeightedNode implements Node {
   }
 
   @Override
-  public Optional<Object> getData() {
-    return Optional.ofNullable(data);
+  public @Nullable D data() {
+    return data;
   }
 
   /**
@@ -68,6 +88,11 @@ public class WeightedNode implements Node {
     return weight;
   }
 
+  @Override
+  public FailureDomain getFailureDomain() {
+    return failureDomain;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -76,15 +101,12 @@ public class WeightedNode implements Node {
     if (!(o instanceof WeightedNode)) {
       return false;
     }
-    WeightedNode that = (WeightedNode) o;
-    return weight == that.weight
-        && Objects.equals(nodeId, that.nodeId)
-        && Objects.equals(data, that.data);
+    return nodeId.equals(((WeightedNode<?>) o).nodeId);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(nodeId, data, weight);
+    return nodeId.hashCode();
   }
 
   @Override
@@ -97,29 +119,39 @@ public class WeightedNode implements Node {
         + data
         + ", weight="
         + weight
+        + ", failureDomain="
+        + failureDomain
         + '}';
   }
 
-  /** The type Builder. */
-  public static class Builder {
+  /**
+   * The type Builder.
+   *
+   * @param <D> the type of the payload
+   */
+  public static class Builder<D> {
 
     private String nodeId;
-    @Nullable private Object data;
+    @Nullable private D data;
     private int weight;
+    private FailureDomain failureDomain = FailureDomain.UNKNOWN;
 
     private Builder(String nodeId) {
       this.nodeId = nodeId;
     }
 
     /**
-     * Data builder.
+     * Data builder, typing the node by its payload.
      *
+     * @param <T> the type of the payload
      * @param data the data
      * @return the builder
      */
-    public Builder data(@Nullable Object data) {
-      this.data = data;
-      return this;
+    @SuppressWarnings("unchecked")
+    public <T> Builder<T> data(@Nullable T data) {
+      Builder<T> builder = (Builder<T>) this;
+      builder.data = data;
+      return builder;
     }
 
     /**
@@ -128,18 +160,29 @@ public class WeightedNode implements Node {
      * @param weight the weight
      * @return the builder
      */
-    public Builder weight(int weight) {
+    public Builder<D> weight(int weight) {
       this.weight = weight;
       return this;
     }
 
+    /**
+     * Failure domain builder.
+     *
+     * @param failureDomain the failure domain
+     * @return the builder
+     */
+    public Builder<D> failureDomain(FailureDomain failureDomain) {
+      this.failureDomain = Objects.requireNonNull(failureDomain);
+      return this;
+    }
+
     /**
      * Build weighted node.
      *
      * @return the weighted node
      */
-    public WeightedNode build() {
-      return new WeightedNode(nodeId, weight, data);
+    public WeightedNode<D> build() {
+      return new WeightedNode<>(nodeId, weight, data, failureDomain);
     }
   }
 }
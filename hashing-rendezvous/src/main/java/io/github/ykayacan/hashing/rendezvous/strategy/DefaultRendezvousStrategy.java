@@ -19,15 +19,18 @@ package io.github.ykayacan.hashing.rendezvous.strategy;
 import io.github.ykayacan.hashing.rendezvous.WeightedNode;
 import io.github.ykayacan.hashing.api.HashFunction;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * The type Default rendezvous strategy.
  *
  * @param <N> the type parameter
  */
-public class DefaultRendezvousStrategy<N extends WeightedNode> implements RendezvousStrategy<N> {
+public class DefaultRendezvousStrategy<N extends WeightedNode<?>> implements RendezvousStrategy<N> {
 
   private DefaultRendezvousStrategy() {}
 
@@ -37,7 +40,7 @@ public class DefaultRendezvousStrategy<N extends WeightedNode> implements Rendez
    * @param <N> the type parameter
    * @return the rendezvous strategy
    */
-  public static <N extends WeightedNode> RendezvousStrategy<N> create() {
+  public static <N extends WeightedNode<?>> RendezvousStrategy<N> create() {
     return new DefaultRendezvousStrategy<>();
   }
 
@@ -63,4 +66,101 @@ public class DefaultRendezvousStrategy<N extends WeightedNode> implements Rendez
 
     return Optional.ofNullable(champion);
   }
+
+  @Override
+  public List<N> getNodes(String key, Collection<N> ring, HashFunction hashFunction, int count) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(ring);
+    Objects.requireNonNull(hashFunction);
+
+    return NodeRanking.top(ring, count, node -> hashFunction.hash(node.getNodeId() + ":" + key));
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash, Collection<N> ring, HashFunction hashFunction) {
+    Objects.requireNonNull(ring);
+    Objects.requireNonNull(hashFunction);
+
+    long highestScore = Long.MIN_VALUE;
+    N champion = null;
+    for (N node : ring) {
+      long score = NodeRanking.combine(hashFunction.hash(node.getNodeId()), hash);
+      if (champion == null || score > highestScore) {
+        champion = node;
+        highestScore = score;
+      }
+    }
+
+    return Optional.ofNullable(champion);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash, NodeSnapshot<N> snapshot) {
+    return getNodeByHash(hash, snapshot, null);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(
+      long hash, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    int index = getIndexByHash(hash, snapshot, eligible);
+    return index < 0 ? Optional.empty() : Optional.of(snapshot.nodeAt(index));
+  }
+
+  @Override
+  public int getIndexByHash(
+      long hash, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    Objects.requireNonNull(snapshot);
+
+    long[] seeds = snapshot.seeds;
+    long highestScore = Long.MIN_VALUE;
+    int champion = -1;
+    for (int i = 0; i < seeds.length; i++) {
+      long score = NodeRanking.combine(seeds[i], hash);
+      if ((champion < 0 || score > highestScore)
+          && (eligible == null || eligible.test(snapshot.nodeAt(i)))) {
+        champion = i;
+        highestScore = score;
+      }
+    }
+
+    return champion;
+  }
+
+  /**
+   * Fills {@code indexes} in one pass over the snapshot per index, each pass taking the best node
+   * ranked below the previous one, so no score is kept and nothing is allocated.
+   */
+  @Override
+  public int getIndexesByHash(
+      long hash, NodeSnapshot<N> snapshot, int[] indexes, @Nullable Predicate<? super N> eligible) {
+    Objects.requireNonNull(snapshot);
+    Objects.requireNonNull(indexes);
+
+    long[] seeds = snapshot.seeds;
+    long previousScore = Long.MAX_VALUE;
+    int previous = -1;
+    int count = 0;
+    while (count < indexes.length) {
+      long highestScore = Long.MIN_VALUE;
+      int champion = -1;
+      for (int i = 0; i < seeds.length; i++) {
+        long score = NodeRanking.combine(seeds[i], hash);
+        boolean ranked =
+            previous < 0 || score < previousScore || (score == previousScore && i > previous);
+        if (ranked
+            && (champion < 0 || score > highestScore)
+            && (eligible == null || eligible.test(snapshot.nodeAt(i)))) {
+          champion = i;
+          highestScore = score;
+        }
+      }
+      if (champion < 0) {
+        break;
+      }
+      indexes[count++] = champion;
+      previousScore = highestScore;
+      previous = champion;
+    }
+    return count;
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.rendezvous.strategy;
+
+/**
+ * Table based natural logarithm for the {@link WeightedScoring#FAST} scores.
+ *
+ * <p>A value {@code u = m * 2^e} with {@code m} in {@code [0.5, 1)} has {@code -ln(u) = -e * ln(2)
+ * + (1 - m) * g(m)} where {@code g(m) = -ln(m) / (1 - m)}. Both terms are non-negative and {@code
+ * 1 - m} is exact, so the relative error of the result is at most the one of {@code g}, which is
+ * smooth and close to linear on that interval. {@code g} is interpolated linearly between 257
+ * points, a relative error of about {@code 1.1e-6}.
+ */
+final class FastLog {
+
+  private static final int TABLE_BITS = 8;
+  private static final int MANTISSA_BITS = 52;
+  private static final int FRACTION_BITS = MANTISSA_BITS - TABLE_BITS;
+  private static final long MANTISSA_MASK = (1L << MANTISSA_BITS) - 1;
+  private static final long FRACTION_MASK = (1L << FRACTION_BITS) - 1;
+  private static final double FRACTION_SCALE = 1.0 / (1L << FRACTION_BITS);
+  /** Bits of 0.5, the exponent that puts a mantissa in {@code [0.5, 1)} */
+  private static final long HALF_BITS = Double.doubleToRawLongBits(0.5);
+  /** Biased exponent of values in {@code [0.5, 1)} */
+  private static final int HALF_EXPONENT = 1022;
+  private static final double LN_2 = Math.log(2);
+
+  private static final double[] G = new double[(1 << TABLE_BITS) + 1];
+
+  static {
+    for (int i = 0; i < G.length - 1; i++) {
+      double m = 0.5 + i / (double) (1 << (TABLE_BITS + 1));
+      G[i] = -Math.log(m) / (1 - m);
+    }
+    G[G.length - 1] = 1;
+  }
+
+  private FastLog() {}
+
+  /**
+   * Approximates {@code -ln(u)}.
+   *
+   * @param u a value in {@code [0, 1)}
+   * @return the negated logarithm, positive infinity for zero
+   */
+  static double negLog(double u) {
+    if (u <= 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    long bits = Double.doubleToRawLongBits(u);
+    int exponent = (int) (bits >>> MANTISSA_BITS) - HALF_EXPONENT;
+    long mantissa = bits & MANTISSA_MASK;
+    int index = (int) (mantissa >>> FRACTION_BITS);
+    double fraction = (mantissa & FRACTION_MASK) * FRACTION_SCALE;
+    double g = G[index] + (G[index + 1] - G[index]) * fraction;
+    double m = Double.longBitsToDouble(mantissa | HALF_BITS);
+    return -exponent * LN_2 + (1 - m) * g;
+  }
+}
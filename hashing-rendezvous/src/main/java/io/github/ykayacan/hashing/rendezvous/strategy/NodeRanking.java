@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.rendezvous.strategy;
+
+import io.github.ykayacan.hashing.api.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToDoubleFunction;
+
+/** Ranks nodes by score in a single scoring pass. */
+final class NodeRanking {
+
+  /** Up to this many nodes are selected by insertion instead of sorting every node */
+  private static final int SMALL_COUNT = 8;
+
+  private NodeRanking() {}
+
+  /**
+   * Combines the hash of a node id with a key hash into a well mixed score, using the Stafford
+   * variant 13 finalizer.
+   *
+   * @param nodeHash the node id hash
+   * @param keyHash the key hash
+   * @return the combined hash
+   */
+  static long combine(long nodeHash, long keyHash) {
+    long z = nodeHash ^ (keyHash * 0x9E3779B97F4A7C15L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Scores every node once and returns the {@code count} highest scoring ones, best first. Ties
+   * keep the iteration order, so the first node is the one a linear scan for the maximum picks.
+   *
+   * @param <N> the type parameter
+   * @param ring the ring
+   * @param count the number of nodes
+   * @param score the score function
+   * @return the nodes in preference order
+   */
+  static <N extends Node<?>> List<N> top(Collection<N> ring, int count, ToDoubleFunction<N> score) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Illegal node count: " + count);
+    }
+    if (count == 0 || ring.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    if (count <= SMALL_COUNT) {
+      return topSmall(ring, count, score);
+    }
+
+    Scored<?>[] scored = new Scored<?>[ring.size()];
+    int size = 0;
+    for (N node : ring) {
+      if (size == scored.length) {
+        scored = Arrays.copyOf(scored, size * 2);
+      }
+      scored[size++] = new Scored<>(node, score.applyAsDouble(node));
+    }
+    Arrays.sort(scored, 0, size, Scored.BY_SCORE_DESCENDING);
+
+    int limit = Math.min(count, size);
+    List<N> nodes = new ArrayList<>(limit);
+    for (int i = 0; i < limit; i++) {
+      @SuppressWarnings("unchecked")
+      N node = (N) scored[i].node;
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  /**
+   * Scores every node once by its index and returns the {@code count} highest scoring ones, best
+   * first.
+   *
+   * @param <N> the type parameter
+   * @param nodes the nodes
+   * @param count the number of nodes
+   * @param score the score function of a node index
+   * @return the nodes in preference order
+   */
+  static <N extends Node<?>> List<N> topByIndex(
+      List<N> nodes, int count, IntToDoubleFunction score) {
+    // nodes are scored once each, in list order, so a running index identifies them
+    int[] index = new int[1];
+    return top(nodes, count, node -> score.applyAsDouble(index[0]++));
+  }
+
+  /** Keeps the best {@code count} nodes sorted by insertion, without boxing every score. */
+  private static <N extends Node<?>> List<N> topSmall(
+      Collection<N> ring, int count, ToDoubleFunction<N> score) {
+    Object[] best = new Object[count];
+    double[] bestScores = new double[count];
+    int size = 0;
+    for (N node : ring) {
+      double nodeScore = score.applyAsDouble(node);
+      if (size == count && !(nodeScore > bestScores[count - 1])) {
+        continue;
+      }
+      int i = size < count ? size++ : count - 1;
+      while (i > 0 && nodeScore > bestScores[i - 1]) {
+        best[i] = best[i - 1];
+        bestScores[i] = bestScores[i - 1];
+        i--;
+      }
+      best[i] = node;
+      bestScores[i] = nodeScore;
+    }
+
+    List<N> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      @SuppressWarnings("unchecked")
+      N node = (N) best[i];
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  private static final class Scored<N> {
+
+    static final Comparator<Scored<?>> BY_SCORE_DESCENDING =
+        (a, b) -> Double.compare(b.score, a.score);
+
+    final N node;
+    final double score;
+
+    Scored(N node, double score) {
+      this.node = node;
+      this.score = score;
+    }
+  }
+}
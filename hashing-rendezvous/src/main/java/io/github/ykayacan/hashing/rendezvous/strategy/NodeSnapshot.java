@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.rendezvous.strategy;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An immutable primitive view of a node set for scoring by hash: the hash of every node id, its
+ * seed, and its weight are kept in parallel arrays, so a lookup is a single loop over primitives
+ * that neither hashes node ids nor allocates.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class NodeSnapshot<N extends Node<?>> {
+
+  private static final NodeSnapshot<?> EMPTY =
+      new NodeSnapshot<>(Collections.emptyList(), key -> 0L, new long[0], new double[0]);
+
+  private final List<N> nodes;
+  private final HashFunction hashFunction;
+  final long[] seeds;
+  final double[] weights;
+
+  private NodeSnapshot(List<N> nodes, HashFunction hashFunction, long[] seeds, double[] weights) {
+    this.nodes = nodes;
+    this.hashFunction = hashFunction;
+    this.seeds = seeds;
+    this.weights = weights;
+  }
+
+  /**
+   * Returns an empty snapshot.
+   *
+   * @param <N> the type parameter
+   * @return the node snapshot
+   */
+  @SuppressWarnings("unchecked")
+  public static <N extends Node<?>> NodeSnapshot<N> empty() {
+    return (NodeSnapshot<N>) EMPTY;
+  }
+
+  /**
+   * Create node snapshot. Nodes which are not a {@link WeightedNode} get a weight of 1.
+   *
+   * @param <N> the type parameter
+   * @param nodes the nodes
+   * @param hashFunction the hash function node ids are hashed with
+   * @return the node snapshot
+   */
+  public static <N extends Node<?>> NodeSnapshot<N> of(
+      Collection<N> nodes, HashFunction hashFunction) {
+    return of(
+        nodes,
+        hashFunction,
+        node -> node instanceof WeightedNode ? ((WeightedNode<?>) node).getWeight() : 1);
+  }
+
+  /**
+   * Create node snapshot with the given weights instead of the node weights, such as weights
+   * ramping towards them.
+   *
+   * @param <N> the type parameter
+   * @param nodes the nodes
+   * @param hashFunction the hash function node ids are hashed with
+   * @param weights the weight of each node
+   * @return the node snapshot
+   */
+  public static <N extends Node<?>> NodeSnapshot<N> of(
+      Collection<N> nodes, HashFunction hashFunction, ToDoubleFunction<? super N> weights) {
+    Objects.requireNonNull(nodes);
+    Objects.requireNonNull(hashFunction);
+    Objects.requireNonNull(weights);
+
+    List<N> copy = Collections.unmodifiableList(new ArrayList<>(nodes));
+    long[] seeds = new long[copy.size()];
+    double[] weightArray = new double[copy.size()];
+    for (int i = 0; i < seeds.length; i++) {
+      N node = copy.get(i);
+      seeds[i] = hashFunction.hash(node.getNodeId());
+      weightArray[i] = weights.applyAsDouble(node);
+    }
+    return new NodeSnapshot<>(copy, hashFunction, seeds, weightArray);
+  }
+
+  /**
+   * Gets the number of nodes.
+   *
+   * @return the size
+   */
+  public int size() {
+    return seeds.length;
+  }
+
+  /**
+   * Gets the nodes, in snapshot order.
+   *
+   * @return the nodes
+   */
+  public List<N> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Gets the node at given position.
+   *
+   * @param index the index
+   * @return the node
+   */
+  public N nodeAt(int index) {
+    return nodes.get(index);
+  }
+
+  /**
+   * Gets the hash of the id of the node at given position.
+   *
+   * @param index the index
+   * @return the seed
+   */
+  public long seedAt(int index) {
+    return seeds[index];
+  }
+
+  /**
+   * Gets the weight of the node at given position.
+   *
+   * @param index the index
+   * @return the weight
+   */
+  public double weightAt(int index) {
+    return weights[index];
+  }
+
+  /**
+   * Gets the hash function node ids were hashed with.
+   *
+   * @return the hash function
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+}
@@ -18,15 +18,19 @@ package io.github.ykayacan.hashing.rendezvous.strategy;
 
 import io.github.ykayacan.hashing.api.HashFunction;
 import io.github.ykayacan.hashing.api.Node;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * The interface Rendezvous strategy.
  *
  * @param <N> the type parameter
  */
-public interface RendezvousStrategy<N extends Node> {
+public interface RendezvousStrategy<N extends Node<?>> {
 
   /**
    * Gets node.
@@ -37,4 +41,210 @@ public interface RendezvousStrategy<N extends Node> {
    * @return the node
    */
   Optional<N> getNode(String key, Collection<N> ring, HashFunction hashFunction);
+
+  /**
+   * Gets the highest scoring node among the eligible ones, which is the next-best node when the
+   * best one is not eligible.
+   *
+   * @param key the key
+   * @param ring the ring
+   * @param hashFunction the hash function
+   * @param eligible the eligible nodes
+   * @return the node
+   */
+  default Optional<N> getNode(
+      String key, Collection<N> ring, HashFunction hashFunction, Predicate<? super N> eligible) {
+    List<N> eligibleNodes = new ArrayList<>(ring.size());
+    for (N node : ring) {
+      if (eligible.test(node)) {
+        eligibleNodes.add(node);
+      }
+    }
+    return getNode(key, eligibleNodes, hashFunction);
+  }
+
+  /**
+   * Gets the highest scoring node of a snapshot, scored with the snapshot weights. It is the node
+   * {@link #getNode(String, Collection, HashFunction)} returns for the snapshot nodes when the
+   * snapshot weights are the node weights.
+   *
+   * @param key the key
+   * @param snapshot the node snapshot
+   * @return the node
+   */
+  default Optional<N> getNode(String key, NodeSnapshot<N> snapshot) {
+    return getNode(key, snapshot.getNodes(), snapshot.getHashFunction());
+  }
+
+  /**
+   * Gets the highest scoring node among the eligible ones of a snapshot, scored with the snapshot
+   * weights.
+   *
+   * @param key the key
+   * @param snapshot the node snapshot
+   * @param eligible the eligible nodes
+   * @return the node
+   */
+  default Optional<N> getNode(
+      String key, NodeSnapshot<N> snapshot, Predicate<? super N> eligible) {
+    return getNode(key, snapshot.getNodes(), snapshot.getHashFunction(), eligible);
+  }
+
+  /**
+   * Gets the highest scoring node for a precomputed key hash. Nodes are scored by mixing the key
+   * hash with the hash of their id, so no String is built per node; the scores differ from the
+   * ones {@link #getNode(String, Collection, HashFunction)} computes.
+   *
+   * @param hash the key hash
+   * @param ring the ring
+   * @param hashFunction the hash function
+   * @return the node
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default Optional<N> getNodeByHash(long hash, Collection<N> ring, HashFunction hashFunction) {
+    throw new UnsupportedOperationException("Routing by hash is not supported");
+  }
+
+  /**
+   * Gets the highest scoring node among the eligible ones for a precomputed key hash.
+   *
+   * @param hash the key hash
+   * @param ring the ring
+   * @param hashFunction the hash function
+   * @param eligible the eligible nodes
+   * @return the node
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default Optional<N> getNodeByHash(
+      long hash, Collection<N> ring, HashFunction hashFunction, Predicate<? super N> eligible) {
+    List<N> eligibleNodes = new ArrayList<>(ring.size());
+    for (N node : ring) {
+      if (eligible.test(node)) {
+        eligibleNodes.add(node);
+      }
+    }
+    return getNodeByHash(hash, eligibleNodes, hashFunction);
+  }
+
+  /**
+   * Gets the highest scoring node of a snapshot for a precomputed key hash, the node {@link
+   * #getNodeByHash(long, Collection, HashFunction)} returns for the snapshot nodes. Strategies
+   * score the primitive seeds of the snapshot in a single loop.
+   *
+   * @param hash the key hash
+   * @param snapshot the node snapshot
+   * @return the node
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default Optional<N> getNodeByHash(long hash, NodeSnapshot<N> snapshot) {
+    return getNodeByHash(hash, snapshot.getNodes(), snapshot.getHashFunction());
+  }
+
+  /**
+   * Gets the highest scoring node among the eligible ones of a snapshot for a precomputed key
+   * hash.
+   *
+   * @param hash the key hash
+   * @param snapshot the node snapshot
+   * @param eligible the eligible nodes
+   * @return the node
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default Optional<N> getNodeByHash(
+      long hash, NodeSnapshot<N> snapshot, Predicate<? super N> eligible) {
+    return getNodeByHash(hash, snapshot.getNodes(), snapshot.getHashFunction(), eligible);
+  }
+
+  /**
+   * Gets the snapshot index of the highest scoring eligible node for a precomputed key hash,
+   * without allocating.
+   *
+   * @param hash the key hash
+   * @param snapshot the node snapshot
+   * @param eligible the eligible nodes, or null if every node is
+   * @return the index, or -1 if no node is eligible
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default int getIndexByHash(
+      long hash, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    Optional<N> node =
+        eligible == null
+            ? getNodeByHash(hash, snapshot)
+            : getNodeByHash(hash, snapshot, eligible);
+    return node.map(snapshot.getNodes()::indexOf).orElse(-1);
+  }
+
+  /**
+   * Fills {@code indexes} with the snapshot indexes of the highest scoring eligible nodes for a
+   * precomputed key hash, best first. The first index is the one {@link #getIndexByHash(long,
+   * NodeSnapshot, Predicate)} returns.
+   *
+   * @param hash the key hash
+   * @param snapshot the node snapshot
+   * @param indexes the array to fill
+   * @param eligible the eligible nodes, or null if every node is
+   * @return the number of indexes filled, fewer than {@code indexes.length} if there are fewer
+   *     eligible nodes
+   * @throws UnsupportedOperationException if the strategy does not support routing by hash
+   */
+  default int getIndexesByHash(
+      long hash, NodeSnapshot<N> snapshot, int[] indexes, @Nullable Predicate<? super N> eligible) {
+    int count = 0;
+    while (count < indexes.length) {
+      int filled = count;
+      int index =
+          getIndexByHash(
+              hash,
+              snapshot,
+              node -> {
+                int candidate = snapshot.getNodes().indexOf(node);
+                for (int i = 0; i < filled; i++) {
+                  if (indexes[i] == candidate) {
+                    return false;
+                  }
+                }
+                return eligible == null || eligible.test(node);
+              });
+      if (index < 0) {
+        break;
+      }
+      indexes[count++] = index;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the {@code count} highest scoring nodes, best first. The first node is the one {@link
+   * #getNode(String, Collection, HashFunction)} returns.
+   *
+   * @param key the key
+   * @param ring the ring
+   * @param hashFunction the hash function
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  default List<N> getNodes(String key, Collection<N> ring, HashFunction hashFunction, int count) {
+    List<N> nodes = new ArrayList<>(Math.min(count, ring.size()));
+    while (nodes.size() < count) {
+      Optional<N> node = getNode(key, ring, hashFunction, candidate -> !nodes.contains(candidate));
+      if (!node.isPresent()) {
+        break;
+      }
+      nodes.add(node.get());
+    }
+    return nodes;
+  }
+
+  /**
+   * Gets the {@code count} highest scoring nodes of a snapshot, scored with the snapshot weights,
+   * best first. The first node is the one {@link #getNode(String, NodeSnapshot)} returns.
+   *
+   * @param key the key
+   * @param snapshot the node snapshot
+   * @param count the number of nodes
+   * @return the nodes in preference order
+   */
+  default List<N> getNodes(String key, NodeSnapshot<N> snapshot, int count) {
+    return getNodes(key, snapshot.getNodes(), snapshot.getHashFunction(), count);
+  }
 }
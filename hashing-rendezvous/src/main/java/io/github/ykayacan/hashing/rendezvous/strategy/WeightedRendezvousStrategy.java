@@ -19,39 +19,64 @@ package io.github.ykayacan.hashing.rendezvous.strategy;
 import io.github.ykayacan.hashing.rendezvous.WeightedNode;
 import io.github.ykayacan.hashing.api.HashFunction;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * The type Weighted rendezvous strategy.
  *
  * @param <N> the type parameter
  */
-public class WeightedRendezvousStrategy<N extends WeightedNode> implements RendezvousStrategy<N> {
+public class WeightedRendezvousStrategy<N extends WeightedNode<?>>
+    implements RendezvousStrategy<N> {
 
   private static final long FTO = (0xFF_FF_FF_FF_FF_FF_FF_FFL >>> (64 - 53));
   private static final double FTZ = (double) (1L << 53);
 
-  private WeightedRendezvousStrategy() {}
+  private final WeightedScoring scoring;
+
+  private WeightedRendezvousStrategy(WeightedScoring scoring) {
+    this.scoring = scoring;
+  }
 
   private static double toDouble(long hash) {
     return (hash & FTO) / FTZ;
   }
 
-  private static double computeWeightedScore(String key, WeightedNode node, HashFunction hashFunction) {
+  private double computeWeightedScore(
+      String key, WeightedNode<?> node, HashFunction hashFunction) {
     long hash = hashFunction.hash(key + node.getNodeId());
-    double score = 1.0 / -Math.log(toDouble(hash));
-    return node.getWeight() * score;
+    return scoring.score(node.getWeight(), toDouble(hash));
+  }
+
+  private double computeWeightedScore(
+      long keyHash, WeightedNode<?> node, HashFunction hashFunction) {
+    long hash = NodeRanking.combine(hashFunction.hash(node.getNodeId()), keyHash);
+    return scoring.score(node.getWeight(), toDouble(hash));
+  }
+
+  /**
+   * Create rendezvous strategy with {@link WeightedScoring#EXACT} scores.
+   *
+   * @param <N> the type parameter
+   * @return the rendezvous strategy
+   */
+  public static <N extends WeightedNode<?>> RendezvousStrategy<N> create() {
+    return create(WeightedScoring.EXACT);
   }
 
   /**
-   * Create rendezvous strategy.
+   * Create rendezvous strategy with the given scores.
    *
    * @param <N> the type parameter
+   * @param scoring the scoring
    * @return the rendezvous strategy
    */
-  public static <N extends WeightedNode> RendezvousStrategy<N> create() {
-    return new WeightedRendezvousStrategy<>();
+  public static <N extends WeightedNode<?>> RendezvousStrategy<N> create(WeightedScoring scoring) {
+    return new WeightedRendezvousStrategy<>(Objects.requireNonNull(scoring));
   }
 
   @Override
@@ -76,4 +101,158 @@ public class WeightedRendezvousStrategy<N extends WeightedNode> implements Rende
 
     return Optional.ofNullable(champion);
   }
+
+  @Override
+  public Optional<N> getNode(String key, NodeSnapshot<N> snapshot) {
+    int index = getIndex(key, snapshot, null);
+    return index < 0 ? Optional.empty() : Optional.of(snapshot.nodeAt(index));
+  }
+
+  @Override
+  public Optional<N> getNode(
+      String key, NodeSnapshot<N> snapshot, Predicate<? super N> eligible) {
+    Objects.requireNonNull(eligible);
+
+    int index = getIndex(key, snapshot, eligible);
+    return index < 0 ? Optional.empty() : Optional.of(snapshot.nodeAt(index));
+  }
+
+  private int getIndex(
+      String key, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(snapshot);
+
+    HashFunction hashFunction = snapshot.getHashFunction();
+    double[] weights = snapshot.weights;
+    double highestScore = -1;
+    int champion = -1;
+    for (int i = 0; i < weights.length; i++) {
+      N node = snapshot.nodeAt(i);
+      if (eligible != null && !eligible.test(node)) {
+        continue;
+      }
+      double score =
+          scoring.score(weights[i], toDouble(hashFunction.hash(key + node.getNodeId())));
+      if (score > highestScore) {
+        champion = i;
+        highestScore = score;
+      }
+    }
+
+    return champion;
+  }
+
+  @Override
+  public List<N> getNodes(String key, NodeSnapshot<N> snapshot, int count) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(snapshot);
+
+    HashFunction hashFunction = snapshot.getHashFunction();
+    double[] weights = snapshot.weights;
+    return NodeRanking.topByIndex(
+        snapshot.getNodes(),
+        count,
+        index ->
+            scoring.score(
+                weights[index],
+                toDouble(hashFunction.hash(key + snapshot.nodeAt(index).getNodeId()))));
+  }
+
+  @Override
+  public List<N> getNodes(String key, Collection<N> ring, HashFunction hashFunction, int count) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(ring);
+    Objects.requireNonNull(hashFunction);
+
+    return NodeRanking.top(ring, count, node -> computeWeightedScore(key, node, hashFunction));
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash, Collection<N> ring, HashFunction hashFunction) {
+    Objects.requireNonNull(ring);
+    Objects.requireNonNull(hashFunction);
+
+    double highestScore = -1;
+    N champion = null;
+    for (N node : ring) {
+      double score = computeWeightedScore(hash, node, hashFunction);
+      if (score > highestScore) {
+        champion = node;
+        highestScore = score;
+      }
+    }
+
+    return Optional.ofNullable(champion);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash, NodeSnapshot<N> snapshot) {
+    return getNodeByHash(hash, snapshot, null);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(
+      long hash, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    int index = getIndexByHash(hash, snapshot, eligible);
+    return index < 0 ? Optional.empty() : Optional.of(snapshot.nodeAt(index));
+  }
+
+  @Override
+  public int getIndexByHash(
+      long hash, NodeSnapshot<N> snapshot, @Nullable Predicate<? super N> eligible) {
+    Objects.requireNonNull(snapshot);
+
+    long[] seeds = snapshot.seeds;
+    double[] weights = snapshot.weights;
+    double highestScore = -1;
+    int champion = -1;
+    for (int i = 0; i < seeds.length; i++) {
+      double score = scoring.score(weights[i], toDouble(NodeRanking.combine(seeds[i], hash)));
+      if (score > highestScore && (eligible == null || eligible.test(snapshot.nodeAt(i)))) {
+        champion = i;
+        highestScore = score;
+      }
+    }
+
+    return champion;
+  }
+
+  /**
+   * Fills {@code indexes} in one pass over the snapshot per index, each pass taking the best node
+   * ranked below the previous one, so no score is kept and nothing is allocated.
+   */
+  @Override
+  public int getIndexesByHash(
+      long hash, NodeSnapshot<N> snapshot, int[] indexes, @Nullable Predicate<? super N> eligible) {
+    Objects.requireNonNull(snapshot);
+    Objects.requireNonNull(indexes);
+
+    long[] seeds = snapshot.seeds;
+    double[] weights = snapshot.weights;
+    double previousScore = Double.POSITIVE_INFINITY;
+    int previous = -1;
+    int count = 0;
+    while (count < indexes.length) {
+      double highestScore = -1;
+      int champion = -1;
+      for (int i = 0; i < seeds.length; i++) {
+        double score = scoring.score(weights[i], toDouble(NodeRanking.combine(seeds[i], hash)));
+        boolean ranked =
+            previous < 0 || score < previousScore || (score == previousScore && i > previous);
+        if (ranked
+            && score > highestScore
+            && (eligible == null || eligible.test(snapshot.nodeAt(i)))) {
+          champion = i;
+          highestScore = score;
+        }
+      }
+      if (champion < 0) {
+        break;
+      }
+      indexes[count++] = champion;
+      previousScore = highestScore;
+      previous = champion;
+    }
+    return count;
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.rendezvous.strategy;
+
+/**
+ * Score functions of a {@link WeightedRendezvousStrategy}. A node scores {@code weight / -ln(u)}
+ * for a uniform {@code u} in {@code [0, 1)} derived from the key and node hashes, which makes the
+ * probability of a node winning a key equal to its share of the total weight.
+ */
+public enum WeightedScoring {
+
+  /** Computes the logarithm with {@link Math#log(double)}. */
+  EXACT {
+    @Override
+    double score(double weight, double unit) {
+      return weight * (1.0 / -Math.log(unit));
+    }
+  },
+
+  /**
+   * Approximates the logarithm from the exponent bits of {@code u} and a 257 entry table, with a
+   * relative error below {@code 2e-6} for every {@code u}. Each score is then within a relative
+   * {@code 2e-6} of the exact one, so the probability of a node winning a key stays within a
+   * factor {@code (1 + 2e-6) / (1 - 2e-6)} of its weight share. Keys whose top two exact scores
+   * are that close may be routed to a different node than {@link #EXACT} routes them to; the
+   * two modes must not be mixed for the same keys.
+   */
+  FAST {
+    @Override
+    double score(double weight, double unit) {
+      return weight / FastLog.negLog(unit);
+    }
+  };
+
+  /**
+   * Scores a node.
+   *
+   * @param weight the node weight
+   * @param unit the uniform value in {@code [0, 1)}
+   * @return the score, higher wins
+   */
+  abstract double score(double weight, double unit);
+}
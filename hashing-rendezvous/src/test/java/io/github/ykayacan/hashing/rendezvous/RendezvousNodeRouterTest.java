@@ -19,21 +19,48 @@ package io.github.ykayacan.hashing.rendezvous;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.github.ykayacan.hashing.api.FailureDomain;
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.KeyHasher;
 import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.RoutingEvents;
+import io.github.ykayacan.hashing.api.TopologyChange;
 import io.github.ykayacan.hashing.rendezvous.strategy.DefaultRendezvousStrategy;
+import io.github.ykayacan.hashing.rendezvous.strategy.NodeSnapshot;
+import io.github.ykayacan.hashing.rendezvous.strategy.RendezvousStrategy;
 import io.github.ykayacan.hashing.rendezvous.strategy.WeightedRendezvousStrategy;
+import io.github.ykayacan.hashing.rendezvous.strategy.WeightedScoring;
 import io.github.ykayacan.hashing.rendezvous.util.StreamUtil;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.checkerframework.com.google.common.hash.Hashing;
 import org.junit.jupiter.api.Test;
 
@@ -41,20 +68,20 @@ class RendezvousNodeRouterTest {
 
   @Test
   void testEmpty() {
-    NodeRouter<WeightedNode> router = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
     assertFalse(router.getNode("key").isPresent());
   }
 
   /** Ensure the same node returned for same key after a large change to the pool of nodes */
   @Test
   void testConsistentAfterRemove() {
-    NodeRouter<WeightedNode> router = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
     IntStream.range(0, 1000)
         .parallel()
         .mapToObj(index -> WeightedNode.of("node" + index))
         .forEach(router::addNode);
 
-    Optional<WeightedNode> node = router.getNode("key");
+    Optional<WeightedNode<?>> node = router.getNode("key");
 
     Random random = new Random();
     for (int i = 0; i < 250; i++) {
@@ -70,10 +97,10 @@ class RendezvousNodeRouterTest {
   /** Ensure that a new node returned after deleted */
   @Test
   void testPreviousDeleted() {
-    NodeRouter<WeightedNode> router = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
     router.addNodes(Arrays.asList(WeightedNode.of("node1"), WeightedNode.of("node2")));
 
-    Optional<WeightedNode> node = router.getNode("key");
+    Optional<WeightedNode<?>> node = router.getNode("key");
     node.ifPresent(weightedNode -> router.removeNode(weightedNode.getNodeId()));
 
     Set<String> set = new HashSet<>();
@@ -90,10 +117,10 @@ class RendezvousNodeRouterTest {
   /** Ensure same node will still be returned if removed/readded */
   @Test
   void testReAdd() {
-    NodeRouter<WeightedNode> router = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
     router.addNodes(Arrays.asList(WeightedNode.of("node1"), WeightedNode.of("node2")));
 
-    Optional<WeightedNode> node = router.getNode("key");
+    Optional<WeightedNode<?>> node = router.getNode("key");
     node.ifPresent(
         weightedNode -> {
           router.removeNode(weightedNode.getNodeId());
@@ -105,8 +132,8 @@ class RendezvousNodeRouterTest {
   /** Ensure 2 hashes if have nodes added in different order will have same results */
   @Test
   void testDifferentOrder() {
-    NodeRouter<WeightedNode> router1 = createRendezvousRouter();
-    NodeRouter<WeightedNode> router2 = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router1 = createRendezvousRouter();
+    NodeRouter<WeightedNode<?>> router2 = createRendezvousRouter();
 
     IntStream.range(0, 1000)
         .parallel()
@@ -122,7 +149,7 @@ class RendezvousNodeRouterTest {
 
   @Test
   void shouldUseAllGivenNodes() {
-    NodeRouter<WeightedNode> router = RendezvousNodeRouter.create(
+    NodeRouter<WeightedNode<?>> router = RendezvousNodeRouter.create(
             s -> Hashing.murmur3_128().hashString(s, StandardCharsets.UTF_8).asLong(),
             WeightedRendezvousStrategy.create());
 
@@ -130,7 +157,7 @@ class RendezvousNodeRouterTest {
       router.addNode(WeightedNode.newBuilder(String.valueOf(i)).weight(5).build());
     }
 
-    Set<WeightedNode> selected = new HashSet();
+    Set<WeightedNode<?>> selected = new HashSet();
     for (int i = 0; i < 100000; i++) {
       selected.add(router.getNode(String.valueOf(i)).get());
     }
@@ -138,8 +165,418 @@ class RendezvousNodeRouterTest {
     assertEquals(selected.size(), 100);
   }
 
-  private NodeRouter<WeightedNode> createRendezvousRouter() {
+  /** Ensure listeners receive the added and removed nodes in commit order */
+  @Test
+  void testTopologyListener() {
+    NodeRouter<WeightedNode<?>> router =
+        RendezvousNodeRouter.newBuilder(
+                MurMurHashFunction.create(), DefaultRendezvousStrategy.<WeightedNode<?>>create())
+            .listenerExecutor(Runnable::run)
+            .build();
+    List<TopologyChange<WeightedNode<?>>> changes = new ArrayList<>();
+    router.addTopologyListener(changes::add);
+
+    router.addNodes(Arrays.asList(WeightedNode.of("node1"), WeightedNode.of("node2")));
+    router.removeNode("node1");
+    router.removeNode("node3");
+
+    assertEquals(
+        Arrays.asList(
+            TopologyChange.of(
+                TopologyChange.Type.ADDED,
+                Arrays.asList(WeightedNode.of("node1"), WeightedNode.of("node2")),
+                Collections.emptyList()),
+            TopologyChange.of(
+                TopologyChange.Type.REMOVED,
+                Collections.singletonList(WeightedNode.of("node1")),
+                Collections.emptyList())),
+        changes);
+  }
+
+  /** Ensure keys of an ejected node fall through to other nodes until it is back up */
+  @Test
+  void testMarkDown() throws InterruptedException {
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
+    IntStream.range(0, 10)
+        .mapToObj(index -> WeightedNode.of("node" + index))
+        .forEach(router::addNode);
+
+    Map<String, WeightedNode<?>> before = new HashMap<>();
+    IntStream.range(0, 1000).forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    before.forEach(
+        (key, owner) -> {
+          WeightedNode<?> node = router.getNode(key).get();
+          assertNotEquals("node0", node.getNodeId());
+          if (!owner.getNodeId().equals("node0")) {
+            assertEquals(owner, node);
+          }
+        });
+    List<WeightedNode<?>> nodes = router.getNodes("key", Integer.MAX_VALUE);
+    assertEquals(9, nodes.size());
+    assertFalse(nodes.contains(WeightedNode.of("node0")));
+
+    router.markUp("node0");
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+
+    router.markDown("node0", 10, TimeUnit.MILLISECONDS);
+    TimeUnit.MILLISECONDS.sleep(20);
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+  }
+
+  /** Ensure a new node ramps up to its weight and a drained node ramps down and leaves */
+  @Test
+  void testSlowStartAndDrain() throws InterruptedException {
+    RendezvousNodeRouter<WeightedNode<?>> router =
+        RendezvousNodeRouter.<WeightedNode<?>>newBuilder(
+                MurMurHashFunction.create(), WeightedRendezvousStrategy.create())
+            .slowStart(200, TimeUnit.MILLISECONDS)
+            .initialNodes(
+                IntStream.range(0, 10)
+                    .mapToObj(index -> WeightedNode.newBuilder("node" + index).weight(1).build())
+                    .collect(Collectors.toList()))
+            .build();
+    assertTrue(Math.abs(countKeysOf(router, "node0") - 1000) < 250);
+
+    router.addNode(WeightedNode.newBuilder("node10").weight(1).build());
+    assertTrue(countKeysOf(router, "node10") < 300);
+
+    TimeUnit.MILLISECONDS.sleep(500);
+    assertTrue(Math.abs(countKeysOf(router, "node10") - 909) < 250);
+
+    router.drainNode("node10", 200, TimeUnit.MILLISECONDS);
+    TimeUnit.MILLISECONDS.sleep(500);
+    assertEquals(0, countKeysOf(router, "node10"));
+    assertEquals(10, router.getNodeTable().size());
+    assertFalse(router.getNodeTable().getNodes().contains(WeightedNode.of("node10")));
+  }
+
+  private static long countKeysOf(NodeRouter<WeightedNode<?>> router, String nodeId) {
+    return IntStream.range(0, 10_000)
+        .filter(i -> router.getNode("key" + i).get().getNodeId().equals(nodeId))
+        .count();
+  }
+
+  /** Ensure replicas are distinct and start with the primary node for both strategies */
+  @Test
+  void testGetNodes() {
+    List<NodeRouter<WeightedNode<?>>> routers =
+        Arrays.asList(
+            createRendezvousRouter(),
+            RendezvousNodeRouter.create(
+                MurMurHashFunction.create(), WeightedRendezvousStrategy.create()));
+    for (NodeRouter<WeightedNode<?>> router : routers) {
+      IntStream.range(0, 10)
+          .mapToObj(index -> WeightedNode.newBuilder("node" + index).weight(index + 1).build())
+          .forEach(router::addNode);
+
+      for (int i = 0; i < 1000; i++) {
+        List<WeightedNode<?>> nodes = router.getNodes("key" + i, 3);
+        assertEquals(3, nodes.size());
+        assertEquals(3, new HashSet<>(nodes).size());
+        assertEquals(router.getNode("key" + i).get(), nodes.get(0));
+      }
+      assertEquals(10, router.getNodes("key", 20).size());
+
+      router.markDown("node0", 1, TimeUnit.HOURS);
+      for (int i = 0; i < 1000; i++) {
+        List<WeightedNode<?>> nodes = router.getNodes("key" + i, 3);
+        assertEquals(3, nodes.size());
+        nodes.forEach(node -> assertNotEquals("node0", node.getNodeId()));
+      }
+    }
+  }
+
+  /** Ensure replicas land in distinct zones while there are enough zones, then distinct racks */
+  @Test
+  void testGetNodesAcrossDomains() {
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
+    for (int zone = 0; zone < 3; zone++) {
+      for (int rack = 0; rack < 2; rack++) {
+        for (int host = 0; host < 3; host++) {
+          router.addNode(
+              WeightedNode.newBuilder("node-" + zone + "-" + rack + "-" + host)
+                  .failureDomain(FailureDomain.of("zone" + zone, "rack" + rack))
+                  .build());
+        }
+      }
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      List<WeightedNode<?>> nodes = router.getNodesAcrossDomains("key" + i, 3);
+      assertEquals(3, nodes.size());
+      assertEquals(
+          3, nodes.stream().map(node -> node.getFailureDomain().getZone()).distinct().count());
+      assertEquals(router.getNode("key" + i).get(), nodes.get(0));
+
+      nodes = router.getNodesAcrossDomains("key" + i, 6);
+      assertEquals(6, nodes.stream().map(WeightedNode::getFailureDomain).distinct().count());
+    }
+
+    assertTrue(router.getNodesAcrossDomains("key", 0).isEmpty());
+    assertEquals(18, router.getNodesAcrossDomains("key", Integer.MAX_VALUE).size());
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class, () -> router.getNodesAcrossDomains("key", -1));
+    assertEquals("Illegal node count: -1", e.getMessage());
+  }
+
+  /** Ensure routing by hash spreads keys evenly and agrees across entry points */
+  @Test
+  void testGetNodeByHash() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<NodeRouter<WeightedNode<?>>> routers =
+        Arrays.asList(
+            createRendezvousRouter(),
+            RendezvousNodeRouter.create(hashFunction, WeightedRendezvousStrategy.create()));
+    for (NodeRouter<WeightedNode<?>> router : routers) {
+      assertFalse(router.getNodeByHash(0).isPresent());
+      IntStream.range(0, 10)
+          .mapToObj(index -> WeightedNode.newBuilder("node" + index).weight(1).build())
+          .forEach(router::addNode);
+
+      KeyHasher<Long> keyHasher = hashFunction::hash;
+      Map<String, Integer> counts = new HashMap<>();
+      int sameAsString = 0;
+      for (long i = 0; i < 10000; i++) {
+        WeightedNode<?> node = router.getNodeByHash(hashFunction.hash(i)).get();
+        assertEquals(node, router.getNode(i).get());
+        assertEquals(node, router.getNode(i, keyHasher).get());
+        assertEquals(router.getNodeTable().get(router.route(i)), node);
+        counts.merge(node.getNodeId(), 1, Integer::sum);
+        if (node.equals(router.getNode(Long.toString(i)).get())) {
+          sameAsString++;
+        }
+      }
+      assertEquals(10, counts.size());
+      // long keys are scored by hash, independently of their decimal String form
+      assertTrue(sameAsString > 800 && sameAsString < 1200, "" + sameAsString);
+      counts.values().forEach(count -> assertTrue(count > 800 && count < 1200, "" + count));
+
+      router.markDown("node0", 1, TimeUnit.HOURS);
+      for (long i = 0; i < 1000; i++) {
+        assertNotEquals("node0", router.getNode(i).get().getNodeId());
+      }
+    }
+  }
+
+  @Test
+  void testNodeSnapshotScoring() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<WeightedNode<?>> nodes =
+        IntStream.range(0, 20)
+            .mapToObj(i -> WeightedNode.newBuilder("node" + i).weight(1 + i % 4).build())
+            .collect(Collectors.toList());
+    NodeSnapshot<WeightedNode<?>> snapshot = NodeSnapshot.of(nodes, hashFunction);
+    assertEquals(nodes, snapshot.getNodes());
+
+    List<RendezvousStrategy<WeightedNode<?>>> strategies =
+        Arrays.asList(DefaultRendezvousStrategy.create(), WeightedRendezvousStrategy.create());
+    for (RendezvousStrategy<WeightedNode<?>> strategy : strategies) {
+      assertFalse(strategy.getNodeByHash(0, NodeSnapshot.empty()).isPresent());
+      for (long i = 0; i < 10000; i++) {
+        long hash = hashFunction.hash(i);
+        assertEquals(
+            strategy.getNodeByHash(hash, nodes, hashFunction),
+            strategy.getNodeByHash(hash, snapshot));
+        assertEquals(
+            strategy.getNodeByHash(hash, nodes, hashFunction, node -> node.getWeight() > 1),
+            strategy.getNodeByHash(hash, snapshot, node -> node.getWeight() > 1));
+      }
+    }
+  }
+
+  @Test
+  void testFastWeightedScoring() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<WeightedNode<?>> nodes =
+        IntStream.range(0, 10)
+            .mapToObj(i -> WeightedNode.newBuilder("node" + i).weight(1 + i % 4).build())
+            .collect(Collectors.toList());
+    int totalWeight = nodes.stream().mapToInt(WeightedNode::getWeight).sum();
+    RendezvousStrategy<WeightedNode<?>> exact = WeightedRendezvousStrategy.create();
+    RendezvousStrategy<WeightedNode<?>> fast =
+        WeightedRendezvousStrategy.create(WeightedScoring.FAST);
+    NodeSnapshot<WeightedNode<?>> snapshot = NodeSnapshot.of(nodes, hashFunction);
+
+    int keyCount = 100000;
+    int mismatches = 0;
+    Map<WeightedNode<?>, Integer> exactCounts = new HashMap<>();
+    Map<WeightedNode<?>, Integer> fastCounts = new HashMap<>();
+    for (int i = 0; i < keyCount; i++) {
+      WeightedNode<?> expected = exact.getNode("key" + i, nodes, hashFunction).get();
+      WeightedNode<?> actual = fast.getNode("key" + i, nodes, hashFunction).get();
+      long hash = hashFunction.hash("key" + i);
+      assertEquals(
+          fast.getNodeByHash(hash, nodes, hashFunction), fast.getNodeByHash(hash, snapshot));
+      if (!expected.equals(actual)) {
+        mismatches++;
+      }
+      exactCounts.merge(expected, 1, Integer::sum);
+      fastCounts.merge(actual, 1, Integer::sum);
+    }
+
+    // only keys whose top two scores are within the error bound may move
+    assertTrue(mismatches <= 10, "" + mismatches);
+    for (WeightedNode<?> node : nodes) {
+      int count = fastCounts.get(node);
+      assertTrue(Math.abs(count - exactCounts.get(node)) <= mismatches);
+      double expectedCount = (double) keyCount * node.getWeight() / totalWeight;
+      assertTrue(Math.abs(count - expectedCount) < expectedCount * 0.05, node + " " + count);
+    }
+  }
+
+  @Test
+  void testTypedPayload() {
+    NodeRouter<WeightedNode<StringBuilder>> router =
+        RendezvousNodeRouter.create(
+            MurMurHashFunction.create(), WeightedRendezvousStrategy.create());
+    router.addNode(WeightedNode.newBuilder("node1").data(new StringBuilder()).weight(2).build());
+    // same id, so the node is replaced
+    StringBuilder pool = new StringBuilder("pool");
+    router.addNode(WeightedNode.newBuilder("node1").data(pool).weight(5).build());
+
+    WeightedNode<StringBuilder> node = router.getNode("key").get();
+    assertSame(pool, node.data());
+    assertEquals(5, node.getWeight());
+    assertEquals(1, router.getNodeTable().getNodes().size());
+    assertSame(node, router.getNodeTable().get(router.route("key")));
+    assertEquals(WeightedNode.of("node1"), node);
+    assertEquals(WeightedNode.of("node1").hashCode(), node.hashCode());
+  }
+
+  @Test
+  void testRoute() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    NodeRouter<WeightedNode<?>> router = createRendezvousRouter();
+    assertEquals(-1, router.route("key"));
+    assertEquals(0, router.getNodeTable().size());
+    IntStream.range(0, 10).mapToObj(i -> WeightedNode.of("node" + i)).forEach(router::addNode);
+
+    NodeTable<WeightedNode<?>> table = router.getNodeTable();
+    assertEquals(10, table.size());
+    KeyHasher<Long> keyHasher = hashFunction::hash;
+    for (long i = 0; i < 1000; i++) {
+      int ordinal = router.route(Long.toString(i));
+      assertEquals(router.getNode(Long.toString(i)).get(), table.get(ordinal));
+      assertEquals(router.getNode(i).get(), table.get(router.route(i)));
+      assertEquals(router.route(i), router.routeByHash(hashFunction.hash(i)));
+      assertEquals(router.route(i), router.route(i, keyHasher));
+    }
+
+    // a removed node frees its ordinal for the next node
+    int ordinal = router.route("key");
+    String nodeId = table.get(ordinal).getNodeId();
+    router.removeNode(nodeId);
+    assertNull(router.getNodeTable().get(ordinal));
+    assertNotEquals(ordinal, router.route("key"));
+    router.addNode(WeightedNode.of("node10"));
+    assertEquals("node10", router.getNodeTable().get(ordinal).getNodeId());
+    assertEquals(table.get(0), router.getNodeTable().get(0));
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    for (long i = 0; i < 1000; i++) {
+      assertNotEquals("node0", router.getNodeTable().get(router.route(i)).getNodeId());
+    }
+  }
+
+  /** Ensure route candidates are the distinct healthy nodes in score order */
+  @Test
+  void testRouteCandidates() {
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<NodeRouter<WeightedNode<?>>> routers =
+        Arrays.asList(
+            createRendezvousRouter(),
+            RendezvousNodeRouter.create(hashFunction, WeightedRendezvousStrategy.create()));
+    for (NodeRouter<WeightedNode<?>> router : routers) {
+      int[] candidates = new int[3];
+      assertEquals(0, router.routeCandidatesByHash(0, candidates));
+      IntStream.range(0, 10).mapToObj(i -> WeightedNode.of("node" + i)).forEach(router::addNode);
+
+      NodeTable<WeightedNode<?>> table = router.getNodeTable();
+      for (long i = 0; i < 100; i++) {
+        assertEquals(3, router.routeCandidates(Long.toString(i), candidates));
+        List<WeightedNode<?>> nodes = router.getNodes(Long.toString(i), 3);
+        for (int j = 0; j < 3; j++) {
+          assertEquals(nodes.get(j), table.get(candidates[j]));
+        }
+
+        // each candidate is where the key goes once the ones before it are down
+        assertEquals(3, router.routeCandidates(i, candidates));
+        assertEquals(3, IntStream.of(candidates).distinct().count());
+        for (int j = 0; j < 3; j++) {
+          assertEquals(candidates[j], router.route(i));
+          router.markDown(table.get(candidates[j]).getNodeId(), 1, TimeUnit.HOURS);
+        }
+        IntStream.of(candidates).forEach(ordinal -> router.markUp(table.get(ordinal).getNodeId()));
+      }
+      assertEquals(10, router.routeCandidatesByHash(0, new int[20]));
+
+      router.markDown("node0", 1, TimeUnit.HOURS);
+      for (long i = 0; i < 100; i++) {
+        assertEquals(3, router.routeCandidatesByHash(hashFunction.hash(i), candidates));
+        assertEquals(router.routeByHash(hashFunction.hash(i)), candidates[0]);
+        IntStream.of(candidates)
+            .forEach(ordinal -> assertNotEquals("node0", table.get(ordinal).getNodeId()));
+      }
+      assertEquals(9, router.routeCandidatesByHash(0, new int[20]));
+      assertEquals(9, router.routeCandidates("key", new int[20]));
+    }
+  }
+
+  private NodeRouter<WeightedNode<?>> createRendezvousRouter() {
     return RendezvousNodeRouter.create(
         MurMurHashFunction.create(), DefaultRendezvousStrategy.create());
   }
+
+  /** Ensure sampled lookups and topology changes are recorded as JFR events */
+  @Test
+  void testFlightRecorderEvents() throws IOException {
+    RendezvousNodeRouter<WeightedNode<?>> router =
+        RendezvousNodeRouter.<WeightedNode<?>>newBuilder(
+                MurMurHashFunction.create(), DefaultRendezvousStrategy.create())
+            .build();
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("io.github.ykayacan.hashing.Lookup");
+      recording.enable("io.github.ykayacan.hashing.TopologyChange");
+      recording.start();
+      IntStream.range(0, 10).forEach(i -> router.addNode(WeightedNode.of("node" + i)));
+      router.removeNode("node0");
+      LongStream.range(0, 50_000).forEach(router::getNode);
+      recording.stop();
+
+      Path file = Files.createTempFile("routing", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+      Files.delete(file);
+    }
+
+    List<RecordedEvent> changes = eventsOf(events, "TopologyChange", router);
+    assertEquals(11, changes.size());
+    assertEquals("ADDED", changes.get(0).getString("change"));
+    assertEquals(1, changes.get(0).getLong("tokenCount"));
+    assertEquals("REMOVED", changes.get(10).getString("change"));
+
+    List<RecordedEvent> lookups = eventsOf(events, "Lookup", router);
+    assertTrue(lookups.size() > 10 && lookups.size() < 500);
+    for (RecordedEvent lookup : lookups) {
+      assertEquals(RoutingEvents.DEFAULT_LOOKUP_SAMPLE_RATE, lookup.getInt("sampleRate"));
+      assertEquals(
+          router.getNodeByHash(lookup.getLong("keyHash")).get().getNodeId(),
+          lookup.getString("nodeId"));
+    }
+  }
+
+  private static List<RecordedEvent> eventsOf(
+      List<RecordedEvent> events, String name, Object router) {
+    String eventName = "io.github.ykayacan.hashing." + name;
+    String routerName = router.getClass().getSimpleName() + '@';
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals(eventName))
+        .filter(event -> event.getString("router").startsWith(routerName))
+        .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+        .collect(Collectors.toList());
+  }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.Node;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives the micro-batches emitted by a {@link NodeBatcher}, typically sending each one to its
+ * node as a single request.
+ *
+ * @param <N> the {@link Node} parameter
+ * @param <T> the item type
+ */
+@FunctionalInterface
+public interface BatchSink<N extends Node<?>, T> {
+
+  /**
+   * Sends a batch to a node. The capacity held by the batch is released when the returned stage
+   * completes, normally or exceptionally, so a slow node pushes back on producers.
+   *
+   * @param node the node every item of the batch was routed to
+   * @param batch the items, in submission order
+   * @return the stage completed once the batch is handled
+   */
+  CompletionStage<?> send(N node, List<T> batch);
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free count-min sketch of 64-bit hashes.
+ *
+ * <p>Counters are updated with atomic increments, so concurrent adds never block each other.
+ * Estimates never undercount a hash, except after {@link #decay()} races with concurrent adds.
+ */
+final class CountMinSketch {
+
+  private final int depth;
+  private final int mask;
+  private final AtomicLongArray counters;
+
+  /**
+   * Instantiates a new count-min sketch.
+   *
+   * @param depth the number of rows
+   * @param width the number of counters per row, rounded up to a power of two
+   */
+  CountMinSketch(int depth, int width) {
+    if (depth <= 0 || width <= 0) {
+      throw new IllegalArgumentException("Illegal sketch size: " + depth + "x" + width);
+    }
+    int powerOfTwo = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+    this.depth = depth;
+    this.mask = powerOfTwo - 1;
+    this.counters = new AtomicLongArray(depth * powerOfTwo);
+  }
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+
+  /**
+   * Increments the counters of a hash.
+   *
+   * @param hash the hash
+   * @return the estimated count after the increment
+   */
+  long add(long hash) {
+    long step = mix(hash) | 1L;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      int index = row * (mask + 1) + (int) ((hash + row * step) & mask);
+      estimate = Math.min(estimate, counters.incrementAndGet(index));
+    }
+    return estimate;
+  }
+
+  /**
+   * Estimates the count of a hash.
+   *
+   * @param hash the hash
+   * @return the estimated count
+   */
+  long estimate(long hash) {
+    long step = mix(hash) | 1L;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      int index = row * (mask + 1) + (int) ((hash + row * step) & mask);
+      estimate = Math.min(estimate, counters.get(index));
+    }
+    return estimate;
+  }
+
+  /** Halves every counter, so older counts fade away. */
+  void decay() {
+    for (int i = 0; i < counters.length(); i++) {
+      long value;
+      do {
+        value = counters.get(i);
+      } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+    }
+  }
+}
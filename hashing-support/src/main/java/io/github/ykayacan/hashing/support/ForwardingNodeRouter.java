@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.TopologyListener;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base of router decorators, forwarding every {@link NodeRouter} method to a delegate so that
+ * decorators only override the methods they change.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+abstract class ForwardingNodeRouter<N extends Node<?>> implements NodeRouter<N> {
+
+  final NodeRouter<N> delegate;
+
+  ForwardingNodeRouter(NodeRouter<N> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Optional<N> getNode(String key) {
+    return delegate.getNode(key);
+  }
+
+  @Override
+  public Optional<N> getNode(long key) {
+    return delegate.getNode(key);
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    return delegate.getNode(key, keyHasher);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    return delegate.getNodeByHash(hash);
+  }
+
+  @Override
+  public int route(String key) {
+    return delegate.route(key);
+  }
+
+  @Override
+  public int route(long key) {
+    return delegate.route(key);
+  }
+
+  @Override
+  public <K> int route(K key, KeyHasher<? super K> keyHasher) {
+    return delegate.route(key, keyHasher);
+  }
+
+  @Override
+  public int routeByHash(long hash) {
+    return delegate.routeByHash(hash);
+  }
+
+  @Override
+  public int routeCandidates(String key, int[] ordinals) {
+    return delegate.routeCandidates(key, ordinals);
+  }
+
+  @Override
+  public int routeCandidates(long key, int[] ordinals) {
+    return delegate.routeCandidates(key, ordinals);
+  }
+
+  @Override
+  public int routeCandidatesByHash(long hash, int[] ordinals) {
+    return delegate.routeCandidatesByHash(hash, ordinals);
+  }
+
+  @Override
+  public NodeTable<N> getNodeTable() {
+    return delegate.getNodeTable();
+  }
+
+  @Override
+  public List<N> getNodes(String key, int count) {
+    return delegate.getNodes(key, count);
+  }
+
+  @Override
+  public List<N> getNodesAcrossDomains(String key, int count) {
+    return delegate.getNodesAcrossDomains(key, count);
+  }
+
+  @Override
+  public void addNode(N node) {
+    delegate.addNode(node);
+  }
+
+  @Override
+  public void addNodes(Iterable<N> nodes) {
+    delegate.addNodes(nodes);
+  }
+
+  @Override
+  public void removeNode(String nodeId) {
+    delegate.removeNode(nodeId);
+  }
+
+  @Override
+  public void removeNodes(Iterable<String> nodeIds) {
+    delegate.removeNodes(nodeIds);
+  }
+
+  @Override
+  public void addTopologyListener(TopologyListener<N> listener) {
+    delegate.addTopologyListener(listener);
+  }
+
+  @Override
+  public void removeTopologyListener(TopologyListener<N> listener) {
+    delegate.removeTopologyListener(listener);
+  }
+
+  @Override
+  public void markDown(String nodeId, long duration, TimeUnit unit) {
+    delegate.markDown(nodeId, duration, unit);
+  }
+
+  @Override
+  public void markUp(String nodeId) {
+    delegate.markUp(nodeId);
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.checkerframework.checker.index.qual.Positive;
+
+/**
+ * Measures the speed and quality of a {@link HashFunction}, to compare a candidate with the one in
+ * use before adopting it. A poor function, such as {@link String#hashCode()} widened to a long,
+ * hashes fast but leaves most of the ring to a few nodes.
+ *
+ * <ul>
+ *   <li>Throughput hashes random keys of each configured length for a fixed time. It is a quick
+ *       estimate; use JMH for precise numbers.
+ *   <li>Avalanche flips every bit of random keys, 7 bits per character to keep them ASCII, and
+ *       measures the bias of each output bit, {@code |2p - 1|} where {@code p} is the probability
+ *       that it flips. A good function only shows sampling noise, about {@code 5 /
+ *       sqrt(samples)} at worst.
+ *   <li>Bit independence is the worst correlation between the flips of two output bits over all
+ *       input bit flips. Sampling noise is about {@code 5 / sqrt(samples * inputBits)}.
+ *   <li>Distribution counts {@code "key" + i} keys in buckets, by the high and by the low bits of
+ *       their hashes, and reports the chi-square statistic in standard deviations from its
+ *       expectation. Beyond 3 the distribution is suspect.
+ *   <li>Ring balance routes the same keys with routers built on the function and reports the
+ *       coefficient of variation of the keys per node. Nodes are counted from the routed keys, and
+ *       from the node table where the router has one, so an empty node counts as well.
+ * </ul>
+ *
+ * <p>All keys come from a seeded {@link Random}, so reports of different functions see the same
+ * keys.
+ */
+public final class HashQualityReport {
+
+  private static final int BITS_PER_CHAR = 7;
+
+  private static final long SEED = 0x5DEECE66DL;
+
+  private final HashFunction hashFunction;
+  private final Map<Integer, Double> keysPerSecond = new LinkedHashMap<>();
+  private final Map<String, Double> ringBalance = new LinkedHashMap<>();
+  private double worstAvalancheBias;
+  private double meanAvalancheBias;
+  private double worstBitCorrelation;
+  private double highBitsChiSquare;
+  private double lowBitsChiSquare;
+
+  /** Keeps hashes alive so throughput loops are not optimized away. */
+  private long sink;
+
+  private HashQualityReport(Builder builder) {
+    this.hashFunction = builder.hashFunction;
+
+    Random random = new Random(SEED);
+    for (int keyLength : builder.keyLengths) {
+      measureThroughput(random, keyLength, builder.keyCount, builder.measurementNanos);
+    }
+    measureAvalanche(random, builder.avalancheKeyLength, builder.avalancheSamples);
+    measureDistribution(builder.keyCount, builder.bucketBits);
+    builder.routers.forEach(
+        (name, factory) -> ringBalance.put(name, measureBalance(factory, builder.keyCount)));
+  }
+
+  /**
+   * Measures the given hash function with default settings.
+   *
+   * @param hashFunction the hash function
+   * @return the hash quality report
+   */
+  public static HashQualityReport of(HashFunction hashFunction) {
+    return newBuilder(hashFunction).build();
+  }
+
+  /**
+   * New builder.
+   *
+   * @param hashFunction the hash function
+   * @return the builder
+   */
+  public static Builder newBuilder(HashFunction hashFunction) {
+    return new Builder(hashFunction);
+  }
+
+  private void measureThroughput(Random random, int keyLength, int keyCount, long nanos) {
+    String[] keys = new String[Math.min(keyCount, 1 << 16)];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new String(randomAscii(random, keyLength));
+    }
+
+    // the first round warms up
+    long hashed = 0;
+    for (int round = 0; round < 2; round++) {
+      hashed = 0;
+      long start = System.nanoTime();
+      long elapsed;
+      do {
+        for (String key : keys) {
+          sink += hashFunction.hash(key);
+        }
+        hashed += keys.length;
+        elapsed = System.nanoTime() - start;
+      } while (elapsed < nanos);
+      keysPerSecond.put(keyLength, hashed * 1e9 / elapsed);
+    }
+  }
+
+  private void measureAvalanche(Random random, int keyLength, int samples) {
+    int inputBits = keyLength * BITS_PER_CHAR;
+    long[][] flips = new long[inputBits][Long.SIZE];
+    long[] changed = new long[Long.SIZE];
+    long[][] changedTogether = new long[Long.SIZE][Long.SIZE];
+
+    for (int sample = 0; sample < samples; sample++) {
+      char[] chars = randomAscii(random, keyLength);
+      long hash = hashFunction.hash(new String(chars));
+      for (int inputBit = 0; inputBit < inputBits; inputBit++) {
+        int index = inputBit / BITS_PER_CHAR;
+        char mask = (char) (1 << (inputBit % BITS_PER_CHAR));
+        chars[index] ^= mask;
+        long diff = hash ^ hashFunction.hash(new String(chars));
+        chars[index] ^= mask;
+
+        for (long j = diff; j != 0; j &= j - 1) {
+          int bit = Long.numberOfTrailingZeros(j);
+          flips[inputBit][bit]++;
+          changed[bit]++;
+          for (long k = j & (j - 1); k != 0; k &= k - 1) {
+            changedTogether[bit][Long.numberOfTrailingZeros(k)]++;
+          }
+        }
+      }
+    }
+
+    double sum = 0;
+    for (long[] row : flips) {
+      for (long count : row) {
+        double bias = Math.abs(2.0 * count / samples - 1);
+        worstAvalancheBias = Math.max(worstAvalancheBias, bias);
+        sum += bias;
+      }
+    }
+    meanAvalancheBias = sum / (inputBits * Long.SIZE);
+
+    double total = (double) samples * inputBits;
+    for (int j = 0; j < Long.SIZE; j++) {
+      for (int k = j + 1; k < Long.SIZE; k++) {
+        double pj = changed[j] / total;
+        double pk = changed[k] / total;
+        double variance = pj * (1 - pj) * pk * (1 - pk);
+        // a bit that never or always flips is as bad as it gets
+        double correlation =
+            variance == 0 ? 1 : (changedTogether[j][k] / total - pj * pk) / Math.sqrt(variance);
+        worstBitCorrelation = Math.max(worstBitCorrelation, Math.abs(correlation));
+      }
+    }
+  }
+
+  private void measureDistribution(int keyCount, int bucketBits) {
+    int buckets = 1 << bucketBits;
+    long[] high = new long[buckets];
+    long[] low = new long[buckets];
+    for (int i = 0; i < keyCount; i++) {
+      long hash = hashFunction.hash("key" + i);
+      high[(int) (hash >>> (Long.SIZE - bucketBits))]++;
+      low[(int) (hash & (buckets - 1))]++;
+    }
+    highBitsChiSquare = chiSquareDeviation(high, keyCount);
+    lowBitsChiSquare = chiSquareDeviation(low, keyCount);
+  }
+
+  /** The chi-square statistic against a uniform distribution, in standard deviations. */
+  private static double chiSquareDeviation(long[] counts, int total) {
+    double expected = (double) total / counts.length;
+    double chiSquare = 0;
+    for (long count : counts) {
+      chiSquare += (count - expected) * (count - expected) / expected;
+    }
+    int degreesOfFreedom = counts.length - 1;
+    return (chiSquare - degreesOfFreedom) / Math.sqrt(2.0 * degreesOfFreedom);
+  }
+
+  private double measureBalance(
+      Function<? super HashFunction, ? extends NodeRouter<?>> factory, int keyCount) {
+    NodeRouter<?> router = factory.apply(hashFunction);
+    Map<String, Long> counts = new HashMap<>();
+    try {
+      router.getNodeTable().getNodes().forEach(node -> counts.put(node.getNodeId(), 0L));
+    } catch (UnsupportedOperationException e) {
+      // hierarchical routers only tell the nodes keys route to
+    }
+    for (int i = 0; i < keyCount; i++) {
+      Optional<? extends Node<?>> node = router.getNode("key" + i);
+      node.ifPresent(n -> counts.merge(n.getNodeId(), 1L, Long::sum));
+    }
+    if (counts.isEmpty()) {
+      throw new IllegalArgumentException("Illegal router: no nodes");
+    }
+
+    double mean = (double) keyCount / counts.size();
+    double variance = 0;
+    for (long count : counts.values()) {
+      variance += (count - mean) * (count - mean);
+    }
+    return Math.sqrt(variance / counts.size()) / mean;
+  }
+
+  private static char[] randomAscii(Random random, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) random.nextInt(1 << BITS_PER_CHAR);
+    }
+    return chars;
+  }
+
+  /**
+   * Gets the hashed keys per second by key length.
+   *
+   * @return the keys per second
+   */
+  public Map<Integer, Double> getKeysPerSecond() {
+    return Collections.unmodifiableMap(keysPerSecond);
+  }
+
+  /**
+   * Gets the worst avalanche bias over all input and output bit pairs, from 0 to 1.
+   *
+   * @return the worst avalanche bias
+   */
+  public double getWorstAvalancheBias() {
+    return worstAvalancheBias;
+  }
+
+  /**
+   * Gets the mean avalanche bias over all input and output bit pairs, from 0 to 1.
+   *
+   * @return the mean avalanche bias
+   */
+  public double getMeanAvalancheBias() {
+    return meanAvalancheBias;
+  }
+
+  /**
+   * Gets the worst absolute correlation between the flips of two output bits, from 0 to 1.
+   *
+   * @return the worst bit correlation
+   */
+  public double getWorstBitCorrelation() {
+    return worstBitCorrelation;
+  }
+
+  /**
+   * Gets the chi-square statistic of buckets picked by the high bits, as used by rings, in
+   * standard deviations from its expectation.
+   *
+   * @return the deviation
+   */
+  public double getHighBitsChiSquare() {
+    return highBitsChiSquare;
+  }
+
+  /**
+   * Gets the chi-square statistic of buckets picked by the low bits, as used by hash tables, in
+   * standard deviations from its expectation.
+   *
+   * @return the deviation
+   */
+  public double getLowBitsChiSquare() {
+    return lowBitsChiSquare;
+  }
+
+  /**
+   * Gets the coefficient of variation of the keys per node by router name.
+   *
+   * @return the ring balance
+   */
+  public Map<String, Double> getRingBalance() {
+    return Collections.unmodifiableMap(ringBalance);
+  }
+
+  /**
+   * Returns the report as text, one measurement per line.
+   *
+   * @return the report
+   */
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder("HashQualityReport{hashFunction=");
+    report.append(hashFunction).append('\n');
+    keysPerSecond.forEach(
+        (keyLength, rate) ->
+            report.append(String.format("  throughput, %d chars: %.3g keys/s%n", keyLength, rate)));
+    report.append(
+        String.format(
+            "  avalanche bias: worst=%.4f mean=%.4f%n", worstAvalancheBias, meanAvalancheBias));
+    report.append(
+        String.format("  bit independence: worst correlation=%.4f%n", worstBitCorrelation));
+    report.append(
+        String.format(
+            "  chi-square: high bits=%.2f sd, low bits=%.2f sd%n",
+            highBitsChiSquare, lowBitsChiSquare));
+    ringBalance.forEach(
+        (name, cv) -> report.append(String.format("  ring balance, %s: cv=%.4f%n", name, cv)));
+    return report.append('}').toString();
+  }
+
+  /** The type Builder. */
+  public static final class Builder {
+
+    private final HashFunction hashFunction;
+    private int[] keyLengths = {8, 16, 64, 256};
+    private int keyCount = 100_000;
+    private long measurementNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private int avalancheKeyLength = 16;
+    private int avalancheSamples = 2000;
+    private int bucketBits = 10;
+    private final Map<String, Function<? super HashFunction, ? extends NodeRouter<?>>> routers =
+        new LinkedHashMap<>();
+
+    private Builder(HashFunction hashFunction) {
+      this.hashFunction = Objects.requireNonNull(hashFunction);
+    }
+
+    /**
+     * Key lengths builder, throughput is measured for each. Defaults to 8, 16, 64 and 256.
+     *
+     * @param keyLengths the key lengths
+     * @return the builder
+     */
+    public Builder keyLengths(@Positive int... keyLengths) {
+      for (int keyLength : keyLengths) {
+        if (keyLength <= 0) {
+          throw new IllegalArgumentException("Illegal key length: " + keyLength);
+        }
+      }
+      this.keyLengths = keyLengths.clone();
+      return this;
+    }
+
+    /**
+     * Key count builder, the keys hashed for distribution and ring balance. Defaults to 100000.
+     *
+     * @param keyCount the key count
+     * @return the builder
+     */
+    public Builder keyCount(@Positive int keyCount) {
+      if (keyCount <= 0) {
+        throw new IllegalArgumentException("Illegal key count: " + keyCount);
+      }
+      this.keyCount = keyCount;
+      return this;
+    }
+
+    /**
+     * Measurement time builder, per key length, after a warm-up of the same time. Defaults to
+     * 100 milliseconds.
+     *
+     * @param time the time
+     * @param unit the unit
+     * @return the builder
+     */
+    public Builder measurementTime(@Positive long time, TimeUnit unit) {
+      if (time <= 0) {
+        throw new IllegalArgumentException("Illegal measurement time: " + time);
+      }
+      this.measurementNanos = unit.toNanos(time);
+      return this;
+    }
+
+    /**
+     * Avalanche builder. Defaults to 2000 samples of 16 characters.
+     *
+     * @param keyLength the key length
+     * @param samples the number of samples
+     * @return the builder
+     */
+    public Builder avalanche(@Positive int keyLength, @Positive int samples) {
+      if (keyLength <= 0 || samples <= 0) {
+        throw new IllegalArgumentException("Illegal avalanche: " + samples + "x" + keyLength);
+      }
+      this.avalancheKeyLength = keyLength;
+      this.avalancheSamples = samples;
+      return this;
+    }
+
+    /**
+     * Bucket count builder, of the chi-square test. Defaults to 1024.
+     *
+     * @param bucketCount the bucket count, a power of two
+     * @return the builder
+     */
+    public Builder bucketCount(@Positive int bucketCount) {
+      if (bucketCount < 2 || Integer.bitCount(bucketCount) != 1) {
+        throw new IllegalArgumentException("Illegal bucket count: " + bucketCount);
+      }
+      this.bucketBits = Integer.numberOfTrailingZeros(bucketCount);
+      return this;
+    }
+
+    /**
+     * Router builder, adds a ring balance measurement. The factory builds a router with its nodes
+     * on the measured hash function.
+     *
+     * @param name the name in the report
+     * @param factory the router factory
+     * @return the builder
+     */
+    public Builder router(
+        String name, Function<? super HashFunction, ? extends NodeRouter<?>> factory) {
+      routers.put(Objects.requireNonNull(name), Objects.requireNonNull(factory));
+      return this;
+    }
+
+    /**
+     * Runs the measurements, which takes a few seconds with the defaults.
+     *
+     * @return the hash quality report
+     */
+    public HashQualityReport build() {
+      return new HashQualityReport(this);
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Router composing two levels: a group router picks a group node, such as a region or a cluster,
+ * and the member router registered for that group picks the node. Levels nest by registering
+ * hierarchical routers as member routers, for example region, then cluster, then node.
+ *
+ * <p>A key is hashed once. Each level routes by {@link NodeRouter#getNodeByHash(long)} with its
+ * own sub-hash derived from the key hash, so the choice within a group is independent of the
+ * choice of the group. A lookup costs the group lookup, one map read and the member lookup, and
+ * every router keeps its own topology: adding or removing nodes of one group never touches the
+ * group router or the other groups.
+ *
+ * <p>Both routers must support routing by hash. A group without members routes its keys nowhere;
+ * such a group should be removed or marked down in the {@link #getGroupRouter() group router}.
+ *
+ * @param <G> the group {@link Node} parameter
+ * @param <N> the {@link Node} parameter
+ */
+public final class HierarchicalRouter<G extends Node<?>, N extends Node<?>>
+    implements NodeRouter<N> {
+
+  private static final long GROUP_SALT = 0x9E3779B97F4A7C15L;
+  private static final long MEMBER_SALT = 0xC2B2AE3D27D4EB4FL;
+
+  private final NodeRouter<G> groupRouter;
+  private final HashFunction hashFunction;
+  @Nullable private final Function<? super N, String> groupOf;
+  private final ConcurrentMap<String, NodeRouter<N>> memberRouters = new ConcurrentHashMap<>();
+
+  private HierarchicalRouter(
+      NodeRouter<G> groupRouter,
+      HashFunction hashFunction,
+      @Nullable Function<? super N, String> groupOf) {
+    this.groupRouter = groupRouter;
+    this.hashFunction = hashFunction;
+    this.groupOf = groupOf;
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <G> the group type parameter
+   * @param <N> the type parameter
+   * @param groupRouter the router picking the group of a key
+   * @param hashFunction the hash function for keys
+   * @return the builder
+   */
+  public static <G extends Node<?>, N extends Node<?>> Builder<G, N> newBuilder(
+      NodeRouter<G> groupRouter, HashFunction hashFunction) {
+    return new Builder<>(groupRouter, hashFunction);
+  }
+
+  /**
+   * Stafford variant 13 mix of the key hash and a per level salt, so the levels see unrelated
+   * hashes.
+   */
+  private static long subHash(long hash, long salt) {
+    long z = hash + salt;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Registers a group and the router of its members. The member router is visible before the
+   * group is added to the group router, so a routed group always has members to route to.
+   *
+   * @param group the group
+   * @param memberRouter the router of the group's members
+   */
+  public void addGroup(G group, NodeRouter<N> memberRouter) {
+    Objects.requireNonNull(group);
+    Objects.requireNonNull(memberRouter);
+
+    memberRouters.put(group.getNodeId(), memberRouter);
+    groupRouter.addNode(group);
+  }
+
+  /**
+   * Removes a group from the group router, then drops its member router.
+   *
+   * @param groupId the group id
+   */
+  public void removeGroup(String groupId) {
+    Objects.requireNonNull(groupId);
+
+    groupRouter.removeNode(groupId);
+    memberRouters.remove(groupId);
+  }
+
+  /**
+   * Gets the group router.
+   *
+   * @return the group router
+   */
+  public NodeRouter<G> getGroupRouter() {
+    return groupRouter;
+  }
+
+  /**
+   * Gets the member router of a group, whose topology can be changed independently.
+   *
+   * @param groupId the group id
+   * @return the member router
+   */
+  public Optional<NodeRouter<N>> getMemberRouter(String groupId) {
+    return Optional.ofNullable(memberRouters.get(groupId));
+  }
+
+  @Override
+  public Optional<N> getNode(String key) {
+    Objects.requireNonNull(key);
+
+    return getNodeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public Optional<N> getNode(long key) {
+    return getNodeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(keyHasher);
+
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    Optional<G> group = groupRouter.getNodeByHash(subHash(hash, GROUP_SALT));
+    if (!group.isPresent()) {
+      return Optional.empty();
+    }
+    NodeRouter<N> memberRouter = memberRouters.get(group.get().getNodeId());
+    return memberRouter == null
+        ? Optional.empty()
+        : memberRouter.getNodeByHash(subHash(hash, MEMBER_SALT));
+  }
+
+  /**
+   * Adds a node to the member router of its group.
+   *
+   * @param node node to be added
+   * @throws UnsupportedOperationException if the builder was given no group function
+   * @throws IllegalArgumentException if the group of the node is not registered
+   */
+  @Override
+  public void addNode(N node) {
+    Objects.requireNonNull(node);
+
+    if (groupOf == null) {
+      throw new UnsupportedOperationException("Nodes must be added to their member router");
+    }
+    String groupId = groupOf.apply(node);
+    NodeRouter<N> memberRouter = memberRouters.get(groupId);
+    if (memberRouter == null) {
+      throw new IllegalArgumentException("Unknown group: " + groupId);
+    }
+    memberRouter.addNode(node);
+  }
+
+  /**
+   * Removes a node from every member router.
+   *
+   * @param nodeId node id to be removed
+   */
+  @Override
+  public void removeNode(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    memberRouters.values().forEach(memberRouter -> memberRouter.removeNode(nodeId));
+  }
+
+  /**
+   * Ejects a node in every member router. Groups are ejected in the {@link #getGroupRouter()
+   * group router}.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   */
+  @Override
+  public void markDown(String nodeId, long duration, TimeUnit unit) {
+    Objects.requireNonNull(nodeId);
+
+    memberRouters.values().forEach(memberRouter -> memberRouter.markDown(nodeId, duration, unit));
+  }
+
+  @Override
+  public void markUp(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    memberRouters.values().forEach(memberRouter -> memberRouter.markUp(nodeId));
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <G> the group type parameter
+   * @param <N> the type parameter
+   */
+  public static final class Builder<G extends Node<?>, N extends Node<?>> {
+
+    private final NodeRouter<G> groupRouter;
+    private final HashFunction hashFunction;
+    @Nullable private Function<? super N, String> groupOf;
+
+    private Builder(NodeRouter<G> groupRouter, HashFunction hashFunction) {
+      this.groupRouter = Objects.requireNonNull(groupRouter);
+      this.hashFunction = Objects.requireNonNull(hashFunction);
+    }
+
+    /**
+     * Group function builder, mapping a node to its group id so nodes can be added through {@link
+     * HierarchicalRouter#addNode(Node)}. Without it nodes are added to their member router.
+     *
+     * @param groupOf the group function
+     * @return the builder
+     */
+    public Builder<G, N> groupOf(Function<? super N, String> groupOf) {
+      this.groupOf = Objects.requireNonNull(groupOf);
+      return this;
+    }
+
+    /**
+     * Build hierarchical router.
+     *
+     * @return the hierarchical router
+     */
+    public HierarchicalRouter<G, N> build() {
+      return new HierarchicalRouter<>(groupRouter, hashFunction, groupOf);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import java.util.Objects;
+
+/**
+ * A frequently looked up key with its estimated lookup count, which counts the lookups of the
+ * current window in full, those of the previous window by half and so on.
+ */
+public final class HotKey {
+
+  private final String key;
+  private final long estimatedCount;
+
+  private HotKey(String key, long estimatedCount) {
+    this.key = key;
+    this.estimatedCount = estimatedCount;
+  }
+
+  /**
+   * Create hot key.
+   *
+   * @param key the key
+   * @param estimatedCount the estimated count
+   * @return the hot key
+   */
+  public static HotKey of(String key, long estimatedCount) {
+    Objects.requireNonNull(key);
+    return new HotKey(key, estimatedCount);
+  }
+
+  /**
+   * Gets key.
+   *
+   * @return the key
+   */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Gets the estimated lookup count, sampling taken into account.
+   *
+   * @return the estimated count
+   */
+  public long getEstimatedCount() {
+    return estimatedCount;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof HotKey)) {
+      return false;
+    }
+    HotKey that = (HotKey) o;
+    return estimatedCount == that.estimatedCount && key.equals(that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(key, estimatedCount);
+  }
+
+  @Override
+  public String toString() {
+    return "HotKey{" + "key='" + key + '\'' + ", estimatedCount=" + estimatedCount + '}';
+  }
+}
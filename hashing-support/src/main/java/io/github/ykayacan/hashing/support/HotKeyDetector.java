@@ -0,0 +1,442 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.checkerframework.checker.index.qual.Positive;
+
+/**
+ * Detects hot keys on the routing path.
+ *
+ * <p>One in {@code sampleRate} lookups is counted in a lock-free {@link CountMinSketch}. Keys whose
+ * estimate enters the top-k are kept in a heavy hitter list. Every window the sketch and the heavy
+ * hitters are halved, so keys that cooled down fade away, and the count of a key looked up at a
+ * steady rate settles at about twice its lookups per window. A {@link HotKeyListener} is therefore
+ * notified on its executor when a key's count reaches twice the threshold: within the window for
+ * a burst of that size, after a few windows for a steady rate above the threshold. A key still hot
+ * is notified again in every window. Unsampled lookups cost a single random number; the clock is
+ * only read on sampled ones. A sampled lookup of a heavy hitter updates its count in place without
+ * locking; only keys entering the list take the lock.
+ */
+public final class HotKeyDetector {
+
+  private final HashFunction hashFunction;
+  private final CountMinSketch sketch;
+  private final int sampleRate;
+  private final long sampledThreshold;
+  private final int topK;
+  private final long windowNanos;
+  private final HotKeyListener listener;
+  private final Executor listenerExecutor;
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+  private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+  /** Sampled counts of the heavy hitters, added and removed while holding {@code this}. */
+  private final Map<String, AtomicLong> heavyHitters = new ConcurrentHashMap<>();
+
+  /**
+   * Lowest sampled count that may enter the heavy hitters, set when the list fills up, on
+   * eviction and on decay. Counts only grow in between, so it never exceeds the lowest one.
+   */
+  private volatile long admissionFloor;
+
+  private HotKeyDetector(Builder builder) {
+    this.hashFunction = builder.hashFunction;
+    this.sketch = new CountMinSketch(builder.sketchDepth, builder.sketchWidth);
+    this.sampleRate = builder.sampleRate;
+    long sampledPerWindow = Math.max(1L, (builder.threshold + sampleRate - 1) / sampleRate);
+    // a steady count converges to twice the lookups per window
+    this.sampledThreshold =
+        sampledPerWindow > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : 2 * sampledPerWindow;
+    this.topK = builder.topK;
+    this.windowNanos = builder.windowNanos;
+    this.listener = builder.listener;
+    this.listenerExecutor = builder.listenerExecutor;
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param hashFunction the hash function keys are counted with
+   * @return the builder
+   */
+  public static Builder newBuilder(HashFunction hashFunction) {
+    return new Builder(hashFunction);
+  }
+
+  /**
+   * Records a lookup of a key.
+   *
+   * @param key the key
+   */
+  public void record(String key) {
+    if (isSampled()) {
+      count(hashFunction.hash(key), key);
+    }
+  }
+
+  /**
+   * Records a lookup of a long key, reported as its decimal String form.
+   *
+   * @param key the key
+   */
+  public void record(long key) {
+    if (isSampled()) {
+      count(hashFunction.hash(key), Long.toString(key));
+    }
+  }
+
+  /**
+   * Records a lookup of a precomputed key hash, reported as {@code #} followed by the hash in
+   * hexadecimal.
+   *
+   * @param hash the key hash
+   */
+  public void recordHash(long hash) {
+    if (isSampled()) {
+      count(hash, "#" + Long.toHexString(hash));
+    }
+  }
+
+  /** Records a typed key hashed by its key hasher, reported as its String form. */
+  void record(Object key, long hash) {
+    if (isSampled()) {
+      count(hash, String.valueOf(key));
+    }
+  }
+
+  private boolean isSampled() {
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  private void count(long hash, String key) {
+    maybeDecay();
+    long sampled = sketch.add(hash);
+    AtomicLong tracked = heavyHitters.get(key);
+    if (tracked != null) {
+      tracked.accumulateAndGet(sampled, Math::max);
+    } else if (sampled >= admissionFloor) {
+      admit(key, sampled);
+    }
+    if (sampled >= sampledThreshold && reported.add(key)) {
+      HotKey hotKey = HotKey.of(key, sampled * sampleRate);
+      listenerExecutor.execute(() -> listener.onHotKey(hotKey));
+    }
+  }
+
+  /**
+   * Returns the heavy hitters of the current window, hottest first.
+   *
+   * @return the heavy hitters
+   */
+  public synchronized List<HotKey> getHeavyHitters() {
+    List<HotKey> hotKeys = new ArrayList<>(heavyHitters.size());
+    heavyHitters.forEach(
+        (key, sampled) -> hotKeys.add(HotKey.of(key, sampled.get() * sampleRate)));
+    hotKeys.sort(Comparator.comparingLong(HotKey::getEstimatedCount).reversed());
+    return hotKeys;
+  }
+
+  /**
+   * Returns a router recording every lookup in this detector before delegating it.
+   *
+   * @param <N> the type parameter
+   * @param router the router
+   * @return the decorated router
+   */
+  public <N extends Node<?>> NodeRouter<N> decorate(NodeRouter<N> router) {
+    Objects.requireNonNull(router);
+    return new HotKeyRouter<>(router, this);
+  }
+
+  private synchronized void admit(String key, long sampled) {
+    AtomicLong tracked = heavyHitters.get(key);
+    if (tracked != null) {
+      tracked.accumulateAndGet(sampled, Math::max);
+      return;
+    }
+    if (sampled < admissionFloor) {
+      return;
+    }
+
+    heavyHitters.put(key, new AtomicLong(sampled));
+    if (heavyHitters.size() == topK) {
+      admissionFloor = lowestCount();
+    } else if (heavyHitters.size() > topK) {
+      // evict the coldest key, the next coldest one sets the floor
+      String coldest = null;
+      long lowest = Long.MAX_VALUE;
+      long nextLowest = Long.MAX_VALUE;
+      for (Map.Entry<String, AtomicLong> entry : heavyHitters.entrySet()) {
+        long count = entry.getValue().get();
+        if (count < lowest) {
+          nextLowest = lowest;
+          coldest = entry.getKey();
+          lowest = count;
+        } else if (count < nextLowest) {
+          nextLowest = count;
+        }
+      }
+      heavyHitters.remove(coldest);
+      admissionFloor = nextLowest;
+    }
+  }
+
+  private void maybeDecay() {
+    long now = System.nanoTime();
+    long start = windowStart.get();
+    if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+      sketch.decay();
+      reported.clear();
+      synchronized (this) {
+        heavyHitters.values().forEach(sampled -> sampled.updateAndGet(count -> count >>> 1));
+        heavyHitters.values().removeIf(sampled -> sampled.get() == 0);
+        admissionFloor = heavyHitters.size() < topK ? 0L : lowestCount();
+      }
+    }
+  }
+
+  /** Guarded by {@code this}. */
+  private long lowestCount() {
+    long lowest = Long.MAX_VALUE;
+    for (AtomicLong sampled : heavyHitters.values()) {
+      lowest = Math.min(lowest, sampled.get());
+    }
+    return lowest;
+  }
+
+  /** Router recording lookups in a detector. */
+  private static final class HotKeyRouter<N extends Node<?>> extends ForwardingNodeRouter<N> {
+
+    private final HotKeyDetector detector;
+
+    private HotKeyRouter(NodeRouter<N> delegate, HotKeyDetector detector) {
+      super(delegate);
+      this.detector = detector;
+    }
+
+    @Override
+    public Optional<N> getNode(String key) {
+      Objects.requireNonNull(key);
+
+      detector.record(key);
+      return delegate.getNode(key);
+    }
+
+    @Override
+    public Optional<N> getNode(long key) {
+      detector.record(key);
+      return delegate.getNode(key);
+    }
+
+    @Override
+    public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+      long hash = keyHasher.hash(key);
+      detector.record(key, hash);
+      return delegate.getNodeByHash(hash);
+    }
+
+    @Override
+    public Optional<N> getNodeByHash(long hash) {
+      detector.recordHash(hash);
+      return delegate.getNodeByHash(hash);
+    }
+
+    @Override
+    public int route(String key) {
+      Objects.requireNonNull(key);
+
+      detector.record(key);
+      return delegate.route(key);
+    }
+
+    @Override
+    public int route(long key) {
+      detector.record(key);
+      return delegate.route(key);
+    }
+
+    @Override
+    public <K> int route(K key, KeyHasher<? super K> keyHasher) {
+      long hash = keyHasher.hash(key);
+      detector.record(key, hash);
+      return delegate.routeByHash(hash);
+    }
+
+    @Override
+    public int routeByHash(long hash) {
+      detector.recordHash(hash);
+      return delegate.routeByHash(hash);
+    }
+
+    @Override
+    public List<N> getNodes(String key, int count) {
+      Objects.requireNonNull(key);
+
+      detector.record(key);
+      return delegate.getNodes(key, count);
+    }
+
+    @Override
+    public List<N> getNodesAcrossDomains(String key, int count) {
+      Objects.requireNonNull(key);
+
+      detector.record(key);
+      return delegate.getNodesAcrossDomains(key, count);
+    }
+  }
+
+  /** The type Builder. */
+  public static final class Builder {
+
+    private final HashFunction hashFunction;
+    private int sampleRate = 16;
+    private long threshold = 10_000L;
+    private long windowNanos = TimeUnit.SECONDS.toNanos(1);
+    private int topK = 32;
+    private int sketchDepth = 4;
+    private int sketchWidth = 4096;
+    private HotKeyListener listener = hotKey -> {};
+    private Executor listenerExecutor = ForkJoinPool.commonPool();
+
+    private Builder(HashFunction hashFunction) {
+      this.hashFunction = Objects.requireNonNull(hashFunction);
+    }
+
+    /**
+     * Sample rate builder, one in {@code sampleRate} lookups is counted. Defaults to 16.
+     *
+     * @param sampleRate the sample rate
+     * @return the builder
+     */
+    public Builder sampleRate(@Positive int sampleRate) {
+      if (sampleRate <= 0) {
+        throw new IllegalArgumentException("Illegal sample rate: " + sampleRate);
+      }
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * Threshold builder, the lookups per window making a key hot when sustained. Defaults to
+     * 10000.
+     *
+     * @param threshold the threshold
+     * @return the builder
+     */
+    public Builder threshold(@Positive long threshold) {
+      if (threshold <= 0) {
+        throw new IllegalArgumentException("Illegal threshold: " + threshold);
+      }
+      this.threshold = threshold;
+      return this;
+    }
+
+    /**
+     * Window builder, counts are halved every window. Defaults to 1 second.
+     *
+     * @param window the window
+     * @param unit the unit
+     * @return the builder
+     */
+    public Builder window(@Positive long window, TimeUnit unit) {
+      if (window <= 0) {
+        throw new IllegalArgumentException("Illegal window: " + window);
+      }
+      this.windowNanos = unit.toNanos(window);
+      return this;
+    }
+
+    /**
+     * Top-k builder, the size of the heavy hitter list. Defaults to 32.
+     *
+     * @param topK the top k
+     * @return the builder
+     */
+    public Builder topK(@Positive int topK) {
+      if (topK <= 0) {
+        throw new IllegalArgumentException("Illegal top k: " + topK);
+      }
+      this.topK = topK;
+      return this;
+    }
+
+    /**
+     * Sketch size builder. Defaults to 4 rows of 4096 counters.
+     *
+     * @param depth the number of rows
+     * @param width the number of counters per row
+     * @return the builder
+     */
+    public Builder sketchSize(@Positive int depth, @Positive int width) {
+      if (depth <= 0 || width <= 0) {
+        throw new IllegalArgumentException("Illegal sketch size: " + depth + "x" + width);
+      }
+      this.sketchDepth = depth;
+      this.sketchWidth = width;
+      return this;
+    }
+
+    /**
+     * Listener builder.
+     *
+     * @param listener the listener
+     * @return the builder
+     */
+    public Builder listener(HotKeyListener listener) {
+      this.listener = Objects.requireNonNull(listener);
+      return this;
+    }
+
+    /**
+     * Listener executor builder, the listener is called on it. Defaults to {@link
+     * ForkJoinPool#commonPool()}.
+     *
+     * @param listenerExecutor the listener executor
+     * @return the builder
+     */
+    public Builder listenerExecutor(Executor listenerExecutor) {
+      this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+      return this;
+    }
+
+    /**
+     * Build hot key detector.
+     *
+     * @return the hot key detector
+     */
+    public HotKeyDetector build() {
+      return new HotKeyDetector(this);
+    }
+  }
+}
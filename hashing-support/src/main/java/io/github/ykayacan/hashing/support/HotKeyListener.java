@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+/** Listener notified when a key crosses the hot key threshold of a {@link HotKeyDetector}. */
+@FunctionalInterface
+public interface HotKeyListener {
+
+  /**
+   * Called at most once per key and window, when its estimated lookup count reaches twice the
+   * threshold. A key staying hot is reported again in every following window.
+   *
+   * @param hotKey the hot key
+   */
+  void onHotKey(HotKey hotKey);
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashRange;
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeHealth;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.TopologyChange;
+import io.github.ykayacan.hashing.api.TopologyListener;
+import io.github.ykayacan.hashing.api.TopologyListeners;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Two-level router: keys are hashed into a fixed number of key groups and every key group is
+ * assigned to a node by a delegate router, such as a consistent or rendezvous router.
+ *
+ * <p>The key group of a hash is taken from its highest bits, so every key group is one contiguous
+ * {@link HashRange}. The key group to node table is an {@code int[]} of node ordinals and a lookup
+ * costs one hash plus one array read. After a topology change every key group is routed again
+ * through the delegate, only the entries that changed are rewritten and the new table is published
+ * atomically. Topology listeners receive one range per moved key group, so each group can be
+ * migrated as a unit; {@link #keyGroupOf(long)} of a range end gives its key group.
+ *
+ * <p>The table is built from the topology alone. A node marked down through this router keeps its
+ * key groups: their lookups go to the next healthy node the delegate ranks for the group and come
+ * back once the node is up. Mark nodes down on this router only, never on the delegate, whose
+ * routes the table is built from. Routed ordinals index this router's {@link #getNodeTable()},
+ * not the delegate's.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class KeyGroupRouter<N extends Node<?>> implements NodeRouter<N> {
+
+  private static final String KEY_GROUP_PREFIX = "key-group-";
+
+  private final NodeRouter<N> delegate;
+  private final HashFunction hashFunction;
+  private final int keyGroupBits;
+  private final TopologyListeners<N> listeners;
+  private final NodeOrdinals ordinals = NodeOrdinals.create();
+  private final NodeHealth health = NodeHealth.create();
+  private volatile Table<N> table;
+
+  private KeyGroupRouter(
+      NodeRouter<N> delegate, HashFunction hashFunction, int keyGroupBits, Executor executor) {
+    this.delegate = delegate;
+    this.hashFunction = hashFunction;
+    this.keyGroupBits = keyGroupBits;
+    this.listeners = TopologyListeners.create(executor);
+    int[] owners = new int[1 << keyGroupBits];
+    Arrays.fill(owners, -1);
+    this.table = new Table<>(owners, NodeTable.empty());
+    rebuild(TopologyChange.Type.ADDED, Collections.emptyList());
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <N> the type parameter
+   * @param delegate the router assigning key groups to nodes
+   * @param hashFunction the hash function keys are hashed with
+   * @return the builder
+   */
+  public static <N extends Node<?>> Builder<N> newBuilder(
+      NodeRouter<N> delegate, HashFunction hashFunction) {
+    return new Builder<>(delegate, hashFunction);
+  }
+
+  /**
+   * Gets key group count.
+   *
+   * @return the key group count
+   */
+  public int getKeyGroupCount() {
+    return 1 << keyGroupBits;
+  }
+
+  /**
+   * Returns the key group of a hash.
+   *
+   * @param hash the hash
+   * @return the key group
+   */
+  public int keyGroupOf(long hash) {
+    return (int) ((hash >> (Long.SIZE - keyGroupBits)) + (1L << (keyGroupBits - 1)));
+  }
+
+  /**
+   * Returns the key group of a key.
+   *
+   * @param key the key
+   * @return the key group
+   */
+  public int keyGroupOf(String key) {
+    return keyGroupOf(hashFunction.hash(key));
+  }
+
+  /**
+   * Returns the hashes of a key group.
+   *
+   * @param keyGroup the key group
+   * @param previousOwner the previous owner
+   * @param newOwner the new owner
+   * @return the hash range
+   */
+  private HashRange<N> rangeOf(int keyGroup, @Nullable N previousOwner, @Nullable N newOwner) {
+    int shift = Long.SIZE - keyGroupBits;
+    long first = (keyGroup - (1L << (keyGroupBits - 1))) << shift;
+    long last = first + (1L << shift) - 1;
+    return HashRange.of(first - 1, last, previousOwner, newOwner);
+  }
+
+  @Override
+  public Optional<N> getNode(String key) {
+    Objects.requireNonNull(key);
+
+    return Optional.ofNullable(nodeFor(keyGroupOf(key)));
+  }
+
+  @Override
+  public Optional<N> getNode(long key) {
+    return getNodeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(keyHasher);
+
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    return Optional.ofNullable(nodeFor(keyGroupOf(hash)));
+  }
+
+  /**
+   * Returns the current owner of a key group, or the node its lookups go to while the owner is
+   * down.
+   *
+   * @param keyGroup the key group
+   * @return the node
+   */
+  public Optional<N> getNodeForKeyGroup(int keyGroup) {
+    return Optional.ofNullable(nodeFor(keyGroup));
+  }
+
+  @Override
+  public int route(String key) {
+    Objects.requireNonNull(key);
+
+    return route(table, keyGroupOf(key));
+  }
+
+  @Override
+  public int route(long key) {
+    return routeByHash(hashFunction.hash(key));
+  }
+
+  @Override
+  public int routeByHash(long hash) {
+    return route(table, keyGroupOf(hash));
+  }
+
+  @Override
+  public int routeCandidates(String key, int[] ordinals) {
+    Objects.requireNonNull(key);
+
+    return routeCandidatesByHash(hashFunction.hash(key), ordinals);
+  }
+
+  @Override
+  public int routeCandidates(long key, int[] ordinals) {
+    return routeCandidatesByHash(hashFunction.hash(key), ordinals);
+  }
+
+  /**
+   * Fills {@code ordinals} with the healthy nodes the delegate ranks for the key group of the
+   * hash, the first being the one {@link #routeByHash(long)} returns. Ranking a key group asks the
+   * delegate for its nodes, so it allocates.
+   *
+   * @param hash the key hash
+   * @param ordinals the array to fill
+   * @return the number of ordinals filled
+   */
+  @Override
+  public int routeCandidatesByHash(long hash, int[] ordinals) {
+    Objects.requireNonNull(ordinals);
+
+    Table<N> current = table;
+    int keyGroup = keyGroupOf(hash);
+    int owner = current.owners[keyGroup];
+    if (ordinals.length == 0 || owner < 0) {
+      return 0;
+    }
+    boolean skipDown = health.hasDown();
+    int count = 0;
+    if (!skipDown || !health.isDown(owner)) {
+      ordinals[count++] = owner;
+    }
+    List<N> ranked =
+        delegate.getNodes(
+            KEY_GROUP_PREFIX + keyGroup,
+            skipDown ? current.nodes.getNodeCount() : ordinals.length);
+    for (N node : ranked) {
+      if (count == ordinals.length) {
+        break;
+      }
+      int ordinal = this.ordinals.ordinalOf(node.getNodeId());
+      if (ordinal >= 0 && ordinal != owner && (!skipDown || !health.isDown(ordinal))) {
+        ordinals[count++] = ordinal;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public NodeTable<N> getNodeTable() {
+    return table.nodes;
+  }
+
+  @Nullable
+  private N nodeFor(int keyGroup) {
+    Table<N> current = table;
+    int ordinal = route(current, keyGroup);
+    return ordinal < 0 ? null : current.nodes.get(ordinal);
+  }
+
+  /** Returns the ordinal of the owner of a key group, or of the next healthy node if it is down. */
+  private int route(Table<N> current, int keyGroup) {
+    int owner = current.owners[keyGroup];
+    if (owner < 0 || !health.hasDown() || !health.isDown(owner)) {
+      return owner;
+    }
+    for (N node :
+        delegate.getNodes(KEY_GROUP_PREFIX + keyGroup, current.nodes.getNodeCount())) {
+      int ordinal = ordinals.ordinalOf(node.getNodeId());
+      if (ordinal >= 0 && !health.isDown(ordinal)) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public synchronized void addNode(N node) {
+    Objects.requireNonNull(node);
+
+    delegate.addNode(node);
+    rebuild(TopologyChange.Type.ADDED, Collections.singletonList(node));
+  }
+
+  @Override
+  public synchronized void addNodes(Iterable<N> nodes) {
+    Objects.requireNonNull(nodes);
+
+    delegate.addNodes(nodes);
+    List<N> added = new ArrayList<>();
+    nodes.forEach(added::add);
+    rebuild(TopologyChange.Type.ADDED, added);
+  }
+
+  @Override
+  public synchronized void removeNode(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    List<N> removed = new ArrayList<>();
+    for (N node : table.nodes.getNodes()) {
+      if (node.getNodeId().equals(nodeId)) {
+        removed.add(node);
+      }
+    }
+    delegate.removeNode(nodeId);
+    rebuild(TopologyChange.Type.REMOVED, removed);
+    // a node taking the ordinal later starts up
+    health.markUp(ordinals.release(nodeId));
+  }
+
+  /**
+   * Marks a node down in this router only, the delegate keeps routing to it. Key groups stay
+   * assigned to the node; lookups skip it until it is up.
+   *
+   * @param nodeId the node id
+   * @param duration the duration
+   * @param unit the unit
+   */
+  @Override
+  public void markDown(String nodeId, long duration, TimeUnit unit) {
+    Objects.requireNonNull(nodeId);
+    Objects.requireNonNull(unit);
+
+    int ordinal = ordinals.ordinalOf(nodeId);
+    if (ordinal >= 0) {
+      health.markDown(ordinal, duration, unit);
+    }
+  }
+
+  @Override
+  public void markUp(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    health.markUp(ordinals.ordinalOf(nodeId));
+  }
+
+  /**
+   * Registers a listener called after each committed add or remove with one range per key group
+   * that changed owner. Listeners are called on the executor given to the {@link Builder}.
+   *
+   * @param listener the listener
+   */
+  @Override
+  public void addTopologyListener(TopologyListener<N> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeTopologyListener(TopologyListener<N> listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Routes every key group through the delegate and publishes the changed entries. Node ordinals
+   * are kept across rebuilds, so only the entries of moved key groups are rewritten. Nodes are
+   * equal by id, so a node added again with a new payload keeps its key groups and only the
+   * instance in the node table is replaced. Health is ignored here and applied on lookup, as
+   * nodes are only marked down in this router.
+   */
+  private void rebuild(TopologyChange.Type type, List<N> nodes) {
+    Table<N> current = table;
+    int[] owners = current.owners.clone();
+    Map<String, N> tableNodes = new HashMap<>();
+    current.nodes.getNodes().forEach(node -> tableNodes.put(node.getNodeId(), node));
+    for (N node : nodes) {
+      if (type == TopologyChange.Type.REMOVED) {
+        tableNodes.remove(node.getNodeId());
+      } else {
+        ordinals.assign(node.getNodeId());
+        tableNodes.put(node.getNodeId(), node);
+      }
+    }
+
+    List<HashRange<N>> moved = new ArrayList<>();
+    for (int keyGroup = 0; keyGroup < owners.length; keyGroup++) {
+      N previous = current.ownerOf(keyGroup);
+      N owner = delegate.getNode(KEY_GROUP_PREFIX + keyGroup).orElse(null);
+      int ordinal = -1;
+      if (owner != null) {
+        ordinal = ordinals.ordinalOf(owner.getNodeId());
+        if (ordinal < 0) {
+          // a node the delegate had before this router was built
+          ordinal = ordinals.assign(owner.getNodeId());
+          tableNodes.put(owner.getNodeId(), owner);
+        }
+      }
+      owners[keyGroup] = ordinal;
+      if (!Objects.equals(previous, owner)) {
+        moved.add(rangeOf(keyGroup, previous, owner));
+      }
+    }
+    table = new Table<>(owners, NodeTable.of(tableNodes.values(), ordinals));
+
+    if (!listeners.isEmpty() && (!nodes.isEmpty() || !moved.isEmpty())) {
+      listeners.fire(TopologyChange.of(type, nodes, moved));
+    }
+  }
+
+  /** An immutable key group to node ordinal table. */
+  private static final class Table<N extends Node<?>> {
+    private final int[] owners;
+    private final NodeTable<N> nodes;
+
+    private Table(int[] owners, NodeTable<N> nodes) {
+      this.owners = owners;
+      this.nodes = nodes;
+    }
+
+    @Nullable
+    private N ownerOf(int keyGroup) {
+      int ordinal = owners[keyGroup];
+      return ordinal < 0 ? null : nodes.get(ordinal);
+    }
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <N> the type parameter
+   */
+  public static final class Builder<N extends Node<?>> {
+
+    private final NodeRouter<N> delegate;
+    private final HashFunction hashFunction;
+    private int keyGroupBits = 14;
+    private Executor listenerExecutor = ForkJoinPool.commonPool();
+
+    private Builder(NodeRouter<N> delegate, HashFunction hashFunction) {
+      this.delegate = Objects.requireNonNull(delegate);
+      this.hashFunction = Objects.requireNonNull(hashFunction);
+    }
+
+    /**
+     * Key group bits builder, there are {@code 2^keyGroupBits} key groups. Defaults to 14.
+     *
+     * @param keyGroupBits the key group bits, between 1 and 24
+     * @return the builder
+     */
+    public Builder<N> keyGroupBits(int keyGroupBits) {
+      if (keyGroupBits < 1 || keyGroupBits > 24) {
+        throw new IllegalArgumentException("Illegal key group bits: " + keyGroupBits);
+      }
+      this.keyGroupBits = keyGroupBits;
+      return this;
+    }
+
+    /**
+     * Listener executor builder, topology listeners are called on it. Defaults to {@link
+     * ForkJoinPool#commonPool()}.
+     *
+     * @param listenerExecutor the listener executor
+     * @return the builder
+     */
+    public Builder<N> listenerExecutor(Executor listenerExecutor) {
+      this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+      return this;
+    }
+
+    /**
+     * Build key group router.
+     *
+     * @return the key group router
+     */
+    public KeyGroupRouter<N> build() {
+      return new KeyGroupRouter<>(delegate, hashFunction, keyGroupBits, listenerExecutor);
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Router decorator applying the power of d choices: the node the delegate routes a key to and
+ * the next {@code d - 1} distinct nodes in the delegate's order for the key, its ring successors
+ * or next ranked nodes, are the candidates, and the one with the lowest {@link LoadCounters load}
+ * gets the key.
+ *
+ * <p>The delegate's choice keeps the key unless another candidate's load is lower by more than
+ * the tolerance, a fraction of the first choice's load. Keys therefore stay on their home node
+ * while loads are close and only spill over from persistently hotter nodes. Candidates are the
+ * ordinals of the delegate's {@link NodeTable}, which index the padded counters directly, so
+ * picking among them reads {@code d} counters; routing by long key or hash allocates nothing.
+ *
+ * <p>The delegate must support ordinal routing. Nodes should be added and removed through this
+ * router, which resets the counter of a removed node before its ordinal can be reused.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class LoadAwareRouter<N extends Node<?>> extends ForwardingNodeRouter<N> {
+
+  private final LoadCounters loadCounters;
+  private final int choices;
+  private final double tolerance;
+
+  /** The candidate ordinals of the current lookup. */
+  private final ThreadLocal<int[]> candidates;
+
+  /** Serializes topology changes with counter resets. */
+  private final Object mutationLock = new Object();
+
+  private LoadAwareRouter(
+      NodeRouter<N> delegate, LoadCounters loadCounters, int choices, double tolerance) {
+    super(delegate);
+    this.loadCounters = loadCounters;
+    this.choices = choices;
+    this.tolerance = tolerance;
+    this.candidates = ThreadLocal.withInitial(() -> new int[choices]);
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <N> the type parameter
+   * @param delegate the router providing the candidates
+   * @param loadCounters the load counters updated by the application
+   * @return the builder
+   */
+  public static <N extends Node<?>> Builder<N> newBuilder(
+      NodeRouter<N> delegate, LoadCounters loadCounters) {
+    return new Builder<>(delegate, loadCounters);
+  }
+
+  @Override
+  public Optional<N> getNode(String key) {
+    Objects.requireNonNull(key);
+
+    if (choices == 1) {
+      return delegate.getNode(key);
+    }
+    N node = delegate.getNodeTable().get(route(key));
+    return node != null ? Optional.of(node) : delegate.getNode(key);
+  }
+
+  @Override
+  public Optional<N> getNode(long key) {
+    if (choices == 1) {
+      return delegate.getNode(key);
+    }
+    N node = delegate.getNodeTable().get(route(key));
+    return node != null ? Optional.of(node) : delegate.getNode(key);
+  }
+
+  @Override
+  public Optional<N> getNodeByHash(long hash) {
+    if (choices == 1) {
+      return delegate.getNodeByHash(hash);
+    }
+    N node = delegate.getNodeTable().get(routeByHash(hash));
+    return node != null ? Optional.of(node) : delegate.getNodeByHash(hash);
+  }
+
+  @Override
+  public <K> Optional<N> getNode(K key, KeyHasher<? super K> keyHasher) {
+    return getNodeByHash(keyHasher.hash(key));
+  }
+
+  @Override
+  public int route(String key) {
+    Objects.requireNonNull(key);
+
+    if (choices == 1) {
+      return delegate.route(key);
+    }
+    int[] ordinals = candidates.get();
+    return choose(ordinals, delegate.routeCandidates(key, ordinals));
+  }
+
+  @Override
+  public int route(long key) {
+    if (choices == 1) {
+      return delegate.route(key);
+    }
+    int[] ordinals = candidates.get();
+    return choose(ordinals, delegate.routeCandidates(key, ordinals));
+  }
+
+  @Override
+  public <K> int route(K key, KeyHasher<? super K> keyHasher) {
+    return routeByHash(keyHasher.hash(key));
+  }
+
+  @Override
+  public int routeByHash(long hash) {
+    if (choices == 1) {
+      return delegate.routeByHash(hash);
+    }
+    int[] ordinals = candidates.get();
+    return choose(ordinals, delegate.routeCandidatesByHash(hash, ordinals));
+  }
+
+  private int choose(int[] ordinals, int count) {
+    if (count == 0) {
+      return -1;
+    }
+
+    // the first candidate is the home node, the others are distinct from it
+    int choice = ordinals[0];
+    long load = loadCounters.get(choice);
+    for (int i = 1; i < count; i++) {
+      long candidateLoad = loadCounters.get(ordinals[i]);
+      if (candidateLoad + (long) (load * tolerance) < load) {
+        choice = ordinals[i];
+        load = candidateLoad;
+      }
+    }
+    return choice;
+  }
+
+  @Override
+  public void addNode(N node) {
+    synchronized (mutationLock) {
+      delegate.addNode(node);
+    }
+  }
+
+  @Override
+  public void addNodes(Iterable<N> nodes) {
+    synchronized (mutationLock) {
+      delegate.addNodes(nodes);
+    }
+  }
+
+  /**
+   * Removes a node and resets its load counter.
+   *
+   * @param nodeId nodeId to be removed
+   */
+  @Override
+  public void removeNode(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    synchronized (mutationLock) {
+      int ordinal = ordinalOf(delegate.getNodeTable(), nodeId);
+      delegate.removeNode(nodeId);
+      loadCounters.reset(ordinal);
+    }
+  }
+
+  /**
+   * Removes nodes and resets their load counters.
+   *
+   * @param nodeIds nodeIds to be removed
+   */
+  @Override
+  public void removeNodes(Iterable<String> nodeIds) {
+    Objects.requireNonNull(nodeIds);
+
+    synchronized (mutationLock) {
+      NodeTable<N> table = delegate.getNodeTable();
+      List<Integer> ordinals = new ArrayList<>();
+      nodeIds.forEach(nodeId -> ordinals.add(ordinalOf(table, nodeId)));
+      delegate.removeNodes(nodeIds);
+      ordinals.forEach(loadCounters::reset);
+    }
+  }
+
+  private static int ordinalOf(NodeTable<?> table, String nodeId) {
+    for (int ordinal = 0; ordinal < table.size(); ordinal++) {
+      Node<?> node = table.get(ordinal);
+      if (node != null && node.getNodeId().equals(nodeId)) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <N> the type parameter
+   */
+  public static final class Builder<N extends Node<?>> {
+
+    private final NodeRouter<N> delegate;
+    private final LoadCounters loadCounters;
+    private int choices = 2;
+    private double tolerance = 0.25;
+
+    private Builder(NodeRouter<N> delegate, LoadCounters loadCounters) {
+      this.delegate = Objects.requireNonNull(delegate);
+      this.loadCounters = Objects.requireNonNull(loadCounters);
+    }
+
+    /**
+     * Choices builder, the number of candidates compared per key. Defaults to 2.
+     *
+     * @param choices the choices
+     * @return the builder
+     */
+    public Builder<N> choices(int choices) {
+      if (choices < 1) {
+        throw new IllegalArgumentException("Illegal choices: " + choices);
+      }
+      this.choices = choices;
+      return this;
+    }
+
+    /**
+     * Tolerance builder, the fraction of the first choice's load another candidate must be below
+     * it to take the key. Defaults to 0.25.
+     *
+     * @param tolerance the tolerance
+     * @return the builder
+     */
+    public Builder<N> tolerance(double tolerance) {
+      if (!(tolerance >= 0)) {
+        throw new IllegalArgumentException("Illegal tolerance: " + tolerance);
+      }
+      this.tolerance = tolerance;
+      return this;
+    }
+
+    /**
+     * Build load aware router.
+     *
+     * @return the load aware router
+     * @throws UnsupportedOperationException if the delegate does not support ordinal routing
+     */
+    public LoadAwareRouter<N> build() {
+      delegate.getNodeTable();
+      return new LoadAwareRouter<>(delegate, loadCounters, choices, tolerance);
+    }
+  }
+}
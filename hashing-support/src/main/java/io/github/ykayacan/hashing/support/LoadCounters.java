@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per node load counters updated by the application, such as in-flight requests or queue depth,
+ * and read by {@link LoadAwareRouter} on every lookup.
+ *
+ * <p>Counters are indexed by the node ordinals of the router, see {@link
+ * io.github.ykayacan.hashing.api.NodeTable}, and spaced {@value #STRIDE} longs apart, so each one
+ * sits on its own pair of cache lines and updates to one node never invalidate the counter of
+ * another. Counters live in fixed size chunks which are never copied, growing only appends chunks.
+ * Reads and updates are lock-free and allocation-free once an ordinal has a counter.
+ *
+ * <p>Every counter carries the generation of its ordinal next to the load. {@link #reset(int)}
+ * starts a new generation when the node leaves, and the ticket {@link #increment(int)} returns
+ * only decrements the generation it was taken in, so a request finishing after its node was
+ * removed never decrements the counter of a node reusing the ordinal.
+ */
+public final class LoadCounters {
+
+  /** Longs between two counters, 128 bytes to cover adjacent cache line prefetching. */
+  static final int STRIDE = 16;
+
+  private static final int CHUNK_BITS = 6;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /** The low bits of a counter hold the load, the high bits the generation. */
+  private static final int LOAD_BITS = 40;
+
+  private static final long LOAD_MASK = (1L << LOAD_BITS) - 1;
+
+  private static final long GENERATION_MASK = (1L << (Long.SIZE - LOAD_BITS)) - 1;
+
+  /** Replaced under {@code this} when growing. */
+  private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+  private LoadCounters() {}
+
+  /**
+   * Create load counters.
+   *
+   * @return the load counters
+   */
+  public static LoadCounters create() {
+    return new LoadCounters();
+  }
+
+  /**
+   * Gets the load of an ordinal, 0 if it has no counter.
+   *
+   * @param ordinal the node ordinal
+   * @return the load
+   */
+  public long get(int ordinal) {
+    if (ordinal < 0) {
+      return 0;
+    }
+    AtomicLongArray[] current = chunks;
+    int chunk = ordinal >>> CHUNK_BITS;
+    return chunk < current.length ? current[chunk].get(indexOf(ordinal)) & LOAD_MASK : 0;
+  }
+
+  /**
+   * Increments the load of an ordinal, creating its counter if needed.
+   *
+   * @param ordinal the node ordinal
+   * @return the ticket to pass to {@link #decrement(long)}
+   * @throws IllegalArgumentException if the ordinal is negative
+   */
+  public long increment(int ordinal) {
+    checkOrdinal(ordinal);
+
+    long counter = counterChunk(ordinal).getAndIncrement(indexOf(ordinal));
+    return ((counter >>> LOAD_BITS) << Integer.SIZE) | ordinal;
+  }
+
+  /**
+   * Decrements the load an {@link #increment(int)} added. Tickets taken before the ordinal was
+   * {@link #reset(int) reset} are ignored and the load never goes below 0.
+   *
+   * @param ticket the ticket
+   */
+  public void decrement(long ticket) {
+    int ordinal = (int) ticket;
+    if (ordinal < 0) {
+      return;
+    }
+    long generation = ticket >>> Integer.SIZE;
+    AtomicLongArray counters = counterChunk(ordinal);
+    int index = indexOf(ordinal);
+    long counter;
+    do {
+      counter = counters.get(index);
+      if (counter >>> LOAD_BITS != generation || (counter & LOAD_MASK) == 0) {
+        return;
+      }
+    } while (!counters.compareAndSet(index, counter, counter - 1));
+  }
+
+  /**
+   * Sets the load of an ordinal, creating its counter if needed.
+   *
+   * @param ordinal the node ordinal
+   * @param load the load
+   * @throws IllegalArgumentException if the ordinal or the load is negative
+   */
+  public void set(int ordinal, long load) {
+    checkOrdinal(ordinal);
+    if (load < 0 || load > LOAD_MASK) {
+      throw new IllegalArgumentException("Illegal load: " + load);
+    }
+
+    AtomicLongArray counters = counterChunk(ordinal);
+    int index = indexOf(ordinal);
+    long counter;
+    do {
+      counter = counters.get(index);
+    } while (!counters.compareAndSet(index, counter, (counter & ~LOAD_MASK) | load));
+  }
+
+  /**
+   * Clears the load of an ordinal and starts a new generation, such as after its node left the
+   * cluster.
+   *
+   * @param ordinal the node ordinal
+   */
+  public void reset(int ordinal) {
+    if (ordinal < 0) {
+      return;
+    }
+
+    AtomicLongArray counters = counterChunk(ordinal);
+    int index = indexOf(ordinal);
+    long counter;
+    do {
+      counter = counters.get(index);
+    } while (!counters.compareAndSet(
+        index, counter, (((counter >>> LOAD_BITS) + 1) & GENERATION_MASK) << LOAD_BITS));
+  }
+
+  private static void checkOrdinal(int ordinal) {
+    if (ordinal < 0) {
+      throw new IllegalArgumentException("Illegal ordinal: " + ordinal);
+    }
+  }
+
+  private AtomicLongArray counterChunk(int ordinal) {
+    AtomicLongArray[] current = chunks;
+    int chunk = ordinal >>> CHUNK_BITS;
+    return chunk < current.length ? current[chunk] : grow(chunk);
+  }
+
+  private synchronized AtomicLongArray grow(int chunk) {
+    if (chunk >= chunks.length) {
+      AtomicLongArray[] grown = Arrays.copyOf(chunks, chunk + 1);
+      for (int i = chunks.length; i < grown.length; i++) {
+        // one extra stride keeps the first counter off the array header
+        grown[i] = new AtomicLongArray((CHUNK_SIZE + 1) * STRIDE);
+      }
+      chunks = grown;
+    }
+    return chunks[chunk];
+  }
+
+  private static int indexOf(int ordinal) {
+    return ((ordinal & (CHUNK_SIZE - 1)) + 1) * STRIDE;
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.TopologyChange;
+import io.github.ykayacan.hashing.api.TopologyListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A streaming stage that routes keyed items through a {@link NodeRouter} and emits per-node
+ * micro-batches to a {@link BatchSink}.
+ *
+ * <p>A batch is flushed when it reaches the maximum batch size or when its first item has waited
+ * for the maximum linger time. Every node accepts a bounded number of pending items, buffered or
+ * in flight; {@link #submit(Object)} blocks and {@link #offer(Object)} fails while the node an
+ * item routes to is saturated, so backpressure from slow nodes reaches producers without holding
+ * back items for other nodes.
+ *
+ * <p>Buffers are kept per node id. Items are sent with the node instance the router returned last,
+ * so a node added again with a new payload gets its batches with that payload. When the router
+ * publishes topology changes, the buffer of a removed node is flushed and dropped; otherwise it is
+ * kept until the batcher is closed. Items accepted while the batcher closes are sent at once.
+ *
+ * <p>A sink failing on a linger flush is reported to the error handler, as no producer is there
+ * to get the exception; by default that is the uncaught exception handler of the linger thread.
+ *
+ * @param <T> the item type
+ * @param <N> the {@link Node} parameter
+ */
+public final class NodeBatcher<T, N extends Node<?>> implements AutoCloseable {
+
+  private final NodeRouter<N> router;
+  private final Function<? super T, String> keyFunction;
+  private final BatchSink<N, T> sink;
+  private final int maxBatchSize;
+  private final long maxLingerNanos;
+  private final int maxPendingItems;
+  private final ScheduledExecutorService scheduler;
+  private final boolean ownsScheduler;
+  private final Consumer<? super RuntimeException> errorHandler;
+  private final ConcurrentMap<String, NodeBuffer> buffers = new ConcurrentHashMap<>();
+  private final TopologyListener<N> topologyListener = this::onTopologyChange;
+  private final boolean listening;
+  private volatile boolean closed;
+
+  private NodeBatcher(Builder<T, N> builder) {
+    this.router = builder.router;
+    this.keyFunction = builder.keyFunction;
+    this.sink = builder.sink;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.maxLingerNanos = builder.maxLingerNanos;
+    this.maxPendingItems = builder.maxPendingItems;
+    this.ownsScheduler = builder.scheduler == null;
+    this.scheduler = ownsScheduler ? createScheduler() : builder.scheduler;
+    this.errorHandler = builder.errorHandler;
+    this.listening = addTopologyListener(router, topologyListener);
+  }
+
+  private static <N extends Node<?>> boolean addTopologyListener(
+      NodeRouter<N> router, TopologyListener<N> listener) {
+    try {
+      router.addTopologyListener(listener);
+      return true;
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  private static void reportUncaught(RuntimeException e) {
+    Thread thread = Thread.currentThread();
+    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    return Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, "node-batcher-linger");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <T> the item type
+   * @param <N> the type parameter
+   * @param router the router items are routed with
+   * @param keyFunction extracts the routing key of an item
+   * @param sink the sink batches are emitted to
+   * @return the builder
+   */
+  public static <T, N extends Node<?>> Builder<T, N> newBuilder(
+      NodeRouter<N> router, Function<? super T, String> keyFunction, BatchSink<N, T> sink) {
+    return new Builder<>(router, keyFunction, sink);
+  }
+
+  /**
+   * Routes an item and appends it to the batch of its node, waiting while that node is saturated.
+   *
+   * @param item the item
+   * @throws InterruptedException if interrupted while waiting for capacity
+   * @throws IllegalStateException if the batcher is closed or no node is available for the item
+   */
+  public void submit(T item) throws InterruptedException {
+    NodeBuffer buffer = bufferFor(item);
+    buffer.permits.acquire();
+    buffer.add(item);
+  }
+
+  /**
+   * Routes an item and appends it to the batch of its node, unless that node is saturated.
+   *
+   * @param item the item
+   * @return true if the item was accepted
+   * @throws IllegalStateException if the batcher is closed or no node is available for the item
+   */
+  public boolean offer(T item) {
+    NodeBuffer buffer = bufferFor(item);
+    if (!buffer.permits.tryAcquire()) {
+      return false;
+    }
+    buffer.add(item);
+    return true;
+  }
+
+  /** Emits all buffered items without waiting for batches to fill up. */
+  public void flush() {
+    buffers.values().forEach(NodeBuffer::flush);
+  }
+
+  /** Flushes buffered items and stops accepting new ones. */
+  @Override
+  public void close() {
+    closed = true;
+    if (listening) {
+      router.removeTopologyListener(topologyListener);
+    }
+    flush();
+    if (ownsScheduler) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  private NodeBuffer bufferFor(T item) {
+    Objects.requireNonNull(item);
+
+    if (closed) {
+      throw new IllegalStateException("Batcher is closed");
+    }
+
+    String key = keyFunction.apply(item);
+    N node =
+        router
+            .getNode(key)
+            .orElseThrow(() -> new IllegalStateException("No node available for key: " + key));
+    NodeBuffer buffer = buffers.computeIfAbsent(node.getNodeId(), id -> new NodeBuffer(node));
+    buffer.node = node;
+    return buffer;
+  }
+
+  private void onTopologyChange(TopologyChange<N> change) {
+    for (N node : change.getNodes()) {
+      if (change.getType() == TopologyChange.Type.REMOVED) {
+        NodeBuffer buffer = buffers.remove(node.getNodeId());
+        if (buffer != null) {
+          buffer.retire();
+        }
+      } else {
+        NodeBuffer buffer = buffers.get(node.getNodeId());
+        if (buffer != null) {
+          buffer.node = node;
+        }
+      }
+    }
+  }
+
+  /** Items buffered for one node. */
+  private final class NodeBuffer {
+    /** The node instance last routed to, batches are sent with it. */
+    private volatile N node;
+
+    private final Semaphore permits = new Semaphore(maxPendingItems);
+
+    /** Guarded by {@code this}. */
+    private List<T> items = new ArrayList<>();
+
+    /** Guarded by {@code this}. */
+    @Nullable private ScheduledFuture<?> lingerTask;
+
+    /** Guarded by {@code this}, set once the node is removed and the buffer dropped. */
+    private boolean retired;
+
+    private NodeBuffer(N node) {
+      this.node = node;
+    }
+
+    private void add(T item) {
+      List<T> batch = null;
+      synchronized (this) {
+        items.add(item);
+        // a batcher closing may have shut its scheduler down and flushed this buffer already
+        if (retired || closed || items.size() >= maxBatchSize) {
+          batch = take();
+        } else if (items.size() == 1) {
+          List<T> current = items;
+          lingerTask =
+              scheduler.schedule(() -> linger(current), maxLingerNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+      send(batch);
+    }
+
+    private void flush() {
+      List<T> batch;
+      synchronized (this) {
+        batch = items.isEmpty() ? null : take();
+      }
+      send(batch);
+    }
+
+    /** Flushes the buffer for good, items added by racing producers are sent at once. */
+    private void retire() {
+      synchronized (this) {
+        retired = true;
+      }
+      flush();
+    }
+
+    /** Flushes the batch a linger task was scheduled for, if it was not flushed since. */
+    private void linger(List<T> lingering) {
+      List<T> batch;
+      synchronized (this) {
+        batch = items == lingering && !items.isEmpty() ? take() : null;
+      }
+      try {
+        send(batch);
+      } catch (RuntimeException e) {
+        errorHandler.accept(e);
+      }
+    }
+
+    private List<T> take() {
+      List<T> batch = items;
+      items = new ArrayList<>(Math.min(maxBatchSize, 16));
+      if (lingerTask != null) {
+        lingerTask.cancel(false);
+        lingerTask = null;
+      }
+      return batch;
+    }
+
+    private void send(@Nullable List<T> batch) {
+      if (batch == null) {
+        return;
+      }
+
+      int size = batch.size();
+      CompletionStage<?> stage;
+      try {
+        stage = sink.send(node, Collections.unmodifiableList(batch));
+      } catch (RuntimeException e) {
+        permits.release(size);
+        throw e;
+      }
+      stage.whenComplete((result, error) -> permits.release(size));
+    }
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <T> the item type
+   * @param <N> the type parameter
+   */
+  public static final class Builder<T, N extends Node<?>> {
+
+    private final NodeRouter<N> router;
+    private final Function<? super T, String> keyFunction;
+    private final BatchSink<N, T> sink;
+    private int maxBatchSize = 100;
+    private long maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private int maxPendingItems = 10_000;
+    @Nullable private ScheduledExecutorService scheduler;
+    private Consumer<? super RuntimeException> errorHandler = NodeBatcher::reportUncaught;
+
+    private Builder(
+        NodeRouter<N> router, Function<? super T, String> keyFunction, BatchSink<N, T> sink) {
+      this.router = Objects.requireNonNull(router);
+      this.keyFunction = Objects.requireNonNull(keyFunction);
+      this.sink = Objects.requireNonNull(sink);
+    }
+
+    /**
+     * Max batch size builder. Defaults to 100.
+     *
+     * @param maxBatchSize the max batch size
+     * @return the builder
+     */
+    public Builder<T, N> maxBatchSize(@Positive int maxBatchSize) {
+      if (maxBatchSize <= 0) {
+        throw new IllegalArgumentException("Illegal max batch size: " + maxBatchSize);
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Max linger builder, the longest time an item is buffered. Defaults to 5 milliseconds.
+     *
+     * @param maxLinger the max linger
+     * @param unit the unit
+     * @return the builder
+     */
+    public Builder<T, N> maxLinger(long maxLinger, TimeUnit unit) {
+      if (maxLinger < 0) {
+        throw new IllegalArgumentException("Illegal max linger: " + maxLinger);
+      }
+      this.maxLingerNanos = unit.toNanos(maxLinger);
+      return this;
+    }
+
+    /**
+     * Max pending items builder, the number of items buffered or in flight for a node before
+     * producers are pushed back. Defaults to 10000.
+     *
+     * @param maxPendingItems the max pending items per node
+     * @return the builder
+     */
+    public Builder<T, N> maxPendingItems(@Positive int maxPendingItems) {
+      if (maxPendingItems <= 0) {
+        throw new IllegalArgumentException("Illegal max pending items: " + maxPendingItems);
+      }
+      this.maxPendingItems = maxPendingItems;
+      return this;
+    }
+
+    /**
+     * Scheduler builder, runs linger flushes. Defaults to a daemon thread owned by the batcher.
+     *
+     * @param scheduler the scheduler
+     * @return the builder
+     */
+    public Builder<T, N> scheduler(ScheduledExecutorService scheduler) {
+      this.scheduler = Objects.requireNonNull(scheduler);
+      return this;
+    }
+
+    /**
+     * Error handler builder, gets the exceptions the sink throws on linger flushes. Defaults to the
+     * uncaught exception handler of the linger thread.
+     *
+     * @param errorHandler the error handler
+     * @return the builder
+     */
+    public Builder<T, N> errorHandler(Consumer<? super RuntimeException> errorHandler) {
+      this.errorHandler = Objects.requireNonNull(errorHandler);
+      return this;
+    }
+
+    /**
+     * Build node batcher.
+     *
+     * @return the node batcher
+     */
+    public NodeBatcher<T, N> build() {
+      return new NodeBatcher<>(this);
+    }
+  }
+}
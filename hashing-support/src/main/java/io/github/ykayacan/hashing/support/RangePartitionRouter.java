@@ -0,0 +1,559 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import io.github.ykayacan.hashing.api.Node;
+import io.github.ykayacan.hashing.api.NodeOrdinals;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Order preserving router: sorted split points cut the key space, ordered by {@link
+ * String#compareTo(String)}, into contiguous partitions and every partition is owned by one node.
+ * Keys are not hashed, so a range scan only touches the nodes {@link #nodesForRange(String,
+ * String)} returns.
+ *
+ * <p>A lookup is a binary search over the split points of an immutable table, {@code O(log
+ * splits)}, and {@link #route(String)} allocates nothing. The application reports the load or size
+ * of keys with {@link #record(String, long)}; {@link #rebalance()} then splits every partition
+ * whose load reached the split threshold at the median of its sampled keys, handing the upper half
+ * to the least loaded node, and merges neighbours whose combined load is below the merge
+ * threshold. Loads and samples cover the time since a partition was created: they survive node
+ * additions and removals, and restart only for the partitions a split or merge produces. Two
+ * neighbours are not merged while neither has recorded a key, so fresh partitions are not merged
+ * back before they saw any traffic.
+ *
+ * <p>A new router has no partitions. The first node owns the whole key space and later nodes get
+ * ranges through splits. A node with the id of a node in the router replaces it and keeps its
+ * partitions. The partitions of a removed node go to their lower neighbour.
+ *
+ * @param <N> the {@link Node} parameter
+ */
+public final class RangePartitionRouter<N extends Node<?>> implements NodeRouter<N> {
+
+  private static final int SAMPLE_SIZE = 16;
+
+  private final long splitLoad;
+  private final long mergeLoad;
+  private final NodeOrdinals ordinals = NodeOrdinals.create();
+
+  /** Guarded by {@code mutationLock}. */
+  private final List<N> nodes = new ArrayList<>();
+
+  private final Object mutationLock = new Object();
+  private volatile Partitions partitions = Partitions.EMPTY;
+  private volatile NodeTable<N> nodeTable = NodeTable.empty();
+
+  private RangePartitionRouter(long splitLoad, long mergeLoad) {
+    this.splitLoad = splitLoad;
+    this.mergeLoad = mergeLoad;
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param <N> the type parameter
+   * @return the builder
+   */
+  public static <N extends Node<?>> Builder<N> newBuilder() {
+    return new Builder<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <N> N cast(@Nullable Object node) {
+    return (N) node;
+  }
+
+  @Override
+  public Optional<N> getNode(String key) {
+    Objects.requireNonNull(key);
+
+    Partitions current = partitions;
+    return current.isEmpty()
+        ? Optional.empty()
+        : Optional.of(cast(current.owners[current.indexOf(key)]));
+  }
+
+  @Override
+  public int route(String key) {
+    Objects.requireNonNull(key);
+
+    Partitions current = partitions;
+    return current.isEmpty() ? -1 : current.ordinals[current.indexOf(key)];
+  }
+
+  @Override
+  public NodeTable<N> getNodeTable() {
+    return nodeTable;
+  }
+
+  /**
+   * Returns the owners of the partitions overlapping {@code [from, to)}, in key order.
+   *
+   * @param from the first key, inclusive
+   * @param to the last key, exclusive
+   * @return the distinct nodes
+   * @throws IllegalArgumentException if {@code from} is greater than {@code to}
+   */
+  public List<N> nodesForRange(String from, String to) {
+    Objects.requireNonNull(from);
+    Objects.requireNonNull(to);
+    if (from.compareTo(to) > 0) {
+      throw new IllegalArgumentException("Illegal range: " + from + ", " + to);
+    }
+
+    Partitions current = partitions;
+    if (current.isEmpty() || from.equals(to)) {
+      return Collections.emptyList();
+    }
+    int last = Arrays.binarySearch(current.splits, to);
+    // a range ending at a split point does not reach the partition starting there
+    last = last >= 0 ? last : -last - 1;
+    List<N> owners = new ArrayList<>();
+    for (int index = current.indexOf(from); index <= last; index++) {
+      N owner = cast(current.owners[index]);
+      if (!owners.contains(owner)) {
+        owners.add(owner);
+      }
+    }
+    return owners;
+  }
+
+  /**
+   * Returns the split points, each the first key of a partition.
+   *
+   * @return the split points in key order
+   */
+  public List<String> getSplitPoints() {
+    return Collections.unmodifiableList(Arrays.asList(partitions.splits));
+  }
+
+  /**
+   * Records the load or size of a key against its partition, and samples the key as a split
+   * point candidate.
+   *
+   * @param key the key
+   * @param amount the load or size
+   */
+  public void record(String key, long amount) {
+    Objects.requireNonNull(key);
+
+    Partitions current = partitions;
+    if (current.isEmpty()) {
+      return;
+    }
+    int index = current.indexOf(key);
+    current.loads.addAndGet(index, amount);
+    long seen = current.counts.incrementAndGet(index);
+    long slot = seen <= SAMPLE_SIZE ? seen - 1 : ThreadLocalRandom.current().nextLong(seen);
+    if (slot < SAMPLE_SIZE) {
+      current.samples.set(index * SAMPLE_SIZE + (int) slot, key);
+    }
+  }
+
+  /**
+   * Splits the partition containing {@code splitKey} at it and hands the upper half to a node.
+   *
+   * @param splitKey the first key of the new partition
+   * @param nodeId the node owning the new partition
+   * @throws IllegalArgumentException if the node is unknown or {@code splitKey} is a split point
+   */
+  public void split(String splitKey, String nodeId) {
+    Objects.requireNonNull(splitKey);
+    Objects.requireNonNull(nodeId);
+
+    synchronized (mutationLock) {
+      N owner = findNode(nodeId);
+      if (owner == null) {
+        throw new IllegalArgumentException("Unknown node: " + nodeId);
+      }
+      Layout layout = new Layout(partitions);
+      if (layout.owners.isEmpty() || !layout.split(splitKey, owner)) {
+        throw new IllegalArgumentException("Illegal split point: " + splitKey);
+      }
+      publish(layout);
+    }
+  }
+
+  /**
+   * Removes a split point, merging its partition into the lower one and its owner.
+   *
+   * @param splitKey the split point
+   * @throws IllegalArgumentException if {@code splitKey} is not a split point
+   */
+  public void merge(String splitKey) {
+    Objects.requireNonNull(splitKey);
+
+    synchronized (mutationLock) {
+      Layout layout = new Layout(partitions);
+      int index = layout.splits.indexOf(splitKey);
+      if (index < 0) {
+        throw new IllegalArgumentException("Not a split point: " + splitKey);
+      }
+      layout.merge(index);
+      publish(layout);
+    }
+  }
+
+  /**
+   * Splits the partitions whose recorded load reached the split threshold and merges neighbours
+   * whose combined load is below the merge threshold.
+   *
+   * @return true if the partitions changed
+   */
+  public boolean rebalance() {
+    synchronized (mutationLock) {
+      Partitions current = partitions;
+      if (current.isEmpty()) {
+        return false;
+      }
+      Layout layout = new Layout(current);
+      boolean changed = false;
+
+      Map<N, Long> nodeLoads = new HashMap<>();
+      nodes.forEach(node -> nodeLoads.put(node, 0L));
+      for (int index = 0; index < layout.owners.size(); index++) {
+        nodeLoads.merge(layout.owners.get(index), layout.loads.get(index), Long::sum);
+      }
+
+      for (int index = layout.owners.size() - 1; index >= 0 && nodes.size() > 1; index--) {
+        long load = layout.loads.get(index);
+        String median = load >= splitLoad ? median(current, index) : null;
+        N owner = layout.owners.get(index);
+        N target = leastLoaded(nodeLoads, owner);
+        if (median != null && layout.split(median, target)) {
+          nodeLoads.merge(owner, -load / 2, Long::sum);
+          nodeLoads.merge(target, load / 2, Long::sum);
+          changed = true;
+        }
+      }
+
+      for (int index = layout.splits.size() - 1; index >= 0; index--) {
+        boolean observed = layout.counts.get(index) + layout.counts.get(index + 1) > 0;
+        if (observed && layout.loads.get(index) + layout.loads.get(index + 1) < mergeLoad) {
+          layout.merge(index);
+          changed = true;
+        }
+      }
+
+      if (changed) {
+        publish(layout);
+      }
+      return changed;
+    }
+  }
+
+  private static @Nullable String median(Partitions partitions, int index) {
+    List<String> keys = new ArrayList<>(SAMPLE_SIZE);
+    for (int slot = 0; slot < SAMPLE_SIZE; slot++) {
+      String key = partitions.samples.get(index * SAMPLE_SIZE + slot);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    if (keys.isEmpty()) {
+      return null;
+    }
+    Collections.sort(keys);
+    return keys.get(keys.size() / 2);
+  }
+
+  private N leastLoaded(Map<N, Long> nodeLoads, N owner) {
+    N target = owner;
+    long targetLoad = Long.MAX_VALUE;
+    for (N node : nodes) {
+      long load = nodeLoads.get(node);
+      if (!node.equals(owner) && load < targetLoad) {
+        target = node;
+        targetLoad = load;
+      }
+    }
+    return target;
+  }
+
+  private @Nullable N findNode(String nodeId) {
+    for (N node : nodes) {
+      if (node.getNodeId().equals(nodeId)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void addNode(N node) {
+    Objects.requireNonNull(node);
+
+    synchronized (mutationLock) {
+      N previous = findNode(node.getNodeId());
+      Layout layout = new Layout(partitions);
+      if (previous != null) {
+        nodes.set(nodes.indexOf(previous), node);
+        layout.owners.replaceAll(owner -> owner.equals(previous) ? node : owner);
+      } else {
+        ordinals.assign(node.getNodeId());
+        nodes.add(node);
+        if (layout.owners.isEmpty()) {
+          layout.add(node);
+        }
+      }
+      publish(layout);
+    }
+  }
+
+  @Override
+  public void removeNode(String nodeId) {
+    Objects.requireNonNull(nodeId);
+
+    synchronized (mutationLock) {
+      N removed = findNode(nodeId);
+      if (removed == null) {
+        return;
+      }
+      nodes.remove(removed);
+      ordinals.release(nodeId);
+
+      Layout layout = new Layout(partitions);
+      if (nodes.isEmpty()) {
+        layout.clear();
+      } else {
+        // the lowest partitions go to the first other owner, the others to their lower neighbour
+        N heir = nodes.get(0);
+        for (N owner : layout.owners) {
+          if (!owner.equals(removed)) {
+            heir = owner;
+            break;
+          }
+        }
+        for (int index = 0; index < layout.owners.size(); index++) {
+          if (layout.owners.get(index).equals(removed)) {
+            layout.owners.set(index, heir);
+          } else {
+            heir = layout.owners.get(index);
+          }
+        }
+      }
+      publish(layout);
+    }
+  }
+
+  /**
+   * Merges neighbours with the same owner and publishes the partitions and the node table. The
+   * counters of partitions the layout left unchanged are carried over.
+   */
+  private void publish(Layout layout) {
+    for (int index = layout.splits.size() - 1; index >= 0; index--) {
+      if (layout.owners.get(index).equals(layout.owners.get(index + 1))) {
+        layout.merge(index);
+      }
+    }
+
+    int count = layout.owners.size();
+    int[] ownerOrdinals = new int[count];
+    for (int index = 0; index < count; index++) {
+      ownerOrdinals[index] = ordinals.ordinalOf(layout.owners.get(index).getNodeId());
+    }
+    Partitions published =
+        new Partitions(
+            layout.splits.toArray(new String[0]), layout.owners.toArray(), ownerOrdinals);
+    for (int index = 0; index < count; index++) {
+      int source = layout.sources.get(index);
+      if (source >= 0) {
+        published.carry(index, layout.origin, source);
+      }
+    }
+    nodeTable = NodeTable.of(nodes, ordinals);
+    partitions = published;
+  }
+
+  /** Mutable copy of the partitions, used under the mutation lock. */
+  private final class Layout {
+    private final Partitions origin;
+    private final List<String> splits;
+    private final List<N> owners = new ArrayList<>();
+    private final List<Long> loads = new ArrayList<>();
+    private final List<Long> counts = new ArrayList<>();
+
+    /** Index of the unchanged partition in {@code origin}, -1 once split or merged. */
+    private final List<Integer> sources = new ArrayList<>();
+
+    private Layout(Partitions partitions) {
+      this.origin = partitions;
+      this.splits = new ArrayList<>(Arrays.asList(partitions.splits));
+      for (int index = 0; index < partitions.owners.length; index++) {
+        owners.add(cast(partitions.owners[index]));
+        loads.add(partitions.loads.get(index));
+        counts.add(partitions.counts.get(index));
+        sources.add(index);
+      }
+    }
+
+    /** Adds the partition covering the whole key space. */
+    private void add(N owner) {
+      owners.add(owner);
+      loads.add(0L);
+      counts.add(0L);
+      sources.add(-1);
+    }
+
+    private void clear() {
+      splits.clear();
+      owners.clear();
+      loads.clear();
+      counts.clear();
+      sources.clear();
+    }
+
+    /** Splits at a key that is strictly inside a partition. */
+    private boolean split(String splitKey, N owner) {
+      int position = Collections.binarySearch(splits, splitKey);
+      if (position >= 0) {
+        return false;
+      }
+      int index = -position - 1;
+      long load = loads.get(index);
+      splits.add(index, splitKey);
+      owners.add(index + 1, owner);
+      loads.set(index, load - load / 2);
+      loads.add(index + 1, load / 2);
+      counts.set(index, 0L);
+      counts.add(index + 1, 0L);
+      sources.set(index, -1);
+      sources.add(index + 1, -1);
+      return true;
+    }
+
+    /** Removes the split point at {@code index}, merging its partition into the lower one. */
+    private void merge(int index) {
+      splits.remove(index);
+      owners.remove(index + 1);
+      loads.set(index, loads.get(index) + loads.remove(index + 1));
+      counts.set(index, counts.get(index) + counts.remove(index + 1));
+      sources.set(index, -1);
+      sources.remove(index + 1);
+    }
+  }
+
+  /** Immutable split point table with the counters of its partitions. */
+  private static final class Partitions {
+    private static final Partitions EMPTY =
+        new Partitions(new String[0], new Object[0], new int[0]);
+
+    private final String[] splits;
+    private final Object[] owners;
+    private final int[] ordinals;
+    private final AtomicLongArray loads;
+    private final AtomicLongArray counts;
+    private final AtomicReferenceArray<String> samples;
+
+    private Partitions(String[] splits, Object[] owners, int[] ordinals) {
+      this.splits = splits;
+      this.owners = owners;
+      this.ordinals = ordinals;
+      this.loads = new AtomicLongArray(owners.length);
+      this.counts = new AtomicLongArray(owners.length);
+      this.samples = new AtomicReferenceArray<>(owners.length * SAMPLE_SIZE);
+    }
+
+    private boolean isEmpty() {
+      return owners.length == 0;
+    }
+
+    /** Copies the counters and samples of partition {@code source} of {@code from}. */
+    private void carry(int index, Partitions from, int source) {
+      loads.set(index, from.loads.get(source));
+      counts.set(index, from.counts.get(source));
+      for (int slot = 0; slot < SAMPLE_SIZE; slot++) {
+        samples.set(index * SAMPLE_SIZE + slot, from.samples.get(source * SAMPLE_SIZE + slot));
+      }
+    }
+
+    /** Partition {@code i} covers {@code [splits[i - 1], splits[i])}. */
+    private int indexOf(String key) {
+      int position = Arrays.binarySearch(splits, key);
+      return position >= 0 ? position + 1 : -position - 1;
+    }
+  }
+
+  /**
+   * The type Builder.
+   *
+   * @param <N> the type parameter
+   */
+  public static final class Builder<N extends Node<?>> {
+
+    private long splitLoad = Long.MAX_VALUE;
+    private long mergeLoad = 0;
+
+    private Builder() {}
+
+    /**
+     * Split load builder, the recorded load from which {@link RangePartitionRouter#rebalance()}
+     * splits a partition. Defaults to never splitting.
+     *
+     * @param splitLoad the split load
+     * @return the builder
+     */
+    public Builder<N> splitLoad(long splitLoad) {
+      if (splitLoad <= 0) {
+        throw new IllegalArgumentException("Illegal split load: " + splitLoad);
+      }
+      this.splitLoad = splitLoad;
+      return this;
+    }
+
+    /**
+     * Merge load builder, the combined recorded load below which {@link
+     * RangePartitionRouter#rebalance()} merges two neighbours. Defaults to never merging.
+     *
+     * @param mergeLoad the merge load
+     * @return the builder
+     */
+    public Builder<N> mergeLoad(long mergeLoad) {
+      if (mergeLoad < 0) {
+        throw new IllegalArgumentException("Illegal merge load: " + mergeLoad);
+      }
+      this.mergeLoad = mergeLoad;
+      return this;
+    }
+
+    /**
+     * Build range partition router.
+     *
+     * @return the range partition router
+     * @throws IllegalStateException if the merge load is not below the split load
+     */
+    public RangePartitionRouter<N> build() {
+      if (mergeLoad >= splitLoad) {
+        throw new IllegalStateException("Merge load must be below split load");
+      }
+      return new RangePartitionRouter<>(splitLoad, mergeLoad);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.rendezvous.RendezvousNodeRouter;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import io.github.ykayacan.hashing.rendezvous.strategy.DefaultRendezvousStrategy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class HashQualityReportTest {
+
+  /** Ensure a good hash function passes every test and a widened String hash code fails them */
+  @Test
+  void testGoodAndPoorHashFunctions() {
+    HashQualityReport good = createReport(MurMurHashFunction.create());
+    assertEquals(Collections.singleton(16), good.getKeysPerSecond().keySet());
+    assertTrue(good.getKeysPerSecond().get(16) > 0);
+    assertTrue(good.getMeanAvalancheBias() < 0.1);
+    assertTrue(good.getWorstAvalancheBias() < 0.4);
+    assertTrue(good.getWorstBitCorrelation() < 0.1);
+    assertTrue(Math.abs(good.getHighBitsChiSquare()) < 5);
+    assertTrue(Math.abs(good.getLowBitsChiSquare()) < 5);
+    assertTrue(good.getRingBalance().get("consistent") < 0.3);
+    assertTrue(good.getRingBalance().get("rendezvous") < 0.1);
+    assertTrue(good.getRingBalance().get("hierarchical") < 0.3);
+
+    HashQualityReport poor = createReport(key -> (long) key.hashCode());
+    assertTrue(poor.getMeanAvalancheBias() > 0.3);
+    assertTrue(poor.getWorstBitCorrelation() > 0.9);
+    assertTrue(poor.getHighBitsChiSquare() > 100);
+    assertTrue(poor.getRingBalance().get("consistent") > 1);
+    assertTrue(poor.getRingBalance().get("rendezvous") > 1);
+    assertTrue(poor.toString().contains("ring balance, consistent"));
+  }
+
+  @Test
+  void testIllegalSettings() {
+    HashQualityReport.Builder builder = HashQualityReport.newBuilder(MurMurHashFunction.create());
+    assertThrows(IllegalArgumentException.class, () -> builder.bucketCount(1000));
+    assertThrows(IllegalArgumentException.class, () -> builder.keyLengths(-1));
+    assertThrows(IllegalArgumentException.class, () -> builder.keyLengths(16, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            builder
+                .keyLengths()
+                .avalanche(1, 1)
+                .router("empty", hashFunction -> ConsistentNodeRouter.create(1, hashFunction))
+                .build());
+  }
+
+  private static HashQualityReport createReport(HashFunction hashFunction) {
+    return HashQualityReport.newBuilder(hashFunction)
+        .keyLengths(16)
+        .measurementTime(10, TimeUnit.MILLISECONDS)
+        .avalanche(8, 500)
+        .keyCount(20000)
+        .router(
+            "consistent",
+            function -> {
+              NodeRouter<PhysicalNode<?>> router = ConsistentNodeRouter.create(100, function);
+              IntStream.range(0, 10).forEach(i -> router.addNode(PhysicalNode.of("node" + i)));
+              return router;
+            })
+        .router(
+            "rendezvous",
+            function -> {
+              NodeRouter<WeightedNode<?>> router =
+                  RendezvousNodeRouter.create(function, DefaultRendezvousStrategy.create());
+              IntStream.range(0, 10).forEach(i -> router.addNode(WeightedNode.of("node" + i)));
+              return router;
+            })
+        .router(
+            "hierarchical",
+            function -> {
+              HierarchicalRouter<PhysicalNode<?>, PhysicalNode<?>> router =
+                  HierarchicalRouter.<PhysicalNode<?>, PhysicalNode<?>>newBuilder(
+                          ConsistentNodeRouter.create(100, function), function)
+                      .build();
+              for (int group = 0; group < 2; group++) {
+                NodeRouter<PhysicalNode<?>> members = ConsistentNodeRouter.create(100, function);
+                for (int i = 0; i < 5; i++) {
+                  members.addNode(PhysicalNode.of("g" + group + "-node" + i));
+                }
+                router.addGroup(PhysicalNode.of("g" + group), members);
+              }
+              return router;
+            })
+        .build();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import io.github.ykayacan.hashing.rendezvous.RendezvousNodeRouter;
+import io.github.ykayacan.hashing.rendezvous.WeightedNode;
+import io.github.ykayacan.hashing.rendezvous.strategy.WeightedRendezvousStrategy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class HierarchicalRouterTest {
+
+  private static final int KEY_COUNT = 20000;
+
+  @Test
+  void testEmpty() {
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router = createRouter();
+    assertFalse(router.getNode("key").isPresent());
+
+    router.addGroup(WeightedNode.newBuilder("g0").weight(1).build(), createMemberRouter());
+    assertFalse(router.getNode("key").isPresent());
+  }
+
+  /** Ensure groups get keys by weight and members of a group share its keys evenly */
+  @Test
+  void testIndependentLevels() {
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router = createRouter(1, 2, 1);
+
+    Map<String, Integer> groupCounts = new HashMap<>();
+    Map<String, Integer> nodeCounts = new HashMap<>();
+    for (int i = 0; i < KEY_COUNT; i++) {
+      String nodeId = router.getNode("key" + i).get().getNodeId();
+      assertEquals(router.getNode("key" + i), router.getNode("key" + i));
+      groupCounts.merge(groupOf(nodeId), 1, Integer::sum);
+      nodeCounts.merge(nodeId, 1, Integer::sum);
+    }
+
+    assertShare(KEY_COUNT / 4, groupCounts.get("g0"));
+    assertShare(KEY_COUNT / 2, groupCounts.get("g1"));
+    assertShare(KEY_COUNT / 4, groupCounts.get("g2"));
+    assertEquals(15, nodeCounts.size());
+    nodeCounts.forEach(
+        (nodeId, count) -> assertShare(groupCounts.get(groupOf(nodeId)) / 5, count));
+  }
+
+  /** Ensure topology changes in one group do not move keys of the other groups */
+  @Test
+  void testChurnIsolation() {
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router = createRouter(1, 1, 1);
+    Map<String, String> before = route(router);
+
+    router.addNode(PhysicalNode.of("g0-node5"));
+    router.removeNode("g0-node0");
+    Map<String, String> after = route(router);
+    before.forEach(
+        (key, nodeId) -> {
+          if (!groupOf(nodeId).equals("g0")) {
+            assertEquals(nodeId, after.get(key));
+          } else {
+            assertEquals("g0", groupOf(after.get(key)));
+          }
+        });
+
+    router.removeGroup("g0");
+    assertFalse(router.getMemberRouter("g0").isPresent());
+    route(router).forEach(
+        (key, nodeId) -> {
+          if (!groupOf(after.get(key)).equals("g0")) {
+            assertEquals(after.get(key), nodeId);
+          }
+        });
+  }
+
+  @Test
+  void testNested() {
+    NodeRouter<WeightedNode<?>> regionRouter =
+        RendezvousNodeRouter.create(
+            MurMurHashFunction.create(), WeightedRendezvousStrategy.create());
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router =
+        HierarchicalRouter.<WeightedNode<?>, PhysicalNode<?>>newBuilder(
+                regionRouter, MurMurHashFunction.create())
+            .build();
+    router.addGroup(WeightedNode.newBuilder("r0").weight(1).build(), createRouter(1, 1));
+    router.addGroup(WeightedNode.newBuilder("r1").weight(1).build(), createRouter(1, 1));
+
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < KEY_COUNT; i++) {
+      counts.merge(router.getNode("key" + i).get().getNodeId(), 1, Integer::sum);
+    }
+    // both regions have the same node ids, so each id gets a quarter of the keys
+    assertEquals(10, counts.size());
+    counts.values().forEach(count -> assertShare(KEY_COUNT / 10, count));
+  }
+
+  @Test
+  void testIllegalNodes() {
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router =
+        HierarchicalRouter.<WeightedNode<?>, PhysicalNode<?>>newBuilder(
+                createGroupRouter(), MurMurHashFunction.create())
+            .build();
+    assertThrows(
+        UnsupportedOperationException.class, () -> router.addNode(PhysicalNode.of("g0-node0")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> createRouter(1).addNode(PhysicalNode.of("g1-node0")));
+  }
+
+  private static void assertShare(int expected, int actual) {
+    assertTrue(Math.abs(actual - expected) < expected * 0.15, expected + " " + actual);
+  }
+
+  private static String groupOf(String nodeId) {
+    return nodeId.substring(0, nodeId.indexOf('-'));
+  }
+
+  private static Map<String, String> route(NodeRouter<PhysicalNode<?>> router) {
+    Map<String, String> nodeIds = new HashMap<>();
+    for (int i = 0; i < KEY_COUNT; i++) {
+      nodeIds.put("key" + i, router.getNode("key" + i).get().getNodeId());
+    }
+    return nodeIds;
+  }
+
+  private static HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> createRouter(
+      int... groupWeights) {
+    HierarchicalRouter<WeightedNode<?>, PhysicalNode<?>> router =
+        HierarchicalRouter.<WeightedNode<?>, PhysicalNode<?>>newBuilder(
+                createGroupRouter(), MurMurHashFunction.create())
+            .groupOf(node -> groupOf(node.getNodeId()))
+            .build();
+    for (int group = 0; group < groupWeights.length; group++) {
+      String groupId = "g" + group;
+      NodeRouter<PhysicalNode<?>> memberRouter = createMemberRouter();
+      IntStream.range(0, 5)
+          .forEach(i -> memberRouter.addNode(PhysicalNode.of(groupId + "-node" + i)));
+      router.addGroup(
+          WeightedNode.newBuilder(groupId).weight(groupWeights[group]).build(), memberRouter);
+    }
+    return router;
+  }
+
+  private static NodeRouter<WeightedNode<?>> createGroupRouter() {
+    return RendezvousNodeRouter.create(
+        MurMurHashFunction.create(), WeightedRendezvousStrategy.create());
+  }
+
+  private static NodeRouter<PhysicalNode<?>> createMemberRouter() {
+    return ConsistentNodeRouter.create(1000, MurMurHashFunction.create());
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class HotKeyDetectorTest {
+
+  /** Ensure a viral key is reported once and leads the heavy hitters */
+  @Test
+  void testDetectsHotKey() {
+    List<HotKey> hotKeys = new ArrayList<>();
+    HotKeyDetector detector =
+        HotKeyDetector.newBuilder(MurMurHashFunction.create())
+            .sampleRate(1)
+            .threshold(1000)
+            .window(1, TimeUnit.HOURS)
+            .topK(4)
+            .listener(hotKeys::add)
+            .listenerExecutor(Runnable::run)
+            .build();
+    NodeRouter<PhysicalNode<?>> router =
+        detector.decorate(
+            ConsistentNodeRouter.create(
+                Collections.singletonList(PhysicalNode.of("node1")),
+                15,
+                MurMurHashFunction.create()));
+
+    for (int i = 0; i < 20000; i++) {
+      router.getNode(i % 4 == 0 ? "viral" : "key" + i);
+    }
+
+    assertEquals(1, hotKeys.size());
+    assertEquals("viral", hotKeys.get(0).getKey());
+    assertTrue(hotKeys.get(0).getEstimatedCount() >= 1000);
+
+    List<HotKey> heavyHitters = detector.getHeavyHitters();
+    assertTrue(heavyHitters.size() <= 4);
+    assertEquals("viral", heavyHitters.get(0).getKey());
+    assertTrue(heavyHitters.get(0).getEstimatedCount() >= 5000);
+  }
+
+  /** Ensure a key is reported once its count reaches twice the per window threshold */
+  @Test
+  void testThreshold() {
+    List<HotKey> hotKeys = new ArrayList<>();
+    HotKeyDetector detector =
+        HotKeyDetector.newBuilder(MurMurHashFunction.create())
+            .sampleRate(1)
+            .threshold(1000)
+            .window(1, TimeUnit.HOURS)
+            .listener(hotKeys::add)
+            .listenerExecutor(Runnable::run)
+            .build();
+
+    for (int i = 0; i < 1999; i++) {
+      detector.record("key");
+    }
+    assertTrue(hotKeys.isEmpty());
+    detector.record("key");
+    assertEquals(Collections.singletonList(HotKey.of("key", 2000)), hotKeys);
+  }
+
+  /** Ensure lookups by long key, typed key and hash are recorded too */
+  @Test
+  void testRecordsHashRoutedKeys() {
+    HotKeyDetector detector =
+        HotKeyDetector.newBuilder(MurMurHashFunction.create())
+            .sampleRate(1)
+            .window(1, TimeUnit.HOURS)
+            .build();
+    NodeRouter<PhysicalNode<?>> router =
+        detector.decorate(
+            ConsistentNodeRouter.create(
+                Collections.singletonList(PhysicalNode.of("node1")),
+                15,
+                MurMurHashFunction.create()));
+    KeyHasher<Integer> keyHasher = key -> key * 31L;
+
+    for (int i = 0; i < 10; i++) {
+      router.getNode(42L);
+      router.route(7, keyHasher);
+      router.getNodeByHash(255L);
+    }
+    router.getNode(8, keyHasher);
+
+    Map<String, Long> counts = new HashMap<>();
+    detector
+        .getHeavyHitters()
+        .forEach(hotKey -> counts.put(hotKey.getKey(), hotKey.getEstimatedCount()));
+    assertEquals(Long.valueOf(10), counts.get("42"));
+    assertEquals(Long.valueOf(10), counts.get("7"));
+    assertEquals(Long.valueOf(10), counts.get("#ff"));
+    assertEquals(Long.valueOf(1), counts.get("8"));
+  }
+
+  /** Ensure the coldest heavy hitter makes room for a hotter key */
+  @Test
+  void testEvictsColdestKey() {
+    HotKeyDetector detector =
+        HotKeyDetector.newBuilder(MurMurHashFunction.create())
+            .sampleRate(1)
+            .window(1, TimeUnit.HOURS)
+            .topK(2)
+            .build();
+
+    for (int i = 0; i < 30; i++) {
+      detector.record("a");
+      if (i < 20) {
+        detector.record("b");
+      }
+      if (i < 10) {
+        detector.record("c");
+      }
+    }
+    assertEquals(
+        Arrays.asList(HotKey.of("a", 30), HotKey.of("b", 20)), detector.getHeavyHitters());
+
+    for (int i = 0; i < 30; i++) {
+      detector.record("c");
+    }
+    assertEquals(
+        Arrays.asList(HotKey.of("c", 40), HotKey.of("a", 30)), detector.getHeavyHitters());
+  }
+
+  /** Ensure counts fade away once a window has passed */
+  @Test
+  void testDecay() throws InterruptedException {
+    HotKeyDetector detector =
+        HotKeyDetector.newBuilder(MurMurHashFunction.create())
+            .sampleRate(1)
+            .window(10, TimeUnit.MILLISECONDS)
+            .build();
+
+    for (int i = 0; i < 100; i++) {
+      detector.record("key");
+    }
+    TimeUnit.MILLISECONDS.sleep(20);
+    detector.record("other");
+
+    assertEquals(50, detector.getHeavyHitters().get(0).getEstimatedCount());
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.HashFunction;
+import io.github.ykayacan.hashing.api.HashRange;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.api.TopologyChange;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class KeyGroupRouterTest {
+
+  @Test
+  void testEmpty() {
+    KeyGroupRouter<PhysicalNode<?>> router = createKeyGroupRouter(0);
+    assertFalse(router.getNode("key").isPresent());
+  }
+
+  /** Ensure every key group covers the hashes that map to it */
+  @Test
+  void testKeyGroupRanges() {
+    KeyGroupRouter<PhysicalNode<?>> router = createKeyGroupRouter(0);
+    assertEquals(1 << 10, router.getKeyGroupCount());
+    assertEquals(0, router.keyGroupOf(Long.MIN_VALUE));
+    assertEquals(router.getKeyGroupCount() - 1, router.keyGroupOf(Long.MAX_VALUE));
+
+    List<TopologyChange<PhysicalNode<?>>> changes = new ArrayList<>();
+    router.addTopologyListener(changes::add);
+    router.addNode(PhysicalNode.of("node0"));
+
+    List<HashRange<PhysicalNode<?>>> ranges = changes.get(0).getRanges();
+    assertEquals(router.getKeyGroupCount(), ranges.size());
+    for (int keyGroup = 0; keyGroup < ranges.size(); keyGroup++) {
+      HashRange<PhysicalNode<?>> range = ranges.get(keyGroup);
+      assertEquals(keyGroup, router.keyGroupOf(range.getEnd()));
+      assertEquals(keyGroup, router.keyGroupOf(range.getStart() + 1));
+      assertTrue(range.contains(range.getEnd()));
+      assertFalse(range.contains(range.getStart()));
+    }
+  }
+
+  /** Ensure only the key groups taken over by a new node move, and move back on removal */
+  @Test
+  void testMovedKeyGroups() {
+    KeyGroupRouter<PhysicalNode<?>> router = createKeyGroupRouter(10);
+    HashFunction hashFunction = MurMurHashFunction.create();
+    List<TopologyChange<PhysicalNode<?>>> changes = new ArrayList<>();
+    router.addTopologyListener(changes::add);
+
+    Map<String, PhysicalNode<?>> before = new HashMap<>();
+    IntStream.range(0, 10000).forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+    PhysicalNode<?> added = PhysicalNode.of("node10");
+    router.addNode(added);
+
+    List<HashRange<PhysicalNode<?>>> moved = changes.get(0).getRanges();
+    assertFalse(moved.isEmpty());
+    moved.forEach(range -> assertEquals(Optional.of(added), range.getNewOwner()));
+    before.forEach(
+        (key, owner) -> {
+          long hash = hashFunction.hash(key);
+          boolean inMovedGroup = moved.stream().anyMatch(range -> range.contains(hash));
+          assertEquals(inMovedGroup ? added : owner, router.getNode(key).get());
+        });
+
+    router.removeNode("node10");
+    assertEquals(TopologyChange.Type.REMOVED, changes.get(1).getType());
+    assertEquals(moved.size(), changes.get(1).getRanges().size());
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+  }
+
+  /** Ensure a node added again with a new payload keeps its key groups and gets the payload */
+  @Test
+  void testReplaceNode() {
+    KeyGroupRouter<PhysicalNode<String>> router =
+        KeyGroupRouter.newBuilder(
+                ConsistentNodeRouter.<PhysicalNode<String>>create(15, MurMurHashFunction.create()),
+                MurMurHashFunction.create())
+            .keyGroupBits(10)
+            .listenerExecutor(Runnable::run)
+            .build();
+    router.addNode(PhysicalNode.newBuilder("a").data("old").build());
+    router.addNode(PhysicalNode.newBuilder("b").data("old").build());
+    Map<String, String> owners = new HashMap<>();
+    IntStream.range(0, 1000)
+        .forEach(i -> owners.put("key" + i, router.getNode("key" + i).get().getNodeId()));
+
+    List<TopologyChange<PhysicalNode<String>>> changes = new ArrayList<>();
+    router.addTopologyListener(changes::add);
+    router.addNode(PhysicalNode.newBuilder("a").data("new").build());
+
+    assertTrue(changes.get(0).getRanges().isEmpty());
+    owners.forEach(
+        (key, owner) -> {
+          PhysicalNode<String> node = router.getNode(key).get();
+          assertEquals(owner, node.getNodeId());
+          assertEquals(owner.equals("a") ? "new" : "old", node.data());
+        });
+  }
+
+  /** Ensure a down node keeps its key groups across topology changes and gets them back when up */
+  @Test
+  void testMarkDown() {
+    KeyGroupRouter<PhysicalNode<?>> router = createKeyGroupRouter(10);
+    Map<String, PhysicalNode<?>> before = new HashMap<>();
+    IntStream.range(0, 10000).forEach(i -> before.put("key" + i, router.getNode("key" + i).get()));
+
+    router.markDown("node0", 1, TimeUnit.HOURS);
+    before.forEach(
+        (key, owner) -> {
+          PhysicalNode<?> node = router.getNode(key).get();
+          assertNotEquals("node0", node.getNodeId());
+          if (!owner.getNodeId().equals("node0")) {
+            assertEquals(owner, node);
+          }
+        });
+
+    // a rebuild while node0 is down must not hand its key groups over
+    router.addNode(PhysicalNode.of("node10"));
+    router.removeNode("node10");
+    router.markUp("node0");
+    before.forEach((key, owner) -> assertEquals(Optional.of(owner), router.getNode(key)));
+  }
+
+  /** Ensure ordinal routes and candidates match node lookups, also behind a load-aware router */
+  @Test
+  void testRoute() {
+    KeyGroupRouter<PhysicalNode<?>> router = createKeyGroupRouter(10);
+    HashFunction hashFunction = MurMurHashFunction.create();
+    router.markDown("node0", 1, TimeUnit.HOURS);
+
+    NodeTable<PhysicalNode<?>> table = router.getNodeTable();
+    assertEquals(10, table.getNodeCount());
+    int[] candidates = new int[3];
+    for (long i = 0; i < 1000; i++) {
+      PhysicalNode<?> node = router.getNode(Long.toString(i)).get();
+      assertEquals(node, table.get(router.route(Long.toString(i))));
+      assertEquals(router.getNode(i).get(), table.get(router.route(i)));
+      assertEquals(router.route(i), router.routeByHash(hashFunction.hash(i)));
+
+      assertEquals(3, router.routeCandidates(Long.toString(i), candidates));
+      assertEquals(router.route(Long.toString(i)), candidates[0]);
+      assertEquals(3, IntStream.of(candidates).distinct().count());
+      IntStream.of(candidates)
+          .forEach(ordinal -> assertNotEquals("node0", table.get(ordinal).getNodeId()));
+    }
+
+    LoadAwareRouter<PhysicalNode<?>> loadAware =
+        LoadAwareRouter.newBuilder(router, LoadCounters.create()).build();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(router.getNode("key" + i), loadAware.getNode("key" + i));
+    }
+  }
+
+  private KeyGroupRouter<PhysicalNode<?>> createKeyGroupRouter(int nodeCount) {
+    return KeyGroupRouter.newBuilder(
+            ConsistentNodeRouter.create(
+                IntStream.range(0, nodeCount)
+                    .<PhysicalNode<?>>mapToObj(index -> PhysicalNode.of("node" + index))
+                    .collect(Collectors.toList()),
+                15,
+                MurMurHashFunction.create()),
+            MurMurHashFunction.create())
+        .keyGroupBits(10)
+        .listenerExecutor(Runnable::run)
+        .build();
+  }
+}
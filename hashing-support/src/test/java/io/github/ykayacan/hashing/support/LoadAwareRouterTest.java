@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.KeyHasher;
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.api.NodeTable;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class LoadAwareRouterTest {
+
+  @Test
+  void testEmpty() {
+    LoadAwareRouter<PhysicalNode<?>> router =
+        LoadAwareRouter.newBuilder(createConsistentRouter(0), LoadCounters.create()).build();
+    assertFalse(router.getNode("key").isPresent());
+    assertEquals(-1, router.route("key"));
+  }
+
+  /** Ensure keys stay on the delegate's choice while loads are close */
+  @Test
+  void testKeyAffinity() {
+    NodeRouter<PhysicalNode<?>> delegate = createConsistentRouter(10);
+    LoadCounters loadCounters = LoadCounters.create();
+    LoadAwareRouter<PhysicalNode<?>> router =
+        LoadAwareRouter.newBuilder(delegate, loadCounters).build();
+
+    IntStream.range(0, 10).forEach(i -> loadCounters.set(ordinalOf(delegate, "node" + i), 100 + i));
+    KeyHasher<Integer> keyHasher = key -> key * 0x9E3779B97F4A7C15L;
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(delegate.getNode("key" + i), router.getNode("key" + i));
+      assertEquals(delegate.route("key" + i), router.route("key" + i));
+      assertEquals(delegate.getNode(i, keyHasher), router.getNode(i, keyHasher));
+      assertEquals(delegate.route(i, keyHasher), router.route(i, keyHasher));
+    }
+    assertEquals(delegate.getNodeTable(), router.getNodeTable());
+  }
+
+  /** Ensure keys of an overloaded node go to another candidate */
+  @Test
+  void testOverloadedNode() {
+    NodeRouter<PhysicalNode<?>> delegate = createConsistentRouter(10);
+    LoadCounters loadCounters = LoadCounters.create();
+    LoadAwareRouter<PhysicalNode<?>> router =
+        LoadAwareRouter.newBuilder(delegate, loadCounters).choices(2).tolerance(0.5).build();
+
+    int node0 = ordinalOf(delegate, "node0");
+    long[] tickets =
+        IntStream.range(0, 1000).mapToLong(i -> loadCounters.increment(node0)).toArray();
+    int moved = 0;
+    for (int i = 0; i < 1000; i++) {
+      String key = "key" + i;
+      PhysicalNode<?> node = router.getNode(key).get();
+      assertEquals(router.getNodeTable().get(router.route(key)), node);
+      if (!delegate.getNode(key).get().getNodeId().equals("node0")) {
+        assertEquals(delegate.getNode(key).get(), node);
+      } else {
+        // the other candidate is the successor, never node0 again
+        assertEquals(delegate.getNodes(key, 2).get(1), node);
+        moved++;
+      }
+    }
+    assertTrue(moved > 0);
+
+    LongStream.of(tickets).forEach(loadCounters::decrement);
+    assertEquals(0, loadCounters.get(node0));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(delegate.getNode("key" + i), router.getNode("key" + i));
+      assertEquals(delegate.getNode(i), router.getNode(i));
+    }
+  }
+
+  /** Ensure a removed node's counter is reset and its late decrements skip the next node */
+  @Test
+  void testRemovedNodeCounter() {
+    NodeRouter<PhysicalNode<?>> delegate = createConsistentRouter(3);
+    LoadCounters loadCounters = LoadCounters.create();
+    LoadAwareRouter<PhysicalNode<?>> router =
+        LoadAwareRouter.newBuilder(delegate, loadCounters).build();
+
+    int ordinal = ordinalOf(delegate, "node1");
+    long ticket = loadCounters.increment(ordinal);
+    loadCounters.increment(ordinal);
+    router.removeNode("node1");
+    assertEquals(0, loadCounters.get(ordinal));
+
+    router.addNode(PhysicalNode.of("node3"));
+    assertEquals(ordinal, ordinalOf(delegate, "node3"));
+    loadCounters.increment(ordinal);
+    loadCounters.decrement(ticket);
+    assertEquals(1, loadCounters.get(ordinal));
+  }
+
+  @Test
+  void testLoadCounters() {
+    LoadCounters loadCounters = LoadCounters.create();
+    assertEquals(0, loadCounters.get(0));
+    assertEquals(0, loadCounters.get(-1));
+
+    long ticket = loadCounters.increment(0);
+    loadCounters.decrement(ticket);
+    loadCounters.decrement(ticket);
+    assertEquals(0, loadCounters.get(0));
+
+    for (int i = 0; i < 200; i++) {
+      loadCounters.set(i, i);
+    }
+    loadCounters.increment(150);
+    for (int i = 0; i < 200; i++) {
+      assertEquals(i == 150 ? i + 1 : i, loadCounters.get(i));
+    }
+
+    loadCounters.reset(150);
+    assertEquals(0, loadCounters.get(150));
+    loadCounters.set(150, 7);
+    assertEquals(7, loadCounters.get(150));
+    assertThrows(IllegalArgumentException.class, () -> loadCounters.increment(-1));
+    assertThrows(IllegalArgumentException.class, () -> loadCounters.set(0, -1));
+  }
+
+  @Test
+  void testIllegalArguments() {
+    LoadAwareRouter.Builder<PhysicalNode<?>> builder =
+        LoadAwareRouter.newBuilder(createConsistentRouter(1), LoadCounters.create());
+    assertThrows(IllegalArgumentException.class, () -> builder.choices(0));
+    assertThrows(IllegalArgumentException.class, () -> builder.tolerance(-1));
+    assertThrows(IllegalArgumentException.class, () -> builder.tolerance(Double.NaN));
+  }
+
+  private static int ordinalOf(NodeRouter<PhysicalNode<?>> router, String nodeId) {
+    NodeTable<PhysicalNode<?>> table = router.getNodeTable();
+    return IntStream.range(0, table.size())
+        .filter(
+            ordinal ->
+                Optional.ofNullable(table.get(ordinal))
+                    .filter(node -> node.getNodeId().equals(nodeId))
+                    .isPresent())
+        .findFirst()
+        .orElse(-1);
+  }
+
+  private NodeRouter<PhysicalNode<?>> createConsistentRouter(int nodeCount) {
+    return ConsistentNodeRouter.create(
+        IntStream.range(0, nodeCount)
+            .mapToObj(i -> PhysicalNode.of("node" + i))
+            .collect(Collectors.toList()),
+        15,
+        MurMurHashFunction.create());
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.api.NodeRouter;
+import io.github.ykayacan.hashing.consistent.ConsistentNodeRouter;
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class NodeBatcherTest {
+
+  /** Ensure every item is emitted once, in a batch of the node it routes to */
+  @Test
+  void testBatchesBySize() throws InterruptedException {
+    NodeRouter<PhysicalNode<?>> router = createRouter(3);
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    try (NodeBatcher<String, PhysicalNode<?>> batcher =
+        NodeBatcher.<String, PhysicalNode<?>>newBuilder(
+                router,
+                key -> key,
+                (node, batch) -> {
+                  batch.forEach(key -> assertEquals(router.getNode(key).get(), node));
+                  batches.add(batch);
+                  return CompletableFuture.completedFuture(null);
+                })
+            .maxBatchSize(10)
+            .maxLinger(1, TimeUnit.HOURS)
+            .build()) {
+      for (int i = 0; i < 300; i++) {
+        batcher.submit("key" + i);
+      }
+      batcher.flush();
+    }
+
+    batches.forEach(batch -> assertTrue(batch.size() <= 10));
+    assertEquals(
+        IntStream.range(0, 300).mapToObj(i -> "key" + i).sorted().collect(Collectors.toList()),
+        batches.stream().flatMap(List::stream).sorted().collect(Collectors.toList()));
+  }
+
+  /** Ensure a partial batch is emitted after the linger time */
+  @Test
+  void testFlushesAfterLinger() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (NodeBatcher<String, PhysicalNode<?>> batcher =
+        NodeBatcher.<String, PhysicalNode<?>>newBuilder(
+                createRouter(3),
+                key -> key,
+                (node, batch) -> {
+                  latch.countDown();
+                  return CompletableFuture.completedFuture(null);
+                })
+            .maxLinger(10, TimeUnit.MILLISECONDS)
+            .build()) {
+      batcher.submit("key");
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  /** Ensure a sink failing on a linger flush is reported to the error handler */
+  @Test
+  void testLingerErrors() throws InterruptedException {
+    RuntimeException failure = new IllegalStateException("sink down");
+    AtomicReference<RuntimeException> reported = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (NodeBatcher<String, PhysicalNode<?>> batcher =
+        NodeBatcher.<String, PhysicalNode<?>>newBuilder(
+                createRouter(3),
+                key -> key,
+                (node, batch) -> {
+                  throw failure;
+                })
+            .maxLinger(10, TimeUnit.MILLISECONDS)
+            .errorHandler(
+                e -> {
+                  reported.set(e);
+                  latch.countDown();
+                })
+            .build()) {
+      batcher.submit("key");
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertEquals(failure, reported.get());
+    }
+  }
+
+  /** Ensure items accepted while the batcher closes are sent, not left in a buffer */
+  @Test
+  void testSubmitWhileClosing() throws Exception {
+    ExecutorService producers = Executors.newFixedThreadPool(4);
+    try {
+      for (int round = 0; round < 20; round++) {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        NodeBatcher<String, PhysicalNode<?>> batcher =
+            NodeBatcher.<String, PhysicalNode<?>>newBuilder(
+                    createRouter(3),
+                    key -> key,
+                    (node, batch) -> {
+                      sent.addAll(batch);
+                      return CompletableFuture.completedFuture(null);
+                    })
+                .maxLinger(1, TimeUnit.HOURS)
+                .build();
+        List<Future<List<String>>> accepted = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+          String prefix = "p" + producer + "-";
+          accepted.add(
+              producers.submit(
+                  () -> {
+                    List<String> keys = new ArrayList<>();
+                    try {
+                      for (int i = 0; i < 1000; i++) {
+                        batcher.submit(prefix + i);
+                        keys.add(prefix + i);
+                      }
+                    } catch (IllegalStateException e) {
+                      // closed
+                    }
+                    return keys;
+                  }));
+        }
+        batcher.close();
+
+        List<String> expected = new ArrayList<>();
+        for (Future<List<String>> keys : accepted) {
+          expected.addAll(keys.get());
+        }
+        Collections.sort(expected);
+        List<String> actual = new ArrayList<>(sent);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+      }
+    } finally {
+      producers.shutdownNow();
+    }
+  }
+
+  /** Ensure a slow node pushes back until its pending batches complete */
+  @Test
+  void testBackpressure() {
+    List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+
+    try (NodeBatcher<String, PhysicalNode<?>> batcher =
+        NodeBatcher.<String, PhysicalNode<?>>newBuilder(
+                createRouter(1),
+                key -> key,
+                (node, batch) -> {
+                  CompletableFuture<Void> future = new CompletableFuture<>();
+                  inFlight.add(future);
+                  return future;
+                })
+            .maxBatchSize(1)
+            .maxPendingItems(5)
+            .build()) {
+      for (int i = 0; i < 5; i++) {
+        assertTrue(batcher.offer("key" + i));
+      }
+      assertFalse(batcher.offer("key5"));
+
+      inFlight.get(0).complete(null);
+      assertTrue(batcher.offer("key5"));
+    }
+  }
+
+  /** Ensure batches go out with the current payload and buffers of removed nodes are flushed */
+  @Test
+  void testTopologyChanges() throws InterruptedException {
+    NodeRouter<PhysicalNode<String>> router =
+        ConsistentNodeRouter.<PhysicalNode<String>>newBuilder(MurMurHashFunction.create())
+            .replicaCount(15)
+            .listenerExecutor(Runnable::run)
+            .build();
+    router.addNode(PhysicalNode.newBuilder("node0").data("v1").build());
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    try (NodeBatcher<String, PhysicalNode<String>> batcher =
+        NodeBatcher.<String, PhysicalNode<String>>newBuilder(
+                router,
+                key -> key,
+                (node, batch) -> {
+                  batch.forEach(key -> sent.add(node.data() + ":" + key));
+                  return CompletableFuture.completedFuture(null);
+                })
+            .maxLinger(1, TimeUnit.HOURS)
+            .build()) {
+      batcher.submit("a");
+      router.removeNode("node0");
+      assertEquals(Collections.singletonList("v1:a"), sent);
+
+      router.addNode(PhysicalNode.newBuilder("node0").data("v2").build());
+      batcher.submit("b");
+      router.addNode(PhysicalNode.newBuilder("node0").data("v3").build());
+      batcher.submit("c");
+      batcher.flush();
+    }
+    assertEquals(Arrays.asList("v1:a", "v3:b", "v3:c"), sent);
+  }
+
+  private NodeRouter<PhysicalNode<?>> createRouter(int nodeCount) {
+    return ConsistentNodeRouter.create(
+        IntStream.range(0, nodeCount)
+            .mapToObj(index -> PhysicalNode.of("node" + index))
+            .collect(Collectors.toList()),
+        15,
+        MurMurHashFunction.create());
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 Yasin Sinan Kayacan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.ykayacan.hashing.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ykayacan.hashing.consistent.PhysicalNode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class RangePartitionRouterTest {
+
+  @Test
+  void testEmpty() {
+    RangePartitionRouter<PhysicalNode<?>> router =
+        RangePartitionRouter.<PhysicalNode<?>>newBuilder().build();
+    assertFalse(router.getNode("key").isPresent());
+    assertEquals(-1, router.route("key"));
+    assertEquals(Collections.emptyList(), router.nodesForRange("a", "z"));
+    assertFalse(router.rebalance());
+  }
+
+  /** Ensure split points keep keys in order and the first node owns the whole key space */
+  @Test
+  void testSplitAndMerge() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    router.addNode(PhysicalNode.of("node2"));
+    assertEquals("node0", nodeId(router, "a"));
+    assertEquals("node0", nodeId(router, "z"));
+
+    router.split("h", "node1");
+    router.split("p", "node2");
+    assertEquals(Arrays.asList("h", "p"), router.getSplitPoints());
+    assertEquals("node0", nodeId(router, "g"));
+    assertEquals("node1", nodeId(router, "h"));
+    assertEquals("node1", nodeId(router, "ozzz"));
+    assertEquals("node2", nodeId(router, "p"));
+    assertEquals(
+        router.getNodeTable().get(router.route("k")), router.getNode("k").orElse(null));
+
+    router.merge("h");
+    assertEquals(Collections.singletonList("p"), router.getSplitPoints());
+    assertEquals("node0", nodeId(router, "k"));
+
+    assertThrows(IllegalArgumentException.class, () -> router.merge("h"));
+    assertThrows(IllegalArgumentException.class, () -> router.split("p", "node1"));
+    assertThrows(IllegalArgumentException.class, () -> router.split("k", "node9"));
+  }
+
+  @Test
+  void testNodesForRange() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    router.addNode(PhysicalNode.of("node2"));
+    router.split("h", "node1");
+    router.split("p", "node2");
+
+    assertEquals(Arrays.asList("node0"), nodeIds(router, "a", "h"));
+    assertEquals(Arrays.asList("node0", "node1"), nodeIds(router, "a", "hh"));
+    assertEquals(Arrays.asList("node1", "node2"), nodeIds(router, "i", "q"));
+    assertEquals(Arrays.asList("node0", "node1", "node2"), nodeIds(router, "", "zz"));
+    assertEquals(Collections.emptyList(), nodeIds(router, "k", "k"));
+    assertThrows(IllegalArgumentException.class, () -> router.nodesForRange("q", "a"));
+  }
+
+  /** Ensure a hot partition is split at its sampled median and cold neighbours are merged */
+  @Test
+  void testRebalance() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    for (int i = 0; i < 100; i++) {
+      router.record(String.format("key%03d", i), 10);
+    }
+    assertTrue(router.rebalance());
+    assertEquals(1, router.getSplitPoints().size());
+    String median = router.getSplitPoints().get(0);
+    assertTrue(median.compareTo("key000") > 0 && median.compareTo("key099") <= 0);
+    assertEquals("node0", nodeId(router, "key000"));
+    assertEquals("node1", nodeId(router, "key099"));
+
+    // fresh halves are left alone until they record keys, then join below the merge load
+    assertFalse(router.rebalance());
+    router.record("key000", 1);
+    assertTrue(router.rebalance());
+    assertEquals(Collections.emptyList(), router.getSplitPoints());
+    assertFalse(router.rebalance());
+  }
+
+  /** Ensure recorded loads survive membership changes that leave partitions unchanged */
+  @Test
+  void testLoadsSurviveMembershipChanges() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    router.split("m", "node1");
+    router.record("a", 200);
+    router.record("z", 200);
+
+    router.addNode(PhysicalNode.of("node2"));
+    assertFalse(router.rebalance());
+    router.removeNode("node2");
+    assertFalse(router.rebalance());
+    assertEquals(Collections.singletonList("m"), router.getSplitPoints());
+  }
+
+  /** Ensure re-adding an id replaces the node in place */
+  @Test
+  void testReplaceNode() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    router.split("m", "node1");
+
+    PhysicalNode<?> replacement = PhysicalNode.newBuilder("node1").data("v2").build();
+    router.addNode(replacement);
+    assertEquals(Collections.singletonList("m"), router.getSplitPoints());
+    assertSame(replacement, router.getNode("z").get());
+    assertSame(replacement, router.getNodeTable().get(router.route("z")));
+    assertEquals(2, router.getNodeTable().getNodes().size());
+  }
+
+  /** Ensure partitions of a removed node go to the lower neighbour */
+  @Test
+  void testRemoveNode() {
+    RangePartitionRouter<PhysicalNode<?>> router = createRouter();
+    router.addNode(PhysicalNode.of("node0"));
+    router.addNode(PhysicalNode.of("node1"));
+    router.addNode(PhysicalNode.of("node2"));
+    router.split("h", "node1");
+    router.split("p", "node2");
+
+    router.removeNode("node1");
+    assertEquals(Collections.singletonList("p"), router.getSplitPoints());
+    assertEquals("node0", nodeId(router, "k"));
+    assertEquals(-1, router.getNodeTable().getNodes().indexOf(PhysicalNode.of("node1")));
+
+    router.removeNode("node0");
+    assertEquals(Collections.emptyList(), router.getSplitPoints());
+    assertEquals("node2", nodeId(router, "a"));
+
+    router.removeNode("node2");
+    assertFalse(router.getNode("a").isPresent());
+  }
+
+  @Test
+  void testIllegalLoads() {
+    assertThrows(
+        IllegalArgumentException.class, () -> RangePartitionRouter.newBuilder().splitLoad(0));
+    assertThrows(
+        IllegalStateException.class,
+        () -> RangePartitionRouter.newBuilder().splitLoad(10).mergeLoad(10).build());
+  }
+
+  private static RangePartitionRouter<PhysicalNode<?>> createRouter() {
+    return RangePartitionRouter.<PhysicalNode<?>>newBuilder()
+        .splitLoad(500)
+        .mergeLoad(100)
+        .build();
+  }
+
+  private static String nodeId(RangePartitionRouter<PhysicalNode<?>> router, String key) {
+    return router.getNode(key).get().getNodeId();
+  }
+
+  private static List<String> nodeIds(
+      RangePartitionRouter<PhysicalNode<?>> router, String from, String to) {
+    return router.nodesForRange(from, to).stream()
+        .map(PhysicalNode::getNodeId)
+        .collect(Collectors.toList());
+  }
+}